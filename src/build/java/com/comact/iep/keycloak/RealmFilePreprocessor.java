@@ -0,0 +1,134 @@
+package com.comact.iep.keycloak;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.IdentityProviderRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prepare the realm files at build time, see {@link PreparedRealmFile}.
+ * <p>
+ * It runs in the process-test-classes phase of the build, on the realm files copied in the classes directory. It is
+ * compiled with the tests, it is neither in the application jar nor in the native image.
+ * <p>
+ * A realm file that can't be parsed, or with duplicated clients, roles, groups, identity providers or users, fails the
+ * build.
+ * <p>
+ * Usage : RealmFilePreprocessor classesDirectory realmFile..., a directory prepares all its realm files.
+ */
+@Slf4j
+public final class RealmFilePreprocessor {
+
+    private RealmFilePreprocessor() {
+    }
+
+    /**
+     * Prepare realm files.
+     *
+     * @param args the classes directory, then the realm files or directories relative to it, as in keycloak.realm.init.filename
+     * @throws IOException a realm file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage : RealmFilePreprocessor classesDirectory realmFile...");
+        }
+
+        var classes = Path.of(args[0]);
+        for (var index = 1; index < args.length; index++) {
+            var filename = args[index];
+            var realmFile = classes.resolve(filename.startsWith("/") ? filename.substring(1) : filename);
+            if (Files.isDirectory(realmFile)) {
+                try (var files = Files.list(realmFile)) {
+                    for (var file : (Iterable<Path>) files.sorted()::iterator) {
+                        var name = file.getFileName().toString();
+                        if (name.endsWith(".json") && !name.endsWith(PreparedRealmFile.PREPARED_SUFFIX)) {
+                            prepare(file);
+                        }
+                    }
+                }
+            } else {
+                prepare(realmFile);
+            }
+        }
+    }
+
+    /**
+     * Validate a realm file and write its prepared file and hashes next to it.
+     *
+     * @param realmFile the realm file
+     * @throws IOException the realm file can't be read or written
+     */
+    static void prepare(Path realmFile) throws IOException {
+        PartialImportRepresentation partialImport;
+        try (var input = Files.newInputStream(realmFile)) {
+            partialImport = RealmFileParser.parse(input, null);
+        }
+
+        var errors = validate(partialImport);
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Invalid realm file [" + realmFile + "] : " + String.join(", ", errors));
+        }
+
+        var baseName = PreparedRealmFile.baseName(realmFile.getFileName().toString());
+        Files.write(realmFile.resolveSibling(baseName + PreparedRealmFile.PREPARED_SUFFIX), JsonSerialization.mapper.writeValueAsBytes(partialImport));
+
+        var hashes = new StringBuilder();
+        RealmSections.hashes(partialImport).forEach((section, hash) -> hashes.append(section).append('=').append(hash).append('\n'));
+        Files.writeString(realmFile.resolveSibling(baseName + PreparedRealmFile.HASHES_SUFFIX), hashes, StandardCharsets.UTF_8);
+
+        log.info("Prepared realm file {} : {} clients, {} groups, {} users", realmFile,
+                count(partialImport.getClients()), count(partialImport.getGroups()), count(partialImport.getUsers()));
+    }
+
+    /**
+     * Check the imported sections of a realm file.
+     *
+     * @param partialImport the imported sections
+     * @return the errors, empty if valid
+     */
+    static List<String> validate(PartialImportRepresentation partialImport) {
+        List<String> errors = new ArrayList<>();
+        duplicates(errors, "client", partialImport.getClients(), ClientRepresentation::getClientId);
+        duplicates(errors, "group", partialImport.getGroups(), GroupRepresentation::getName);
+        duplicates(errors, "identity provider", partialImport.getIdentityProviders(), IdentityProviderRepresentation::getAlias);
+        duplicates(errors, "user", partialImport.getUsers(), UserRepresentation::getUsername);
+        if (partialImport.getRoles() != null) {
+            duplicates(errors, "realm role", partialImport.getRoles().getRealm(), RoleRepresentation::getName);
+        }
+        return errors;
+    }
+
+    private static <T> void duplicates(List<String> errors, String type, List<T> items, Function<T, String> key) {
+        if (items == null) {
+            return;
+        }
+
+        var keys = new HashSet<String>();
+        for (var item : items) {
+            var value = key.apply(item);
+            if (value == null || value.isBlank()) {
+                errors.add(type + " without name");
+            } else if (!keys.add(value)) {
+                errors.add("duplicated " + type + " [" + value + "]");
+            }
+        }
+    }
+
+    private static int count(List<?> items) {
+        return items == null ? 0 : items.size();
+    }
+}
@@ -0,0 +1,87 @@
+package com.comact.iep.logging;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+
+/**
+ * Compare the {@link JsonEncoder} of the log file to the pattern it replaced.
+ * <p>
+ * Run with the gc profiler for the allocations by event :
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="EncoderBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncoderBenchmark {
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss,SSS} %-5level [%logger{36}] (%thread) %msg%n";
+
+    @Param({"plain", "mdc", "exception"})
+    String event;
+
+    private Encoder<ILoggingEvent> patternEncoder;
+    private Encoder<ILoggingEvent> jsonEncoder;
+    private ILoggingEvent loggingEvent;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var context = new LoggerContext();
+
+        var pattern = new PatternLayoutEncoder();
+        pattern.setContext(context);
+        pattern.setPattern(PATTERN);
+        pattern.start();
+        patternEncoder = pattern;
+
+        var json = new JsonEncoder();
+        json.setContext(context);
+        json.start();
+        jsonEncoder = json;
+
+        var logger = context.getLogger("com.comact.iep.api.kubernetes.ConfigMapsService");
+        var throwable = "exception".equals(event) ? new IllegalStateException("Unable to read the ConfigMap \"settings\"") : null;
+        var loggingEvent = new LoggingEvent(EncoderBenchmark.class.getName(), logger, ch.qos.logback.classic.Level.INFO,
+                "ConfigMap {} of namespace {} updated in {} ms", throwable, new Object[]{"settings", "comact", 12});
+        if ("mdc".equals(event)) {
+            loggingEvent.setMDCPropertyMap(Map.of("traceId", "4bf92f3577b34da6", "spanId", "00f067aa0ba902b7", "sampled", "true", "user", "service-account-comact"));
+        } else {
+            loggingEvent.setMDCPropertyMap(Map.of());
+        }
+        // as done by the async appender before queuing the event
+        loggingEvent.prepareForDeferredProcessing();
+        this.loggingEvent = loggingEvent;
+    }
+
+    @Benchmark
+    public byte[] pattern() {
+        return patternEncoder.encode(loggingEvent);
+    }
+
+    @Benchmark
+    public byte[] json() {
+        return jsonEncoder.encode(loggingEvent);
+    }
+}
@@ -0,0 +1,197 @@
+package com.comact.iep.logging;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+import org.jboss.logmanager.LogContext;
+import org.jboss.logmanager.formatters.PatternFormatter;
+import org.jboss.logmanager.handlers.SizeRotatingFileHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.core.joran.spi.JoranException;
+
+/**
+ * Cost of a log call through logback, as configured by logback.xml, and through the JBoss LogManager of Quarkus.
+ * <p>
+ * Both backends get the levels of application.properties, quarkus.log.level and the quarkus.log.category.*.level of
+ * the prod profile. The logback backend writes with the appenders of logback.xml, the JBoss backend with the file
+ * handler the project had before, the quarkus.log.file.format pattern rotated at 20MB. The files are written in a
+ * temporary directory. The console is left out of both.
+ * <p>
+ * The cases are a call below the level, a parameterized message, an event with a loaded MDC and an exception. The
+ * contention is measured by running the suite with several threads, see {@link LoggingBenchmarkRunner}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+    private static final String LOGGER = "com.comact.iep.api.kubernetes.service.ConfigMapsService";
+    private static final String MESSAGE = "ConfigMap {} of namespace {} updated in {} ms";
+    private static final String JBOSS_MESSAGE = "ConfigMap {0} of namespace {1} updated in {2} ms";
+    // the file format of Quarkus by default
+    private static final String DEFAULT_FILE_FORMAT = "%d{yyyy-MM-dd HH:mm:ss,SSS} %h %N[%i] %-5p [%c{3.}] (%t) %s%e%n";
+    private static final Pattern CATEGORY_LEVEL = Pattern.compile("quarkus\\.log\\.category\\.\"?([^\"]+)\"?\\.level");
+    private static final Exception EXCEPTION = new IllegalStateException("Unable to read the ConfigMap \"settings\"",
+            new IOException("Connection reset"));
+
+    @Param({"logback", "jboss"})
+    String backend;
+
+    private Path directory;
+    private LoggerContext logbackContext;
+    private org.slf4j.Logger logbackLogger;
+    private LogContext jbossContext;
+    private SizeRotatingFileHandler jbossHandler;
+    private java.util.logging.Logger jbossLogger;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("logging-benchmark");
+        var properties = applicationProperties();
+
+        if ("logback".equals(backend)) {
+            logbackContext = new LoggerContext();
+            var configurator = new JoranConfigurator();
+            configurator.setContext(logbackContext);
+            configurator.doConfigure(new ByteArrayInputStream(logbackXml().getBytes(StandardCharsets.UTF_8)));
+            applyLevels(properties, (category, level) -> logbackContext.getLogger(category.isEmpty() ? org.slf4j.Logger.ROOT_LOGGER_NAME : category)
+                    .setLevel(ch.qos.logback.classic.Level.toLevel(level)));
+            logbackLogger = logbackContext.getLogger(LOGGER);
+        } else {
+            jbossContext = LogContext.create();
+            jbossHandler = new SizeRotatingFileHandler(directory.resolve("quarkus.log").toFile(), true);
+            jbossHandler.setRotateSize(20 * 1024 * 1024);
+            jbossHandler.setMaxBackupIndex(2);
+            jbossHandler.setFormatter(new PatternFormatter(properties.getProperty("quarkus.log.file.format", DEFAULT_FILE_FORMAT)));
+            jbossContext.getLogger("").addHandler(jbossHandler);
+            applyLevels(properties, (category, level) -> jbossContext.getLogger(category)
+                    .setLevel(org.jboss.logmanager.Level.parse(level.toUpperCase())));
+            jbossLogger = jbossContext.getLogger(LOGGER);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (logbackContext != null) {
+            logbackContext.stop();
+        }
+        if (jbossHandler != null) {
+            jbossHandler.close();
+        }
+        try (var files = Files.walk(directory)) {
+            files.sorted((left, right) -> right.compareTo(left)).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * A DEBUG call on a category at INFO.
+     */
+    @Benchmark
+    public void disabledLevel() {
+        if (logbackLogger != null) {
+            logbackLogger.debug(MESSAGE, "settings", "comact", 12);
+        } else {
+            jbossLogger.log(org.jboss.logmanager.Level.DEBUG, JBOSS_MESSAGE, new Object[]{"settings", "comact", 12});
+        }
+    }
+
+    @Benchmark
+    public void parameterized() {
+        if (logbackLogger != null) {
+            logbackLogger.info(MESSAGE, "settings", "comact", 12);
+        } else {
+            jbossLogger.log(org.jboss.logmanager.Level.INFO, JBOSS_MESSAGE, new Object[]{"settings", "comact", 12});
+        }
+    }
+
+    /**
+     * An event with the trace ids and the request values in the MDC.
+     */
+    @Benchmark
+    public void mdc() {
+        if (logbackLogger != null) {
+            MDC.put("traceId", "4bf92f3577b34da6");
+            MDC.put("spanId", "00f067aa0ba902b7");
+            MDC.put("sampled", "true");
+            MDC.put("user", "service-account-comact");
+            MDC.put("namespace", "comact");
+            logbackLogger.info(MESSAGE, "settings", "comact", 12);
+            MDC.clear();
+        } else {
+            org.jboss.logmanager.MDC.put("traceId", "4bf92f3577b34da6");
+            org.jboss.logmanager.MDC.put("spanId", "00f067aa0ba902b7");
+            org.jboss.logmanager.MDC.put("sampled", "true");
+            org.jboss.logmanager.MDC.put("user", "service-account-comact");
+            org.jboss.logmanager.MDC.put("namespace", "comact");
+            jbossLogger.log(org.jboss.logmanager.Level.INFO, JBOSS_MESSAGE, new Object[]{"settings", "comact", 12});
+            org.jboss.logmanager.MDC.clear();
+        }
+    }
+
+    @Benchmark
+    public void exception() {
+        if (logbackLogger != null) {
+            logbackLogger.warn("Unable to update the ConfigMap settings", EXCEPTION);
+        } else {
+            jbossLogger.log(org.jboss.logmanager.Level.WARN, "Unable to update the ConfigMap settings", EXCEPTION);
+        }
+    }
+
+    private static Properties applicationProperties() throws IOException {
+        var properties = new Properties();
+        try (InputStream input = LoggingBenchmark.class.getResourceAsStream("/application.properties")) {
+            properties.load(input);
+        }
+        return properties;
+    }
+
+    private static void applyLevels(Properties properties, BiConsumer<String, String> levelSetter) {
+        levelSetter.accept("", properties.getProperty("quarkus.log.level", "INFO"));
+        for (var name : properties.stringPropertyNames()) {
+            var matcher = CATEGORY_LEVEL.matcher(name);
+            // the profile keys, %dev.quarkus.log..., don't match
+            if (matcher.matches()) {
+                levelSetter.accept(matcher.group(1), properties.getProperty(name));
+            }
+        }
+    }
+
+    /**
+     * The logback.xml of the project, with its files in the temporary directory.
+     */
+    private String logbackXml() throws IOException, JoranException {
+        try (InputStream input = LoggingBenchmark.class.getResourceAsStream("/logback.xml")) {
+            if (input == null) {
+                throw new JoranException("logback.xml not found");
+            }
+            var xml = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            return xml.replace(">quarkus.", ">" + directory.toString().replace('\\', '/') + "/quarkus.");
+        }
+    }
+}
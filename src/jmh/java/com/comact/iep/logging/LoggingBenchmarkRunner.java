@@ -0,0 +1,40 @@
+package com.comact.iep.logging;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the {@link LoggingBenchmark} with 1 to 64 threads, with the allocations by call of the gc profiler.
+ * <p>
+ * The results of each thread count are written as JSON in target/jmh/logging-{threads}t.json.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.comact.iep.logging.LoggingBenchmarkRunner -Djmh.args=
+ * </pre>
+ * The thread counts can be given as arguments, 1 4 16 64 by default.
+ */
+public class LoggingBenchmarkRunner {
+    private static final String[] DEFAULT_THREADS = {"1", "4", "16", "64"};
+
+    public static void main(String[] args) throws RunnerException {
+        var threadCounts = args.length == 0 ? DEFAULT_THREADS : args;
+        var resultDirectory = new File("target/jmh");
+        resultDirectory.mkdirs();
+
+        for (var threadCount : threadCounts) {
+            var threads = Integer.parseInt(threadCount);
+            new Runner(new OptionsBuilder()
+                    .include(LoggingBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDirectory, "logging-" + threads + "t.json").getPath())
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.comact.iep.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkus.oidc.AccessTokenCredential;
+import io.quarkus.security.AuthenticationFailedException;
+import io.quarkus.security.identity.AuthenticationRequestContext;
+import io.quarkus.security.identity.IdentityProvider;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.identity.request.TokenAuthenticationRequest;
+import io.quarkus.security.runtime.QuarkusPrincipal;
+import io.quarkus.security.runtime.QuarkusSecurityIdentity;
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Authentication cost of a bearer token by request, with and without the {@link SecurityIdentityCache}.
+ * <p>
+ * The identity provider is a stub doing the work of the OIDC provider on a signed token : the RS256 signature check,
+ * the decoding of the claims and the role mapping. The fetch of the keys and the augmentors are left out, so the
+ * saving is a lower bound.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="IdentityCacheBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentityCacheBenchmark {
+    private static final AuthenticationRequestContext CONTEXT = Uni.createFrom()::item;
+
+    private String token;
+    private TokenAuthenticationRequest request;
+    private IdentityProvider<TokenAuthenticationRequest> provider;
+    private SecurityIdentityCache cache;
+
+    @Setup(Level.Trial)
+    public void setup() throws GeneralSecurityException {
+        var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        var keyPair = generator.generateKeyPair();
+
+        var expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        token = token(keyPair, new JsonObject()
+                .put("sub", "service-account-comact")
+                .put("preferred_username", "service-account-comact")
+                .put("exp", TimeUnit.MILLISECONDS.toSeconds(expiresAt))
+                .put("realm_access", new JsonObject().put("roles", new JsonArray().add("serviceAccount").add("offline_access"))));
+        request = new TokenAuthenticationRequest(new AccessTokenCredential(token));
+        provider = new VerifyingIdentityProvider(keyPair.getPublic());
+
+        cache = new SecurityIdentityCache();
+        cache.enabled = true;
+        cache.maxSize = 10_000;
+        cache.maxTtl = Duration.ofMinutes(5);
+        cache.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        cache.init();
+        cache.put(token, provider.authenticate(request, CONTEXT).await().indefinitely(), expiresAt);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MetricRegistries.dropAll();
+    }
+
+    @Benchmark
+    public SecurityIdentity provider() {
+        return provider.authenticate(request, CONTEXT).await().indefinitely();
+    }
+
+    @Benchmark
+    public SecurityIdentity cached() {
+        return cache.get(token, null);
+    }
+
+    private static String token(KeyPair keyPair, JsonObject claims) throws GeneralSecurityException {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        var content = encoder.encodeToString("{\"alg\":\"RS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8)) + '.' +
+                encoder.encodeToString(claims.encode().getBytes(StandardCharsets.UTF_8));
+
+        var signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + '.' + encoder.encodeToString(signature.sign());
+    }
+
+    /**
+     * Verify the signature of the token, decode its claims and map the realm roles, as the OIDC provider does.
+     */
+    private static class VerifyingIdentityProvider implements IdentityProvider<TokenAuthenticationRequest> {
+        private final PublicKey publicKey;
+
+        VerifyingIdentityProvider(PublicKey publicKey) {
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public Class<TokenAuthenticationRequest> getRequestType() {
+            return TokenAuthenticationRequest.class;
+        }
+
+        @Override
+        public Uni<SecurityIdentity> authenticate(TokenAuthenticationRequest request, AuthenticationRequestContext context) {
+            var token = request.getToken().getToken();
+            var parts = token.split("\\.");
+            try {
+                var signature = Signature.getInstance("SHA256withRSA");
+                signature.initVerify(publicKey);
+                signature.update((parts[0] + '.' + parts[1]).getBytes(StandardCharsets.US_ASCII));
+                if (!signature.verify(Base64.getUrlDecoder().decode(parts[2]))) {
+                    throw new AuthenticationFailedException("Invalid signature");
+                }
+            } catch (GeneralSecurityException e) {
+                throw new AuthenticationFailedException(e);
+            }
+
+            var claims = new JsonObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+            var builder = QuarkusSecurityIdentity.builder()
+                    .setPrincipal(new QuarkusPrincipal(claims.getString("preferred_username")))
+                    .addCredential(request.getToken());
+            claims.getJsonObject("realm_access").getJsonArray("roles").forEach(role -> builder.addRole((String) role));
+            return Uni.createFrom().item(builder.build());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.comact.iep.api.keycloak;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+
+import com.comact.iep.keycloak.RealmInitialization;
+import com.comact.iep.keycloak.RealmInitializerClass;
+
+/**
+ * The report of the last realm initialization.
+ */
+@Path("/keycloak/realm-init")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"serviceAccount", "user"}) // only a user with this role can have access
+public class RealmInitializations {
+
+    /**
+     * The realm initializer.
+     */
+    @Inject
+    RealmInitializerClass realmInitializer;
+
+    /**
+     * The initialization of each realm, with the duration of its phases.
+     *
+     * @return the list
+     */
+    @GET
+    @Operation(summary = "return the last realm initialization report", description = "return the status, the error and the duration of each phase of the initialization of each realm")
+    @Path("/")
+    public List<RealmInitialization> report() {
+        return new ArrayList<>(realmInitializer.getInitializations());
+    }
+}
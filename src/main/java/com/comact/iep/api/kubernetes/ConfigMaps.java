@@ -3,15 +3,25 @@ package com.comact.iep.api.kubernetes;
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.comact.iep.api.kubernetes.query.ConfigMapQuery;
+import com.comact.iep.api.kubernetes.service.ConfigMapNameIndex;
+import com.comact.iep.api.kubernetes.service.ConfigMapResponseCache;
 import com.comact.iep.api.kubernetes.service.ConfigMapsService;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import lombok.extern.slf4j.Slf4j;
@@ -33,34 +43,45 @@ public class ConfigMaps {
     @Inject
     ConfigMapsService configMapsService;
 
+    /**
+     * The cache of the serialized list responses.
+     */
+    @Inject
+    ConfigMapResponseCache responseCache;
+
     /**
      * Config maps list.
      *
+     * @param cluster the cluster, "*" for all clusters
      * @return the list
      */
     @GET
     @Operation(summary = "return configmaps in default namespace", description = "return configmaps in default namespace")
     @Path("/")
-    public List<ConfigMap> configMaps() {
-        return configMapsService.configMaps();
+    public List<ConfigMap> configMaps(@QueryParam("cluster") String cluster) {
+        return configMapsService.configMaps(cluster);
     }
 
     /**
      * Config maps within namespace.
      *
-     * @param namespace the namespace
+     * @param cluster        the cluster, "*" for all clusters
+     * @param namespace      the namespace
+     * @param acceptEncoding the accepted encodings, the response is gzip compressed if gzip is accepted
      * @return the list
      */
     @GET
     @Operation(summary = "return configmaps in namespace", description = "return configmaps in namespace")
     @Path("/namespace/{namespace}")
-    public List<ConfigMap> configMapsWithNamespace(@PathParam("namespace") String namespace) {
-        return configMapsService.configMapsWithNamespace(namespace);
+    @APIResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = SchemaType.ARRAY, implementation = ConfigMap.class)))
+    public Response configMapsWithNamespace(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        return cached(cluster, namespace, "configMapsWithNamespace", "", acceptEncoding, () -> configMapsService.configMapsWithNamespace(cluster, namespace));
     }
 
     /**
      * Config maps within namespace with label.
      *
+     * @param cluster   the cluster, "*" for all clusters
      * @param namespace the namespace
      * @param label     the label
      * @return the list
@@ -68,13 +89,14 @@ public class ConfigMaps {
     @GET
     @Operation(summary = "return configmaps with label in namespace", description = "return configmaps with label in namespace")
     @Path("/namespace/{namespace}/label/{label}")
-    public List<ConfigMap> configMapsWithNamespaceWithLabel(@PathParam("namespace") String namespace, @PathParam("label") String label) {
-        return configMapsService.configMapsWithNamespaceWithLabel(namespace, label);
+    public List<ConfigMap> configMapsWithNamespaceWithLabel(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("label") String label) {
+        return configMapsService.configMapsWithNamespaceWithLabel(cluster, namespace, label);
     }
 
     /**
      * Config maps within namespace with label value.
      *
+     * @param cluster    the cluster, "*" for all clusters
      * @param namespace  the namespace
      * @param label      the label
      * @param labelValue the label value
@@ -83,13 +105,14 @@ public class ConfigMaps {
     @GET
     @Operation(summary = "return configmaps with label value in namespace", description = "return configmaps with label value in namespace")
     @Path("/namespace/{namespace}/label/{label}/{labelValue}")
-    public List<ConfigMap> configMapsWithNamespaceWithLabelValue(@PathParam("namespace") String namespace, @PathParam("label") String label, @PathParam("labelValue") String labelValue) {
-        return configMapsService.configMapsWithNamespaceWithLabelValue(namespace, label, labelValue);
+    public List<ConfigMap> configMapsWithNamespaceWithLabelValue(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("label") String label, @PathParam("labelValue") String labelValue) {
+        return configMapsService.configMapsWithNamespaceWithLabelValue(cluster, namespace, label, labelValue);
     }
 
     /**
      * Create config map.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param configMap the config map
      * @return the config map
@@ -97,13 +120,14 @@ public class ConfigMaps {
     @POST
     @Operation(summary = "create a configMap in the namespace", description = "create a configMap in the namespace")
     @Path("/{namespace}")
-    public ConfigMap create(@PathParam("namespace") String namespace, ConfigMap configMap) {
-        return configMapsService.create(namespace, configMap);
+    public ConfigMap create(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, ConfigMap configMap) {
+        return configMapsService.create(cluster, namespace, configMap);
     }
 
     /**
      * Update config map.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param configMap the config map
      * @return the config map
@@ -111,13 +135,14 @@ public class ConfigMaps {
     @PUT
     @Operation(summary = "update a configMap in the namespace", description = "update a configMap in the namespace")
     @Path("/{namespace}")
-    public ConfigMap update(@PathParam("namespace") String namespace, ConfigMap configMap) {
-        return configMapsService.update(namespace, configMap);
+    public ConfigMap update(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, ConfigMap configMap) {
+        return configMapsService.update(cluster, namespace, configMap);
     }
 
     /**
      * Delete resource.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param configMap the config map
      * @return the boolean
@@ -125,13 +150,14 @@ public class ConfigMaps {
     @DELETE
     @Operation(summary = "delete a configMap in the namespace", description = "delete a configMap in the namespace")
     @Path("/{namespace}")
-    public boolean delete(@PathParam("namespace") String namespace, ConfigMap configMap) {
-        return configMapsService.delete(namespace, configMap);
+    public boolean delete(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, ConfigMap configMap) {
+        return configMapsService.delete(cluster, namespace, configMap);
     }
 
     /**
      * Delete resource.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param name      the name
      * @return the boolean
@@ -139,13 +165,14 @@ public class ConfigMaps {
     @DELETE
     @Operation(summary = "delete a configMap by name in the namespace", description = "delete a configMap by name in the namespace")
     @Path("/{namespace}/{name}")
-    public boolean delete(@PathParam("namespace") String namespace, @PathParam("name") String name) {
-        return configMapsService.delete(namespace, name);
+    public boolean delete(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("name") String name) {
+        return configMapsService.delete(cluster, namespace, name);
     }
 
     /**
      * Config maps within namespace with name config map.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param name      the name
      * @return the config map
@@ -153,13 +180,41 @@ public class ConfigMaps {
     @GET
     @Operation(summary = "return configmaps with name in namespace", description = "return configmaps with name in namespace")
     @Path("/namespace/{namespace}/name/{name}")
-    public ConfigMap configMapsWithNamespaceWithName(@PathParam("namespace") String namespace, @PathParam("name") String name) {
-        return configMapsService.configMapsWithNamespaceWithName(namespace, name);
+    public ConfigMap configMapsWithNamespaceWithName(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("name") String name) {
+        return configMapsService.configMapsWithNamespaceWithName(cluster, namespace, name);
+    }
+
+    /**
+     * Find config maps by name prefix, glob or regex, exactly one of them must be given.
+     *
+     * @param cluster   the cluster, "*" for all clusters
+     * @param namespace the namespace
+     * @param prefix    the name prefix
+     * @param glob      the glob, with *, ? and [...]
+     * @param regex     the regex
+     * @return the list sorted by name
+     */
+    @GET
+    @Operation(summary = "return configmaps with name matching a prefix, glob or regex in namespace", description = "return configmaps with name matching a prefix, glob or regex in namespace, sorted by name")
+    @Path("/namespace/{namespace}/search")
+    public List<ConfigMap> findByName(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @QueryParam("prefix") String prefix, @QueryParam("glob") String glob, @QueryParam("regex") String regex) {
+        if ((prefix != null ? 1 : 0) + (glob != null ? 1 : 0) + (regex != null ? 1 : 0) != 1) {
+            throw new BadRequestException("One of prefix, glob or regex is required");
+        }
+
+        if (prefix != null) {
+            return configMapsService.findByName(cluster, namespace, ConfigMapNameIndex.Match.PREFIX, prefix);
+        }
+        if (glob != null) {
+            return configMapsService.findByName(cluster, namespace, ConfigMapNameIndex.Match.GLOB, glob);
+        }
+        return configMapsService.findByName(cluster, namespace, ConfigMapNameIndex.Match.REGEX, regex);
     }
 
     /**
      * Add annotation.
      *
+     * @param cluster         the cluster
      * @param namespace       the namespace
      * @param name            the name
      * @param annotationKey   the annotation key
@@ -168,13 +223,14 @@ public class ConfigMaps {
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/name/{name}/annotation/{key}/{value}")
-    public void addAnnotation(@PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("key") String annotationKey, @PathParam("value") String annotationValue) {
-        configMapsService.addAnnotation(namespace, name, annotationKey, annotationValue);
+    public void addAnnotation(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("key") String annotationKey, @PathParam("value") String annotationValue) {
+        configMapsService.addAnnotation(cluster, namespace, name, annotationKey, annotationValue);
     }
 
     /**
      * Add label.
      *
+     * @param cluster    the cluster
      * @param namespace  the namespace
      * @param name       the name
      * @param labelKey   the label key
@@ -183,42 +239,49 @@ public class ConfigMaps {
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/name/{name}/label/{key}/{value}")
-    public void addLabel(@PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("key") String labelKey, @PathParam("value") String labelValue) {
-        configMapsService.addLabel(namespace, name, labelKey, labelValue);
+    public void addLabel(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("key") String labelKey, @PathParam("value") String labelValue) {
+        configMapsService.addLabel(cluster, namespace, name, labelKey, labelValue);
     }
 
     /**
      * Find resources by annotation.
      *
-     * @param namespace     the namespace
-     * @param annotationKey the annotation key
+     * @param cluster        the cluster, "*" for all clusters
+     * @param namespace      the namespace
+     * @param annotationKey  the annotation key
+     * @param acceptEncoding the accepted encodings, the response is gzip compressed if gzip is accepted
      * @return the list
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/annotation/{key}")
-    public List<ConfigMap> findByAnnotation(@PathParam("namespace") String namespace, @PathParam("key") String annotationKey) {
-        return configMapsService.findByAnnotation(namespace, annotationKey);
+    @APIResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = SchemaType.ARRAY, implementation = ConfigMap.class)))
+    public Response findByAnnotation(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("key") String annotationKey, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        return cached(cluster, namespace, "findByAnnotation", annotationKey, acceptEncoding, () -> configMapsService.findByAnnotation(cluster, namespace, annotationKey));
     }
 
     /**
      * Find resources by annotation.
      *
+     * @param cluster         the cluster, "*" for all clusters
      * @param namespace       the namespace
      * @param annotationKey   the annotation key
      * @param annotationValue the annotation value
+     * @param acceptEncoding  the accepted encodings, the response is gzip compressed if gzip is accepted
      * @return the list
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/annotation/{key}/{value}")
-    public List<ConfigMap> findByAnnotation(@PathParam("namespace") String namespace, @PathParam("key") String annotationKey, @PathParam("value") String annotationValue) {
-        return configMapsService.findByAnnotation(namespace, annotationKey, annotationValue);
+    @APIResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = SchemaType.ARRAY, implementation = ConfigMap.class)))
+    public Response findByAnnotation(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("key") String annotationKey, @PathParam("value") String annotationValue, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        return cached(cluster, namespace, "findByAnnotationValue", annotationKey + '=' + annotationValue, acceptEncoding, () -> configMapsService.findByAnnotation(cluster, namespace, annotationKey, annotationValue));
     }
 
     /**
      * Find resources by annotations
      *
+     * @param cluster     the cluster, "*" for all clusters
      * @param namespace   the namespace
      * @param annotations the annotations
      * @return the list
@@ -226,13 +289,29 @@ public class ConfigMaps {
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/findByAnnotations")
-    public List<ConfigMap> findByAnnotations(@PathParam("namespace") String namespace, Map<String, String> annotations) {
-        return configMapsService.findByAnnotations(namespace, annotations);
+    public List<ConfigMap> findByAnnotations(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, Map<String, String> annotations) {
+        return configMapsService.findByAnnotations(cluster, namespace, annotations);
+    }
+
+    /**
+     * Find resources matching a query of label, annotation, name and data key conditions.
+     *
+     * @param cluster   the cluster, "*" for all clusters
+     * @param namespace the namespace
+     * @param query     the query
+     * @return the list
+     */
+    @POST
+    @Operation(summary = "return configmaps matching a query in namespace", description = "return configmaps matching a tree of label, annotation, name and data key conditions in namespace")
+    @Path("/namespace/{namespace}/query")
+    public List<ConfigMap> query(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, ConfigMapQuery query) {
+        return configMapsService.query(cluster, namespace, query);
     }
 
     /**
      * Find resources by labels.
      *
+     * @param cluster   the cluster, "*" for all clusters
      * @param namespace the namespace
      * @param labels    the labels
      * @return the list
@@ -240,36 +319,64 @@ public class ConfigMaps {
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/findByLabels")
-    public List<ConfigMap> findByLabels(@PathParam("namespace") String namespace, Map<String, String> labels) {
-        return configMapsService.findByLabels(namespace, labels);
+    public List<ConfigMap> findByLabels(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, Map<String, String> labels) {
+        return configMapsService.findByLabels(cluster, namespace, labels);
     }
 
     /**
      * Find resources by label.
      *
-     * @param namespace the namespace
-     * @param labelKey  the label key
+     * @param cluster        the cluster, "*" for all clusters
+     * @param namespace      the namespace
+     * @param labelKey       the label key
+     * @param acceptEncoding the accepted encodings, the response is gzip compressed if gzip is accepted
      * @return the list
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/label/{key}")
-    public List<ConfigMap> findByLabel(@PathParam("namespace") String namespace, @PathParam("key") String labelKey) {
-        return configMapsService.findByLabel(namespace, labelKey);
+    @APIResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = SchemaType.ARRAY, implementation = ConfigMap.class)))
+    public Response findByLabel(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("key") String labelKey, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        return cached(cluster, namespace, "findByLabel", labelKey, acceptEncoding, () -> configMapsService.findByLabel(cluster, namespace, labelKey));
     }
 
     /**
      * Find resources by label.
      *
-     * @param namespace  the namespace
-     * @param labelKey   the label key
-     * @param labelValue the label value
+     * @param cluster        the cluster, "*" for all clusters
+     * @param namespace      the namespace
+     * @param labelKey       the label key
+     * @param labelValue     the label value
+     * @param acceptEncoding the accepted encodings, the response is gzip compressed if gzip is accepted
      * @return the list
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/namespace/{namespace}/label/{key}/{value}")
-    public List<ConfigMap> findByLabel(@PathParam("namespace") String namespace, @PathParam("key") String labelKey, @PathParam("value") String labelValue) {
-        return configMapsService.findByLabel(namespace, labelKey, labelValue);
+    @APIResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = SchemaType.ARRAY, implementation = ConfigMap.class)))
+    public Response findByLabel(@QueryParam("cluster") String cluster, @PathParam("namespace") String namespace, @PathParam("key") String labelKey, @PathParam("value") String labelValue, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        return cached(cluster, namespace, "findByLabelValue", labelKey + '=' + labelValue, acceptEncoding, () -> configMapsService.findByLabel(cluster, namespace, labelKey, labelValue));
+    }
+
+    /**
+     * Write a list response from the response cache.
+     *
+     * @param cluster        the cluster
+     * @param namespace      the namespace
+     * @param endpoint       the endpoint
+     * @param selector       the parameters of the endpoint
+     * @param acceptEncoding the accepted encodings
+     * @param loader         the query to run when the response is not cached
+     * @return the response
+     */
+    private Response cached(String cluster, String namespace, String endpoint, String selector, String acceptEncoding, Supplier<List<ConfigMap>> loader) {
+        var gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        var response = Response.ok(responseCache.get(cluster, namespace, endpoint, selector, gzip, loader), MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.comact.iep.api.kubernetes.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A node of a ConfigMap query.
+ * <p>
+ * AND, OR and NOT nodes combine their children. LABEL, ANNOTATION and DATA_KEY nodes test the entry with the key,
+ * NAME nodes test the name of the ConfigMap. Example :
+ * <pre>
+ * {"type": "AND", "children": [
+ *     {"type": "LABEL", "key": "app", "operator": "EQUALS", "value": "x"},
+ *     {"type": "ANNOTATION", "key": "owner", "operator": "EXISTS"},
+ *     {"type": "NAME", "operator": "PREFIX", "value": "cfg-"},
+ *     {"type": "DATA_KEY", "key": "settings.json", "operator": "EXISTS"}
+ * ]}
+ * </pre>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfigMapQuery {
+
+    /**
+     * The type of node.
+     */
+    public enum Type {
+        AND, OR, NOT, LABEL, ANNOTATION, NAME, DATA_KEY
+    }
+
+    /**
+     * The operator of a condition node.
+     */
+    public enum Operator {
+        EXISTS, NOT_EXISTS, EQUALS, NOT_EQUALS, IN, PREFIX
+    }
+
+    private Type type;
+    private Operator operator;
+    private String key;
+    private String value;
+    private List<String> values = new ArrayList<>();
+    private List<ConfigMapQuery> children = new ArrayList<>();
+
+    /**
+     * Create a condition node.
+     *
+     * @param type     the type
+     * @param key      the key, null for a NAME condition
+     * @param operator the operator
+     * @param value    the value, null for EXISTS and NOT_EXISTS
+     * @return the node
+     */
+    public static ConfigMapQuery condition(Type type, String key, Operator operator, String value) {
+        return new ConfigMapQuery(type, operator, key, value, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Create an AND, OR or NOT node.
+     *
+     * @param type     the type
+     * @param children the children
+     * @return the node
+     */
+    public static ConfigMapQuery combine(Type type, ConfigMapQuery... children) {
+        return new ConfigMapQuery(type, null, null, null, new ArrayList<>(), new ArrayList<>(List.of(children)));
+    }
+}
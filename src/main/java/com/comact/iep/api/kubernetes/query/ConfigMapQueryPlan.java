@@ -0,0 +1,276 @@
+package com.comact.iep.api.kubernetes.query;
+
+import javax.ws.rs.BadRequestException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.comact.iep.api.kubernetes.query.ConfigMapQuery.Operator;
+import com.comact.iep.api.kubernetes.query.ConfigMapQuery.Type;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import lombok.Getter;
+
+/**
+ * The execution plan of a {@link ConfigMapQuery}.
+ * <p>
+ * The conditions of the top level AND that the API server understands are pushed as label and field selectors, at most
+ * one by label key and one on the name. The other conditions are evaluated locally in a single pass, the most
+ * selective and cheapest first.
+ */
+@Getter
+public class ConfigMapQueryPlan {
+    private static final String NAME_FIELD = "metadata.name";
+
+    private final List<ConfigMapQuery> labelSelectors = new ArrayList<>();
+    private String nameSelector;
+    private final List<ConfigMapQuery> localConditions = new ArrayList<>();
+
+    private ConfigMapQueryPlan() {
+    }
+
+    /**
+     * Plan a query.
+     *
+     * @param query the query
+     * @return the plan
+     */
+    public static ConfigMapQueryPlan of(ConfigMapQuery query) {
+        validate(query);
+
+        var plan = new ConfigMapQueryPlan();
+        var labelKeys = new HashSet<String>();
+        for (var condition : conjuncts(query)) {
+            if (!plan.push(condition, labelKeys)) {
+                plan.localConditions.add(condition);
+            }
+        }
+
+        plan.localConditions.sort(Comparator.comparingDouble(ConfigMapQueryPlan::rank));
+        return plan;
+    }
+
+    /**
+     * Add the selectors to a list request.
+     *
+     * @param request the list request
+     * @return the list request with the selectors
+     */
+    public FilterWatchListDeletable<ConfigMap, ConfigMapList> select(FilterWatchListDeletable<ConfigMap, ConfigMapList> request) {
+        for (var condition : labelSelectors) {
+            switch (condition.getOperator()) {
+                case EXISTS:
+                    request = request.withLabel(condition.getKey());
+                    break;
+                case NOT_EXISTS:
+                    request = request.withoutLabel(condition.getKey());
+                    break;
+                case EQUALS:
+                    request = request.withLabel(condition.getKey(), condition.getValue());
+                    break;
+                case NOT_EQUALS:
+                    request = request.withoutLabel(condition.getKey(), condition.getValue());
+                    break;
+                case IN:
+                    request = request.withLabelIn(condition.getKey(), condition.getValues().toArray(new String[0]));
+                    break;
+                default:
+                    throw new IllegalStateException("Operator " + condition.getOperator() + " can't be pushed");
+            }
+        }
+
+        if (nameSelector != null) {
+            request = request.withField(NAME_FIELD, nameSelector);
+        }
+
+        return request;
+    }
+
+    /**
+     * Evaluate the local conditions.
+     *
+     * @param configMap the config map returned by the API server
+     * @return true if the config map matches
+     */
+    public boolean matches(ConfigMap configMap) {
+        for (var condition : localConditions) {
+            if (!matches(condition, configMap)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean push(ConfigMapQuery condition, Set<String> labelKeys) {
+        if (condition.getType() == Type.LABEL && condition.getOperator() != Operator.PREFIX && labelKeys.add(condition.getKey())) {
+            labelSelectors.add(condition);
+            return true;
+        }
+        if (condition.getType() == Type.NAME && condition.getOperator() == Operator.EQUALS && nameSelector == null) {
+            nameSelector = condition.getValue();
+            return true;
+        }
+        return false;
+    }
+
+    private static List<ConfigMapQuery> conjuncts(ConfigMapQuery query) {
+        if (query.getType() != Type.AND) {
+            return List.of(query);
+        }
+
+        List<ConfigMapQuery> conjuncts = new ArrayList<>();
+        for (var child : query.getChildren()) {
+            conjuncts.addAll(conjuncts(child));
+        }
+        return conjuncts;
+    }
+
+    private static boolean matches(ConfigMapQuery node, ConfigMap configMap) {
+        switch (node.getType()) {
+            case AND:
+                return node.getChildren().stream().allMatch(child -> matches(child, configMap));
+            case OR:
+                return node.getChildren().stream().anyMatch(child -> matches(child, configMap));
+            case NOT:
+                return !matches(node.getChildren().get(0), configMap);
+            case LABEL:
+                return matches(node, configMap.getMetadata().getLabels());
+            case ANNOTATION:
+                return matches(node, configMap.getMetadata().getAnnotations());
+            case DATA_KEY:
+                if (node.getOperator() == Operator.EXISTS || node.getOperator() == Operator.NOT_EXISTS) {
+                    var present = (configMap.getData() != null && configMap.getData().containsKey(node.getKey())) ||
+                            (configMap.getBinaryData() != null && configMap.getBinaryData().containsKey(node.getKey()));
+                    return present == (node.getOperator() == Operator.EXISTS);
+                }
+                return matches(node, configMap.getData());
+            case NAME:
+                return matches(node, configMap.getMetadata().getName());
+            default:
+                throw new IllegalStateException("Unknown type " + node.getType());
+        }
+    }
+
+    private static boolean matches(ConfigMapQuery node, Map<String, String> entries) {
+        var present = entries != null && entries.containsKey(node.getKey());
+
+        switch (node.getOperator()) {
+            case EXISTS:
+                return present;
+            case NOT_EXISTS:
+                return !present;
+            default:
+                return matches(node, present ? entries.get(node.getKey()) : null);
+        }
+    }
+
+    private static boolean matches(ConfigMapQuery node, String value) {
+        switch (node.getOperator()) {
+            case EXISTS:
+                return true;
+            case NOT_EXISTS:
+                return false;
+            case EQUALS:
+                return node.getValue().equals(value);
+            case NOT_EQUALS:
+                return !node.getValue().equals(value);
+            case IN:
+                return value != null && node.getValues().contains(value);
+            case PREFIX:
+                return value != null && value.startsWith(node.getValue());
+            default:
+                throw new IllegalStateException("Unknown operator " + node.getOperator());
+        }
+    }
+
+    /**
+     * Order of evaluation, lower first : the fraction of config maps that are dropped by unit of cost.
+     */
+    private static double rank(ConfigMapQuery node) {
+        return -(1 - selectivity(node)) / cost(node);
+    }
+
+    /**
+     * Estimated fraction of config maps that match.
+     */
+    private static double selectivity(ConfigMapQuery node) {
+        switch (node.getType()) {
+            case AND:
+                return node.getChildren().stream().mapToDouble(ConfigMapQueryPlan::selectivity).reduce(1, (a, b) -> a * b);
+            case OR:
+                return 1 - node.getChildren().stream().mapToDouble(child -> 1 - selectivity(child)).reduce(1, (a, b) -> a * b);
+            case NOT:
+                return 1 - selectivity(node.getChildren().get(0));
+            default:
+                switch (node.getOperator()) {
+                    case EQUALS:
+                        return 0.1;
+                    case IN:
+                        return Math.min(0.5, 0.1 * node.getValues().size());
+                    case PREFIX:
+                        return 0.2;
+                    case NOT_EQUALS:
+                        return 0.9;
+                    default:
+                        return 0.5;
+                }
+        }
+    }
+
+    /**
+     * Relative cost of an evaluation.
+     */
+    private static double cost(ConfigMapQuery node) {
+        switch (node.getType()) {
+            case AND:
+            case OR:
+            case NOT:
+                return node.getChildren().stream().mapToDouble(ConfigMapQueryPlan::cost).sum();
+            case NAME:
+                return 1;
+            case DATA_KEY:
+                return 3;
+            default:
+                return 2;
+        }
+    }
+
+    private static void validate(ConfigMapQuery node) {
+        if (node == null || node.getType() == null) {
+            throw new BadRequestException("Each node of the query needs a type");
+        }
+
+        switch (node.getType()) {
+            case AND:
+            case OR:
+                if (node.getChildren() == null || node.getChildren().isEmpty()) {
+                    throw new BadRequestException(node.getType() + " needs at least one child");
+                }
+                node.getChildren().forEach(ConfigMapQueryPlan::validate);
+                break;
+            case NOT:
+                if (node.getChildren() == null || node.getChildren().size() != 1) {
+                    throw new BadRequestException("NOT needs exactly one child");
+                }
+                validate(node.getChildren().get(0));
+                break;
+            default:
+                if (node.getOperator() == null) {
+                    throw new BadRequestException(node.getType() + " needs an operator");
+                }
+                if (node.getType() != Type.NAME && node.getKey() == null) {
+                    throw new BadRequestException(node.getType() + " needs a key");
+                }
+                if (node.getOperator() == Operator.IN && (node.getValues() == null || node.getValues().isEmpty())) {
+                    throw new BadRequestException("IN needs values");
+                }
+                if ((node.getOperator() == Operator.EQUALS || node.getOperator() == Operator.NOT_EQUALS || node.getOperator() == Operator.PREFIX) && node.getValue() == null) {
+                    throw new BadRequestException(node.getOperator() + " needs a value");
+                }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.comact.iep.api.kubernetes.service;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.BadRequestException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.comact.iep.api.kubernetes.service.KubernetesApiRateLimiter.Verb;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sorted index of the ConfigMap names, by cluster and namespace.
+ * <p>
+ * A namespace is listed and watched in the background the first time it is searched, then the index is kept current
+ * from the watch events. Until it is loaded, the searches of the namespace list it. A prefix lookup is a range of the
+ * sorted names, so it costs O(log n + matches) instead of a list of the whole namespace. Only the names are indexed,
+ * the matching config maps are read by name, or with a single list of the namespace when there are more than
+ * kubernetes-api.name-index.max-gets of them. If the watch is closed by the API server, the namespace is dropped and
+ * loaded again on the next search.
+ * <p>
+ * A namespace not searched for kubernetes-api.name-index.idle-timeout is dropped and its watch closed. At most
+ * kubernetes-api.name-index.max-namespaces namespaces are indexed, the least recently searched one is dropped first.
+ * <p>
+ * The listeners are notified of every change in a watched namespace, and when a namespace stops being watched.
+ */
+@Slf4j
+@ApplicationScoped
+public class ConfigMapNameIndex {
+
+    /**
+     * The ways to match a name.
+     */
+    public enum Match {
+        PREFIX, GLOB, REGEX
+    }
+
+    private final KubernetesClusters kubernetesClusters;
+    private final KubernetesApiRateLimiter rateLimiter;
+    private final int maxNamespaces;
+    private final int maxGets;
+    private final long idleTimeoutNanos;
+    private final Map<String, NamespaceIndex> indexes = new ConcurrentHashMap<>();
+    // the same indexes from the least to the most recently searched, guarded by itself
+    private final LinkedHashMap<String, NamespaceIndex> searchOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sweeper;
+    private final ExecutorService loader;
+
+    /**
+     * Instantiates a new name index.
+     *
+     * @param kubernetesClusters the kubernetes clusters
+     * @param rateLimiter        the rate limiter in front of the API server
+     * @param maxNamespaces      the max number of indexed namespaces
+     * @param maxGets            the max number of matches read by name, more are read with a list of the namespace
+     * @param idleTimeout        the time after which a namespace not searched is dropped
+     */
+    public ConfigMapNameIndex(KubernetesClusters kubernetesClusters, KubernetesApiRateLimiter rateLimiter,
+                              @ConfigProperty(name = "kubernetes-api.name-index.max-namespaces", defaultValue = "256") int maxNamespaces,
+                              @ConfigProperty(name = "kubernetes-api.name-index.max-gets", defaultValue = "8") int maxGets,
+                              @ConfigProperty(name = "kubernetes-api.name-index.idle-timeout", defaultValue = "10M") Duration idleTimeout) {
+        this.kubernetesClusters = kubernetesClusters;
+        this.rateLimiter = rateLimiter;
+        this.maxNamespaces = Math.max(1, maxNamespaces);
+        this.maxGets = maxGets;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "name-index-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = Math.max(1, Math.min(idleTimeout.toSeconds() / 2, 60));
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.SECONDS);
+
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "name-index-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Find the config maps with a name matching a pattern, sorted by name.
+     *
+     * @param cluster   the cluster
+     * @param namespace the namespace
+     * @param match     the way to match the name
+     * @param pattern   the prefix, glob or regex
+     * @return the list
+     */
+    public List<ConfigMap> search(String cluster, String namespace, Match match, String pattern) {
+        var name = kubernetesClusters.resolve(cluster);
+        var index = index(name, namespace);
+
+        if (!index.started) {
+            // the index is loaded in the background
+            var byName = new TreeMap<String, ConfigMap>();
+            list(name, namespace).forEach(configMap -> byName.put(configMap.getMetadata().getName(), configMap));
+            return matches(byName.navigableKeySet(), match, pattern).stream().map(byName::get).collect(Collectors.toList());
+        }
+        return read(name, namespace, matches(index.names, match, pattern));
+    }
+
+    /**
+     * Whether a namespace is watched, because it was searched recently. A namespace is not indexed by this call.
+     *
+     * @param cluster   the resolved name of the cluster
+     * @param namespace the namespace
+     * @return true if the listeners are notified of the changes in the namespace
+     */
+    public boolean isWatched(String cluster, String namespace) {
+        var index = indexes.get(cluster + '/' + namespace);
+        return index != null && index.started;
+    }
+
+    /**
+     * Add a listener called with the cluster and the namespace each time a config map changes in a watched namespace,
+     * or when the watch of a namespace is lost.
+     *
+     * @param listener the listener
+     */
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    void close() {
+        sweeper.shutdownNow();
+        loader.shutdownNow();
+        indexes.values().forEach(NamespaceIndex::close);
+    }
+
+    private NamespaceIndex index(String cluster, String namespace) {
+        var key = cluster + '/' + namespace;
+        NamespaceIndex index;
+        NamespaceIndex leastRecent = null;
+        var created = false;
+        synchronized (searchOrder) {
+            // moved to the end of the search order
+            index = searchOrder.get(key);
+            if (index == null) {
+                index = new NamespaceIndex(key, cluster, namespace);
+                searchOrder.put(key, index);
+                indexes.put(key, index);
+                created = true;
+                if (searchOrder.size() > maxNamespaces) {
+                    leastRecent = searchOrder.values().iterator().next();
+                    searchOrder.remove(leastRecent.key);
+                    indexes.remove(leastRecent.key);
+                }
+            }
+            index.lastSearch = System.nanoTime();
+        }
+
+        if (leastRecent != null) {
+            dropped(leastRecent, "the max of indexed namespaces is reached");
+        }
+        if (created) {
+            loader.execute(index::load);
+        }
+        return index;
+    }
+
+    private List<ConfigMap> list(String cluster, String namespace) {
+        var kubernetesClient = kubernetesClusters.client(cluster);
+        return rateLimiter.execute(cluster, Verb.LIST, namespace, () -> kubernetesClient.configMaps().inNamespace(namespace).list()).getItems();
+    }
+
+    /**
+     * Read the config maps by name, the ones deleted since they were indexed are left out.
+     */
+    private List<ConfigMap> read(String cluster, String namespace, List<String> names) {
+        if (names.size() > maxGets) {
+            var wanted = new HashSet<>(names);
+            return list(cluster, namespace).stream()
+                    .filter(configMap -> wanted.contains(configMap.getMetadata().getName()))
+                    .sorted((first, second) -> first.getMetadata().getName().compareTo(second.getMetadata().getName()))
+                    .collect(Collectors.toList());
+        }
+
+        var kubernetesClient = kubernetesClusters.client(cluster);
+        return names.stream()
+                .map(name -> rateLimiter.execute(cluster, Verb.GET, namespace, () -> kubernetesClient.configMaps().inNamespace(namespace).withName(name).get()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The names matching a pattern, sorted.
+     */
+    static List<String> matches(NavigableSet<String> names, Match match, String pattern) {
+        switch (match) {
+            case PREFIX:
+                return new ArrayList<>(range(names, pattern));
+            case GLOB:
+                return filter(range(names, globPrefix(pattern)), compile(globToRegex(pattern)));
+            case REGEX:
+                return filter(range(names, regexPrefix(pattern)), compile(pattern));
+            default:
+                throw new IllegalStateException("Unknown match " + match);
+        }
+    }
+
+    /**
+     * Drop the namespaces not searched for the idle timeout.
+     */
+    void sweep() {
+        var now = System.nanoTime();
+        List<NamespaceIndex> idle = new ArrayList<>();
+        synchronized (searchOrder) {
+            // from the least recently searched, up to the first one still in use
+            for (var iterator = searchOrder.values().iterator(); iterator.hasNext(); ) {
+                var index = iterator.next();
+                if (now - index.lastSearch <= idleTimeoutNanos) {
+                    break;
+                }
+                iterator.remove();
+                indexes.remove(index.key);
+                idle.add(index);
+            }
+        }
+        idle.forEach(index -> dropped(index, "it was not searched recently"));
+    }
+
+    private void evict(NamespaceIndex index, String reason) {
+        synchronized (searchOrder) {
+            if (!searchOrder.remove(index.key, index)) {
+                return;
+            }
+            indexes.remove(index.key);
+        }
+        dropped(index, reason);
+    }
+
+    private void dropped(NamespaceIndex index, String reason) {
+        log.debug("Name index of [{}] dropped, {}", index.key, reason);
+        index.close();
+        // the namespace is not watched anymore
+        listeners.forEach(listener -> listener.accept(index.cluster, index.namespace));
+    }
+
+    private static NavigableSet<String> range(NavigableSet<String> names, String prefix) {
+        if (prefix.isEmpty()) {
+            return names;
+        }
+        return names.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * The names where the pattern is found, a pattern matches the whole name only if anchored.
+     */
+    static List<String> filter(NavigableSet<String> names, Pattern pattern) {
+        List<String> matches = new ArrayList<>();
+        for (var name : names) {
+            if (pattern.matcher(name).find()) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+
+    private static Pattern compile(String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new BadRequestException("Invalid pattern [" + regex + "] : " + e.getDescription());
+        }
+    }
+
+    /**
+     * The literal part of a glob before the first wildcard.
+     */
+    static String globPrefix(String glob) {
+        var end = 0;
+        while (end < glob.length() && "*?[\\".indexOf(glob.charAt(end)) < 0) {
+            end++;
+        }
+        return glob.substring(0, end);
+    }
+
+    /**
+     * Translate a glob with *, ? and [...] to a regex anchored on the whole name, [!...] is a negated class.
+     */
+    static String globToRegex(String glob) {
+        var regex = new StringBuilder("^");
+        var inClass = false;
+        var classStart = false;
+        for (var c : glob.toCharArray()) {
+            if (inClass) {
+                if (classStart && c == '!') {
+                    regex.append('^');
+                } else {
+                    regex.append(c);
+                    inClass = c != ']';
+                }
+                classStart = false;
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[') {
+                regex.append(c);
+                inClass = true;
+                classStart = true;
+            } else if (Character.isLetterOrDigit(c)) {
+                regex.append(c);
+            } else {
+                regex.append('\\').append(c);
+            }
+        }
+        return regex.append('$').toString();
+    }
+
+    /**
+     * The literal part of an anchored regex, empty if the regex is not anchored, has alternatives or starts with a meta
+     * character.
+     */
+    static String regexPrefix(String regex) {
+        if (!regex.startsWith("^") || regex.indexOf('|') >= 0) {
+            return "";
+        }
+        var end = 1;
+        while (end < regex.length() && (Character.isLetterOrDigit(regex.charAt(end)) || regex.charAt(end) == '-')) {
+            end++;
+        }
+        // the last literal can be made optional by a quantifier
+        if (end < regex.length() && "?*{".indexOf(regex.charAt(end)) >= 0) {
+            end--;
+        }
+        return regex.substring(1, Math.max(1, end));
+    }
+
+    /**
+     * The index of a namespace.
+     */
+    private class NamespaceIndex implements Watcher<ConfigMap> {
+        private final String key;
+        private final String cluster;
+        private final String namespace;
+        private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+        private volatile boolean started;
+        private volatile long lastSearch = System.nanoTime();
+        // guarded by the index
+        private boolean closed;
+        private Watch watch;
+
+        NamespaceIndex(String key, String cluster, String namespace) {
+            this.key = key;
+            this.cluster = cluster;
+            this.namespace = namespace;
+        }
+
+        /**
+         * List and watch the namespace, run by the loader thread.
+         */
+        void load() {
+            try {
+                if (isClosed()) {
+                    return;
+                }
+                var kubernetesClient = kubernetesClusters.client(cluster);
+                var list = rateLimiter.execute(cluster, Verb.LIST, namespace, () -> kubernetesClient.configMaps().inNamespace(namespace).list());
+                list.getItems().forEach(configMap -> names.add(configMap.getMetadata().getName()));
+
+                var opened = kubernetesClient.configMaps().inNamespace(namespace)
+                        .watch(new ListOptionsBuilder().withResourceVersion(list.getMetadata().getResourceVersion()).build(), this);
+                synchronized (this) {
+                    // dropped during the load
+                    if (closed) {
+                        opened.close();
+                        return;
+                    }
+                    watch = opened;
+                    started = true;
+                }
+
+                log.debug("Name index of [{}] started with [{}] config maps", key, names.size());
+            } catch (RuntimeException e) {
+                log.warn("Name index of [{}] not loaded, it will be loaded again on next search", key, e);
+                evict(this, "it was not loaded");
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, ConfigMap configMap) {
+            switch (action) {
+                case ADDED:
+                case MODIFIED:
+                    names.add(configMap.getMetadata().getName());
+                    break;
+                case DELETED:
+                    names.remove(configMap.getMetadata().getName());
+                    break;
+                default:
+                    log.warn("Unexpected watch event [{}] for name index of [{}]", action, key);
+                    return;
+            }
+
+            listeners.forEach(listener -> listener.accept(cluster, namespace));
+        }
+
+        @Override
+        public void onClose(WatcherException cause) {
+            log.warn("Watch of name index [{}] closed, it will be loaded again on next search", key, cause);
+            evict(this, "its watch was closed");
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (watch != null) {
+                watch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.comact.iep.api.kubernetes.service;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.quarkus.runtime.configuration.MemorySize;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of the serialized responses of the list endpoints.
+ * <p>
+ * A response is kept as JSON bytes, and gzip bytes once a client asked for them, under the endpoint and the selector,
+ * grouped by cluster and namespace. Only the namespaces already watched by {@link ConfigMapNameIndex}, because they
+ * were searched, are cached, every change in such a namespace drops all its responses at once. The other namespaces are
+ * queried each time, the cache never starts a watch.
+ * <p>
+ * The hits take no lock, they only record the time of the access. Above kubernetes-api.response-cache.max-size, a
+ * single thread evicts the least recently accessed responses, an approximate LRU, down to nine tenths of the max size
+ * so that the evictions are not run on every miss.
+ */
+@Slf4j
+@ApplicationScoped
+public class ConfigMapResponseCache {
+
+    @ConfigProperty(name = "kubernetes-api.response-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "kubernetes-api.response-cache.max-size", defaultValue = "64M")
+    MemorySize maxSize;
+
+    @Inject
+    ConfigMapNameIndex nameIndex;
+
+    @Inject
+    KubernetesClusters kubernetesClusters;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    private final Map<String, Map<String, Entry>> namespaces = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final ReentrantLock evicting = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        nameIndex.addListener(this::invalidate);
+
+        metricRegistry.register(Metadata.builder()
+                .withName("kubernetes-api.response-cache.size")
+                .withDescription("Bytes of the cached responses")
+                .withType(MetricType.GAUGE)
+                .withUnit(MetricUnits.BYTES)
+                .build(), (Gauge<Long>) size::get);
+    }
+
+    /**
+     * The serialized response of a list endpoint.
+     *
+     * @param cluster   the cluster
+     * @param namespace the namespace
+     * @param endpoint  the endpoint
+     * @param selector  the parameters of the endpoint
+     * @param gzip      true to get the gzip bytes
+     * @param loader    the query to run when the response is not cached
+     * @return the JSON bytes, gzip compressed if asked
+     */
+    public byte[] get(String cluster, String namespace, String endpoint, String selector, boolean gzip, Supplier<List<ConfigMap>> loader) {
+        if (!enabled || kubernetesClusters.isAllClusters(cluster)) {
+            var json = serialize(loader.get());
+            return gzip ? gzip(json) : json;
+        }
+
+        var name = kubernetesClusters.resolve(cluster);
+        var namespaceKey = namespaceKey(name, namespace);
+        var responses = nameIndex.isWatched(name, namespace) ? namespaces.computeIfAbsent(namespaceKey, k -> new ConcurrentHashMap<>()) : null;
+        // checked again once the map is taken, a namespace no longer watched after that drops the map
+        if (responses == null || !nameIndex.isWatched(name, namespace)) {
+            metricRegistry.counter("kubernetes-api.response-cache.misses").inc();
+            var json = serialize(loader.get());
+            return gzip ? gzip(json) : json;
+        }
+
+        var key = endpoint + '\n' + selector;
+        var entry = responses.get(key);
+        if (entry == null) {
+            metricRegistry.counter("kubernetes-api.response-cache.misses").inc();
+            entry = new Entry(serialize(loader.get()));
+            put(namespaceKey, responses, key, entry);
+        } else {
+            entry.lastAccess = System.nanoTime();
+            metricRegistry.counter("kubernetes-api.response-cache.hits").inc();
+        }
+
+        return gzip ? entry.gzip() : entry.json;
+    }
+
+    /**
+     * Drop the responses of a namespace.
+     *
+     * @param cluster   the cluster
+     * @param namespace the namespace
+     */
+    public void invalidate(String cluster, String namespace) {
+        var responses = namespaces.remove(namespaceKey(cluster, namespace));
+        if (responses != null) {
+            responses.forEach((key, entry) -> remove(responses, key, entry));
+        }
+    }
+
+    private void put(String namespaceKey, Map<String, Entry> responses, String key, Entry entry) {
+        // accounted before it is visible, a concurrent removal can't happen first
+        synchronized (entry) {
+            entry.cached = true;
+            size.addAndGet(entry.size());
+        }
+        var previous = responses.put(key, entry);
+        if (previous != null) {
+            uncount(previous);
+        }
+        // the namespace changed during the query, the response may be stale
+        if (namespaces.get(namespaceKey) != responses) {
+            remove(responses, key, entry);
+        }
+        evict();
+    }
+
+    private void addGzip(Entry entry, byte[] bytes) {
+        synchronized (entry) {
+            if (entry.gzip != null) {
+                return;
+            }
+            entry.gzip = bytes;
+            if (entry.cached) {
+                size.addAndGet(bytes.length);
+            }
+        }
+        evict();
+    }
+
+    private void remove(Map<String, Entry> responses, String key, Entry entry) {
+        if (responses.remove(key, entry)) {
+            uncount(entry);
+        }
+    }
+
+    private void uncount(Entry entry) {
+        synchronized (entry) {
+            entry.cached = false;
+            size.addAndGet(-entry.size());
+        }
+    }
+
+    private void evict() {
+        var max = maxSize.asLongValue();
+        // a single thread evicts, the others go on
+        if (size.get() <= max || !evicting.tryLock()) {
+            return;
+        }
+        try {
+            var target = max - max / 10;
+            // the access times are read once, the hits go on during the sort
+            List<Candidate> candidates = new ArrayList<>();
+            namespaces.values().forEach(responses -> responses.forEach((key, entry) -> candidates.add(new Candidate(responses, key, entry, entry.lastAccess))));
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+            for (var candidate : candidates) {
+                if (size.get() <= target) {
+                    break;
+                }
+                remove(candidate.responses, candidate.key, candidate.entry);
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    private byte[] serialize(List<ConfigMap> configMaps) {
+        try {
+            return objectMapper.writeValueAsBytes(configMaps);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        var bytes = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (var gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String namespaceKey(String cluster, String namespace) {
+        return cluster + '/' + namespace;
+    }
+
+    /**
+     * A cached response.
+     */
+    private class Entry {
+        private final byte[] json;
+        private volatile byte[] gzip;
+        // guarded by the entry
+        private boolean cached;
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(byte[] json) {
+            this.json = json;
+        }
+
+        byte[] gzip() {
+            var bytes = gzip;
+            if (bytes == null) {
+                addGzip(this, ConfigMapResponseCache.gzip(json));
+                bytes = gzip;
+            }
+            return bytes;
+        }
+
+        int size() {
+            var bytes = gzip;
+            return json.length + (bytes == null ? 0 : bytes.length);
+        }
+    }
+
+    /**
+     * A response to evict, with its access time when the eviction started.
+     */
+    private static class Candidate {
+        private final Map<String, Entry> responses;
+        private final String key;
+        private final Entry entry;
+        private final long lastAccess;
+
+        Candidate(Map<String, Entry> responses, String key, Entry entry, long lastAccess) {
+            this.responses = responses;
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -5,145 +5,187 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
+import com.comact.iep.api.kubernetes.query.ConfigMapQuery;
+import com.comact.iep.api.kubernetes.query.ConfigMapQueryPlan;
+import com.comact.iep.api.kubernetes.service.KubernetesApiRateLimiter.Verb;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * The type Config maps service.
+ * <p>
+ * Every method takes the cluster to query, null means the default cluster. The list methods also accept
+ * {@link KubernetesClusters#ALL_CLUSTERS} to query every cluster.
  */
 @Slf4j
 @ApplicationScoped
 public class ConfigMapsService {
-    private final KubernetesClient kubernetesClient;
+    private final KubernetesClusters kubernetesClusters;
+    private final KubernetesApiRateLimiter rateLimiter;
+    private final ConfigMapNameIndex nameIndex;
+    private final Tracer tracer;
 
     /**
      * Instantiates a new Config maps service.
      *
-     * @param kubernetesClient the kubernetes client
+     * @param kubernetesClusters the kubernetes clusters
+     * @param rateLimiter        the rate limiter in front of the API server
+     * @param nameIndex          the index of the config maps by name
+     * @param tracer             the tracer of the requests to the API server
      */
-    public ConfigMapsService(KubernetesClient kubernetesClient) {
-        this.kubernetesClient = kubernetesClient;
+    public ConfigMapsService(KubernetesClusters kubernetesClusters, KubernetesApiRateLimiter rateLimiter, ConfigMapNameIndex nameIndex, Tracer tracer) {
+        this.kubernetesClusters = kubernetesClusters;
+        this.rateLimiter = rateLimiter;
+        this.nameIndex = nameIndex;
+        this.tracer = tracer;
     }
 
     /**
      * Config maps list.
      *
+     * @param cluster the cluster
      * @return the list
      */
-    public List<ConfigMap> configMaps() {
-        return kubernetesClient.configMaps().list().getItems();
+    public List<ConfigMap> configMaps(String cluster) {
+        return list(cluster, null, kubernetesClient -> kubernetesClient.configMaps().list().getItems());
     }
 
     /**
      * Config maps within namespace.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @return the list
      */
-    public List<ConfigMap> configMapsWithNamespace(String namespace) {
-        return kubernetesClient.configMaps().inNamespace(namespace).list().getItems();
+    public List<ConfigMap> configMapsWithNamespace(String cluster, String namespace) {
+        return list(cluster, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).list().getItems());
     }
 
     /**
      * Config maps within namespace with label.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param label     the label
      * @return the list
      */
-    public List<ConfigMap> configMapsWithNamespaceWithLabel(String namespace, String label) {
-        return kubernetesClient.configMaps().inNamespace(namespace).withLabel(label).list().getItems();
+    public List<ConfigMap> configMapsWithNamespaceWithLabel(String cluster, String namespace, String label) {
+        return list(cluster, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).withLabel(label).list().getItems());
     }
 
     /**
      * Config maps within namespace with label value.
      *
+     * @param cluster    the cluster
      * @param namespace  the namespace
      * @param label      the label
      * @param labelValue the label value
      * @return the list
      */
-    public List<ConfigMap> configMapsWithNamespaceWithLabelValue(String namespace, String label, String labelValue) {
-        return kubernetesClient.configMaps().inNamespace(namespace).withLabel(label, labelValue).list().getItems();
+    public List<ConfigMap> configMapsWithNamespaceWithLabelValue(String cluster, String namespace, String label, String labelValue) {
+        return list(cluster, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).withLabel(label, labelValue).list().getItems());
     }
 
     /**
      * Create config map.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param configMap the config map
      * @return the config map
      */
-    public ConfigMap create(String namespace, ConfigMap configMap) {
-        return kubernetesClient.configMaps().inNamespace(namespace).create(configMap);
+    public ConfigMap create(String cluster, String namespace, ConfigMap configMap) {
+        return call(cluster, Verb.CREATE, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).create(configMap));
     }
 
     /**
      * Update config map.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param configMap the config map
      * @return the config map
      */
-    public ConfigMap update(String namespace, ConfigMap configMap) {
-        return kubernetesClient.configMaps().inNamespace(namespace).createOrReplace(configMap);
+    public ConfigMap update(String cluster, String namespace, ConfigMap configMap) {
+        return call(cluster, Verb.UPDATE, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).createOrReplace(configMap));
     }
 
     /**
      * Delete resource.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param configMap the config map
      * @return the boolean
      */
-    public boolean delete(String namespace, ConfigMap configMap) {
-        return kubernetesClient.configMaps().inNamespace(namespace).delete(configMap);
+    public boolean delete(String cluster, String namespace, ConfigMap configMap) {
+        return call(cluster, Verb.DELETE, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).delete(configMap));
     }
 
     /**
      * Delete resource.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param name      the name
      * @return the boolean
      */
-    public boolean delete(String namespace, String name) {
-        var configMap = configMapsWithNamespaceWithName(namespace, name);
+    public boolean delete(String cluster, String namespace, String name) {
+        var configMap = configMapsWithNamespaceWithName(cluster, namespace, name);
         if (configMap == null) {
             log.error("ConfigMap [{}] in namespace [{}] is not found", name, namespace);
             return false;
         }
-        return kubernetesClient.configMaps().inNamespace(namespace).delete(configMap);
+        return call(cluster, Verb.DELETE, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).delete(configMap));
     }
 
     /**
      * Config maps within namespace with name config map.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param name      the name
      * @return the config map
      */
-    public ConfigMap configMapsWithNamespaceWithName(String namespace, String name) {
-        return kubernetesClient.configMaps().inNamespace(namespace).withName(name).get();
+    public ConfigMap configMapsWithNamespaceWithName(String cluster, String namespace, String name) {
+        return call(cluster, Verb.GET, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).withName(name).get());
+    }
+
+    /**
+     * Find config maps by name prefix, glob or regex, sorted by name.
+     *
+     * @param cluster   the cluster
+     * @param namespace the namespace
+     * @param match     the way to match the name
+     * @param pattern   the prefix, glob or regex
+     * @return the list
+     */
+    public List<ConfigMap> findByName(String cluster, String namespace, ConfigMapNameIndex.Match match, String pattern) {
+        if (kubernetesClusters.isAllClusters(cluster)) {
+            return kubernetesClusters.fanOut(name -> nameIndex.search(name, namespace, match, pattern));
+        }
+        return nameIndex.search(cluster, namespace, match, pattern);
     }
 
     /**
      * Add annotation.
      *
+     * @param cluster         the cluster
      * @param namespace       the namespace
      * @param name            the name
      * @param annotationKey   the annotation key
      * @param annotationValue the annotation value
      */
-    public void addAnnotation(String namespace, String name, String annotationKey, String annotationValue) {
-        var scalableResource = kubernetesClient.configMaps().inNamespace(namespace).withName(name);
-
+    public void addAnnotation(String cluster, String namespace, String name, String annotationKey, String annotationValue) {
         // get resources
-        var resource = scalableResource.get();
+        var resource = configMapsWithNamespaceWithName(cluster, namespace, name);
 
         if (resource != null) {
             // add annotation
@@ -153,23 +195,22 @@ public class ConfigMapsService {
             resource.getMetadata().getAnnotations().put(annotationKey, annotationValue);
 
             // save resource
-            scalableResource.replace(resource);
+            call(cluster, Verb.UPDATE, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).withName(name).replace(resource));
         }
     }
 
     /**
      * Add label.
      *
+     * @param cluster    the cluster
      * @param namespace  the namespace
      * @param name       the name
      * @param labelKey   the label key
      * @param labelValue the label value
      */
-    public void addLabel(String namespace, String name, String labelKey, String labelValue) {
-        var scalableResource = kubernetesClient.configMaps().inNamespace(namespace).withName(name);
-
+    public void addLabel(String cluster, String namespace, String name, String labelKey, String labelValue) {
         // get resources
-        var resource = scalableResource.get();
+        var resource = configMapsWithNamespaceWithName(cluster, namespace, name);
 
         if (resource != null) {
             // add label
@@ -180,22 +221,23 @@ public class ConfigMapsService {
             resource.getMetadata().getLabels().put(labelKey, labelValue);
 
             // save resource
-            scalableResource.replace(resource);
+            call(cluster, Verb.UPDATE, namespace, kubernetesClient -> kubernetesClient.configMaps().inNamespace(namespace).withName(name).replace(resource));
         }
     }
 
     /**
      * Find resources by annotation.
      *
+     * @param cluster       the cluster
      * @param namespace     the namespace
      * @param annotationKey the annotation key
      * @return the list
      */
-    public List<ConfigMap> findByAnnotation(String namespace, String annotationKey) {
+    public List<ConfigMap> findByAnnotation(String cluster, String namespace, String annotationKey) {
         // get resources
-        var resources = kubernetesClient.configMaps().inNamespace(namespace).list();
+        var resources = configMapsWithNamespace(cluster, namespace);
 
-        return resources.getItems().stream()
+        return resources.stream()
                 .filter(configMap -> configMap.getMetadata().getAnnotations() != null &&
                         configMap.getMetadata().getAnnotations().containsKey(annotationKey))
                 .collect(Collectors.toList());
@@ -204,16 +246,17 @@ public class ConfigMapsService {
     /**
      * Find resources by annotation.
      *
+     * @param cluster         the cluster
      * @param namespace       the namespace
      * @param annotationKey   the annotation key
      * @param annotationValue the annotation value
      * @return the list
      */
-    public List<ConfigMap> findByAnnotation(String namespace, String annotationKey, String annotationValue) {
+    public List<ConfigMap> findByAnnotation(String cluster, String namespace, String annotationKey, String annotationValue) {
         // get resources
-        var resources = kubernetesClient.configMaps().inNamespace(namespace).list();
+        var resources = configMapsWithNamespace(cluster, namespace);
 
-        return resources.getItems().stream()
+        return resources.stream()
                 .filter(configMap -> configMap.getMetadata().getAnnotations() != null &&
                         configMap.getMetadata().getAnnotations().containsKey(annotationKey) &&
                         configMap.getMetadata().getAnnotations().get(annotationKey).equals(annotationValue))
@@ -223,15 +266,16 @@ public class ConfigMapsService {
     /**
      * Find resources by annotations
      *
+     * @param cluster     the cluster
      * @param namespace   the namespace
      * @param annotations the annotations
      * @return the list
      */
-    public List<ConfigMap> findByAnnotations(String namespace, Map<String, String> annotations) {
+    public List<ConfigMap> findByAnnotations(String cluster, String namespace, Map<String, String> annotations) {
         // get resources
-        var resources = kubernetesClient.configMaps().inNamespace(namespace).list();
+        var resources = configMapsWithNamespace(cluster, namespace);
 
-        return resources.getItems().stream()
+        return resources.stream()
                 .filter(configMap -> configMap.getMetadata().getAnnotations() != null &&
                         configMap.getMetadata().getAnnotations().entrySet().containsAll(annotations.entrySet()))
                 .collect(Collectors.toList());
@@ -240,29 +284,29 @@ public class ConfigMapsService {
     /**
      * Find resources by labels.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param labels    the labels
      * @return the list
      */
-    public List<ConfigMap> findByLabels(String namespace, Map<String, String> labels) {
+    public List<ConfigMap> findByLabels(String cluster, String namespace, Map<String, String> labels) {
         // get resources
-        var resources = kubernetesClient.configMaps().inNamespace(namespace).withLabels(labels).list();
-
-        return new ArrayList<>(resources.getItems());
+        return list(cluster, namespace, kubernetesClient -> new ArrayList<>(kubernetesClient.configMaps().inNamespace(namespace).withLabels(labels).list().getItems()));
     }
 
     /**
      * Find resources by label.
      *
+     * @param cluster   the cluster
      * @param namespace the namespace
      * @param labelKey  the label key
      * @return the list
      */
-    public List<ConfigMap> findByLabel(String namespace, String labelKey) {
+    public List<ConfigMap> findByLabel(String cluster, String namespace, String labelKey) {
         // get resources
-        var resources = kubernetesClient.configMaps().inNamespace(namespace).list();
+        var resources = configMapsWithNamespace(cluster, namespace);
 
-        return resources.getItems().stream()
+        return resources.stream()
                 .filter(configMap -> configMap.getMetadata().getLabels() != null &&
                         configMap.getMetadata().getLabels().containsKey(labelKey))
                 .collect(Collectors.toList());
@@ -271,19 +315,87 @@ public class ConfigMapsService {
     /**
      * Find resources by label.
      *
+     * @param cluster    the cluster
      * @param namespace  the namespace
      * @param labelKey   the label key
      * @param labelValue the label value
      * @return the list
      */
-    public List<ConfigMap> findByLabel(String namespace, String labelKey, String labelValue) {
+    public List<ConfigMap> findByLabel(String cluster, String namespace, String labelKey, String labelValue) {
         // get resources
-        var resources = kubernetesClient.configMaps().inNamespace(namespace).list();
+        var resources = configMapsWithNamespace(cluster, namespace);
 
-        return resources.getItems().stream()
+        return resources.stream()
                 .filter(configMap -> configMap.getMetadata().getLabels() != null &&
                         configMap.getMetadata().getLabels().containsKey(labelKey) &&
                         configMap.getMetadata().getLabels().get(labelKey).equals(labelValue))
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    /**
+     * Find resources matching a query.
+     * <p>
+     * The label and name conditions are sent to the API server as selectors, the other conditions are evaluated on the
+     * returned resources.
+     *
+     * @param cluster   the cluster
+     * @param namespace the namespace
+     * @param query     the query
+     * @return the list
+     */
+    public List<ConfigMap> query(String cluster, String namespace, ConfigMapQuery query) {
+        var plan = ConfigMapQueryPlan.of(query);
+
+        return list(cluster, namespace, kubernetesClient -> plan.select(kubernetesClient.configMaps().inNamespace(namespace)).list().getItems().stream()
+                .filter(plan::matches)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Run a list query on a cluster, or on every cluster in parallel.
+     *
+     * @param cluster   the cluster
+     * @param namespace the namespace
+     * @param query     the query
+     * @return the list
+     */
+    private List<ConfigMap> list(String cluster, String namespace, Function<KubernetesClient, List<ConfigMap>> query) {
+        if (kubernetesClusters.isAllClusters(cluster)) {
+            return kubernetesClusters.fanOut(name -> call(name, Verb.LIST, namespace, query));
+        }
+        return call(cluster, Verb.LIST, namespace, query);
+    }
+
+    /**
+     * Send a request to the API server of a cluster through the rate limiter.
+     * <p>
+     * The request is traced by a client span, the wait for the rate limiter included.
+     *
+     * @param cluster   the cluster
+     * @param verb      the verb
+     * @param namespace the namespace
+     * @param request   the request
+     * @param <T>       the type of the response
+     * @return the response
+     */
+    private <T> T call(String cluster, Verb verb, String namespace, Function<KubernetesClient, T> request) {
+        var name = kubernetesClusters.resolve(cluster);
+        var kubernetesClient = kubernetesClusters.client(name);
+
+        var span = tracer.buildSpan("kubernetes." + verb.name().toLowerCase())
+                .withTag(Tags.SPAN_KIND, Tags.SPAN_KIND_CLIENT)
+                .withTag(Tags.COMPONENT, "fabric8")
+                .withTag("cluster", name)
+                .withTag("namespace", namespace == null ? "" : namespace)
+                .start();
+        try (var scope = tracer.activateSpan(span)) {
+            return rateLimiter.execute(name, verb, namespace, () -> request.apply(kubernetesClient));
+        } catch (RuntimeException e) {
+            Tags.ERROR.set(span, true);
+            span.log(String.valueOf(e.getMessage()));
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.comact.iep.api.kubernetes.service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client side rate limiter in front of the Kubernetes API server.
+ * <p>
+ * A request takes a token from the bucket of its cluster, verb and namespace, and from the bucket of its cluster and
+ * verb, so a batch spread over many namespaces is still limited. The rate of a bucket is halved when the API server
+ * answers 429 and the bucket is closed for the Retry-After delay, then the rate grows back slowly on each success. A
+ * request waits for a token at most kubernetes-api.rate-limit.max-wait, otherwise it is rejected with a 429.
+ * <p>
+ * The rate and burst of each verb are configured with kubernetes-api.rate-limit."verb".rate and
+ * kubernetes-api.rate-limit."verb".burst by namespace, kubernetes-api.rate-limit."verb".total-rate and
+ * kubernetes-api.rate-limit."verb".total-burst by cluster. The namespace buckets are swept periodically: the idle ones
+ * are dropped once there are more than kubernetes-api.rate-limit.max-namespace-buckets, then the least recently used
+ * ones if there are still too many.
+ */
+@Slf4j
+@ApplicationScoped
+public class KubernetesApiRateLimiter {
+    private static final String CONFIG_PREFIX = "kubernetes-api.rate-limit.";
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+    private static final long SWEEP_PERIOD_SECONDS = 10;
+
+    /**
+     * The verbs sent to the API server.
+     */
+    public enum Verb {
+        GET(50, 200), LIST(10, 40), CREATE(20, 80), UPDATE(20, 80), DELETE(20, 80);
+
+        private final double defaultRate;
+        private final double defaultTotalRate;
+
+        Verb(double defaultRate, double defaultTotalRate) {
+            this.defaultRate = defaultRate;
+            this.defaultTotalRate = defaultTotalRate;
+        }
+
+        String configName() {
+            return name().toLowerCase();
+        }
+    }
+
+    @ConfigProperty(name = "kubernetes-api.rate-limit.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "kubernetes-api.rate-limit.max-wait", defaultValue = "5S")
+    Duration maxWait;
+
+    @ConfigProperty(name = "kubernetes-api.rate-limit.max-retries", defaultValue = "2")
+    int maxRetries;
+
+    @ConfigProperty(name = "kubernetes-api.rate-limit.max-namespace-buckets", defaultValue = "1000")
+    int maxNamespaceBuckets;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> clusterBuckets = new ConcurrentHashMap<>();
+    private final Map<Verb, AtomicInteger> queueDepths = new EnumMap<>(Verb.class);
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    void init() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_PERIOD_SECONDS, SWEEP_PERIOD_SECONDS, TimeUnit.SECONDS);
+
+        for (var verb : Verb.values()) {
+            var queueDepth = new AtomicInteger();
+            queueDepths.put(verb, queueDepth);
+            metricRegistry.register(Metadata.builder()
+                    .withName("kubernetes-api.rate-limit.queue-depth")
+                    .withDescription("Requests waiting for a token before being sent to the API server")
+                    .withType(MetricType.GAUGE)
+                    .build(), (Gauge<Integer>) queueDepth::get, new Tag("verb", verb.configName()));
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Execute a request once a token is available.
+     * <p>
+     * A request throttled by the API server is retried, it will wait for the Retry-After delay in the bucket.
+     *
+     * @param cluster   the cluster
+     * @param verb      the verb
+     * @param namespace the namespace, null when the request is not namespaced
+     * @param request   the request
+     * @param <T>       the type of the response
+     * @return the response
+     */
+    public <T> T execute(String cluster, Verb verb, String namespace, Supplier<T> request) {
+        if (!enabled) {
+            return request.get();
+        }
+
+        var bucket = namespaceBucket(cluster, verb, namespace);
+        var clusterBucket = clusterBuckets.computeIfAbsent(cluster + '/' + verb, key -> newBucket(verb, "total-rate", verb.defaultTotalRate, "total-burst"));
+
+        for (var attempt = 0; ; attempt++) {
+            acquire(bucket, clusterBucket, verb, namespace);
+            try {
+                var response = request.get();
+                bucket.onSuccess();
+                clusterBucket.onSuccess();
+                return response;
+            } catch (KubernetesClientException e) {
+                if (e.getCode() != 429) {
+                    throw e;
+                }
+
+                var retryAfter = retryAfterSeconds(e);
+                log.warn("API server throttled [{}] in namespace [{}] on cluster [{}], retry after [{}]s", verb, namespace, cluster, retryAfter);
+                bucket.onThrottled(retryAfter);
+                clusterBucket.onThrottled(retryAfter);
+                metricRegistry.counter("kubernetes-api.rate-limit.throttled", new Tag("verb", verb.configName())).inc();
+
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * The bucket of a namespace.
+     * <p>
+     * A request may still hold a bucket that the sweep has just dropped, while the next request of the namespace gets a
+     * new bucket. For that short window the namespace can get up to two bursts, the bucket of the cluster still bounds
+     * the total. This is accepted rather than taking a lock on every request.
+     */
+    private TokenBucket namespaceBucket(String cluster, Verb verb, String namespace) {
+        var key = cluster + '/' + verb + '/' + (namespace == null ? "" : namespace);
+        return buckets.computeIfAbsent(key, k -> newBucket(verb, "rate", verb.defaultRate, "burst"));
+    }
+
+    /**
+     * Drop the namespace buckets above kubernetes-api.rate-limit.max-namespace-buckets, the idle ones first, as they
+     * behave as new buckets, then the least recently used ones.
+     */
+    void sweep() {
+        if (buckets.size() <= maxNamespaceBuckets) {
+            return;
+        }
+
+        var now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+
+        var excess = buckets.size() - maxNamespaceBuckets;
+        if (excess > 0) {
+            // the last use is read once, the requests go on during the sort
+            List<Map.Entry<String, Long>> lastUses = new ArrayList<>(buckets.size());
+            buckets.forEach((key, bucket) -> lastUses.add(Map.entry(key, bucket.lastUse())));
+            lastUses.sort(Map.Entry.comparingByValue());
+            lastUses.subList(0, Math.min(excess, lastUses.size())).forEach(lastUse -> buckets.remove(lastUse.getKey()));
+            log.warn("[{}] namespace buckets in use dropped, more than [{}] namespaces are busy", excess, maxNamespaceBuckets);
+        }
+    }
+
+    /**
+     * The number of namespace buckets.
+     */
+    int namespaceBuckets() {
+        return buckets.size();
+    }
+
+    private void acquire(TokenBucket bucket, TokenBucket clusterBucket, Verb verb, String namespace) {
+        var maxWaitNanos = maxWait.toNanos();
+        var waitNanos = bucket.reserve(maxWaitNanos);
+        if (waitNanos >= 0) {
+            var clusterWaitNanos = clusterBucket.reserve(maxWaitNanos);
+            if (clusterWaitNanos < 0) {
+                // the token of the namespace is not used
+                bucket.release();
+            }
+            waitNanos = clusterWaitNanos < 0 ? -1 : Math.max(waitNanos, clusterWaitNanos);
+        }
+
+        if (waitNanos < 0) {
+            metricRegistry.counter("kubernetes-api.rate-limit.rejected", new Tag("verb", verb.configName())).inc();
+            throw new WebApplicationException("Too many requests for [" + verb + "] in namespace [" + namespace + ']',
+                    Response.status(Response.Status.TOO_MANY_REQUESTS)
+                            .header("Retry-After", Math.max(1, TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos)))
+                            .build());
+        }
+
+        if (waitNanos > 0) {
+            var queueDepth = queueDepths.get(verb);
+            queueDepth.incrementAndGet();
+            try {
+                var deadline = System.nanoTime() + waitNanos;
+                for (var remaining = waitNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                    LockSupport.parkNanos(remaining);
+                    if (Thread.interrupted()) {
+                        // the tokens are not used
+                        bucket.release();
+                        clusterBucket.release();
+                        Thread.currentThread().interrupt();
+                        throw new KubernetesClientException("Interrupted while waiting for a token for [" + verb + "] in namespace [" + namespace + ']');
+                    }
+                }
+            } finally {
+                queueDepth.decrementAndGet();
+            }
+        }
+
+        metricRegistry.timer("kubernetes-api.rate-limit.throttle-time", new Tag("verb", verb.configName())).update(Duration.ofNanos(waitNanos));
+    }
+
+    private TokenBucket newBucket(Verb verb, String rateName, double defaultRate, String burstName) {
+        var config = ConfigProvider.getConfig();
+        var rate = config.getOptionalValue(CONFIG_PREFIX + verb.configName() + '.' + rateName, Double.class).orElse(defaultRate);
+        var burst = config.getOptionalValue(CONFIG_PREFIX + verb.configName() + '.' + burstName, Double.class).orElse(rate * 2);
+
+        return new TokenBucket(rate, burst);
+    }
+
+    private static long retryAfterSeconds(KubernetesClientException e) {
+        var status = e.getStatus();
+        if (status != null && status.getDetails() != null && status.getDetails().getRetryAfterSeconds() != null) {
+            return status.getDetails().getRetryAfterSeconds();
+        }
+        return DEFAULT_RETRY_AFTER_SECONDS;
+    }
+
+    /**
+     * Token bucket with an adaptive rate.
+     * <p>
+     * Tokens are reserved, so the bucket can go negative: the waiting requests are served in order of reservation.
+     */
+    static class TokenBucket {
+        private static final double MIN_RATE_RATIO = 0.05;
+        private static final double INCREASE_RATIO = 0.01;
+
+        private final double maxRate;
+        private final double burst;
+        private double rate;
+        private double tokens;
+        private long lastRefill;
+        private long lastReserve;
+        private long closedUntil;
+
+        TokenBucket(double rate, double burst) {
+            this.maxRate = rate;
+            this.rate = rate;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+            this.lastRefill = System.nanoTime();
+            this.lastReserve = lastRefill;
+        }
+
+        /**
+         * Reserve a token.
+         *
+         * @param maxWaitNanos the max wait
+         * @return the time to wait before using the token, or -1 if it would be more than the max wait
+         */
+        synchronized long reserve(long maxWaitNanos) {
+            var now = System.nanoTime();
+            refill(now);
+            lastReserve = now;
+
+            var waitNanos = Math.max(0, closedUntil - now);
+            var deficit = 1 - tokens;
+            if (deficit > 0) {
+                waitNanos = Math.max(waitNanos, (long) (deficit / rate * TimeUnit.SECONDS.toNanos(1)));
+            }
+
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        /**
+         * Give back a reserved token that was not used.
+         */
+        synchronized void release() {
+            tokens = Math.min(burst, tokens + 1);
+        }
+
+        /**
+         * Check if the bucket is full at its nominal rate and open, as a new bucket.
+         *
+         * @param now the current nano time
+         * @return true if the bucket is idle
+         */
+        synchronized boolean isIdle(long now) {
+            refill(now);
+            return tokens >= burst && rate >= maxRate && closedUntil <= now;
+        }
+
+        /**
+         * The time of the last reservation.
+         *
+         * @return the nano time
+         */
+        synchronized long lastUse() {
+            return lastReserve;
+        }
+
+        synchronized void onSuccess() {
+            rate = Math.min(maxRate, rate + maxRate * INCREASE_RATIO);
+        }
+
+        synchronized void onThrottled(long retryAfterSeconds) {
+            var now = System.nanoTime();
+            refill(now);
+            rate = Math.max(maxRate * MIN_RATE_RATIO, rate / 2);
+            tokens = Math.min(tokens, 0);
+            closedUntil = Math.max(closedUntil, now + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+        }
+
+        private void refill(long now) {
+            // the time read by the eviction may be older than the last refill
+            if (now > lastRefill) {
+                tokens = Math.min(burst, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+                lastRefill = now;
+            }
+        }
+    }
+}
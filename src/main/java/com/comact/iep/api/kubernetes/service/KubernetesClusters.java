@@ -0,0 +1,256 @@
+package com.comact.iep.api.kubernetes.service;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServiceUnavailableException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The Kubernetes clusters known by the service.
+ * <p>
+ * The default cluster is the one configured with quarkus.kubernetes-client.*, the other clusters are listed in
+ * kubernetes-api.clusters and configured with kubernetes-api.cluster."name".* (master-url, namespace, token,
+ * trust-certs). Each cluster has its own client, so its own connection pool, configured with
+ * kubernetes-api.client.* (max-concurrent-requests, request-timeout). The clients, the default one included, are
+ * created on first use rather than at startup.
+ * <p>
+ * The all-clusters queries run on a pool of kubernetes-api.fan-out.max-queries threads by cluster, with as many
+ * waiting tasks. A query that doesn't fit is rejected with a 503 rather than waiting for its deadline. The query of a
+ * cluster that doesn't answer before the deadline is interrupted, a blocked HTTP call ends at the latest with the
+ * request timeout of its client.
+ */
+@Slf4j
+@ApplicationScoped
+public class KubernetesClusters {
+    /**
+     * The name of the cluster configured with quarkus.kubernetes-client.*
+     */
+    public static final String DEFAULT_CLUSTER = "default";
+
+    /**
+     * The cluster name used to query every cluster.
+     */
+    public static final String ALL_CLUSTERS = "*";
+
+    /**
+     * The annotation added on the resources returned by an all-clusters query.
+     */
+    public static final String CLUSTER_ANNOTATION = "kubernetes-api/cluster";
+
+    private static final String CLUSTER_CONFIG_PREFIX = "kubernetes-api.cluster.";
+
+    private final Instance<KubernetesClient> defaultClientInstance;
+    private volatile KubernetesClient defaultClient;
+    private final List<String> names;
+    private final Duration fanOutTimeout;
+    private final int maxConcurrentRequests;
+    private final Duration requestTimeout;
+    private final Map<String, KubernetesClient> clients = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Instantiates the clusters.
+     *
+     * @param kubernetesClient      the kubernetes client of the default cluster, resolved on first use
+     * @param clusters              the names of the other clusters
+     * @param fanOutTimeout         the deadline of an all-clusters query
+     * @param maxFanOutQueries      the all-clusters queries running at the same time
+     * @param maxConcurrentRequests the max concurrent requests by cluster
+     * @param requestTimeout        the request timeout of the clients of the other clusters
+     */
+    public KubernetesClusters(Instance<KubernetesClient> kubernetesClient,
+                              @ConfigProperty(name = "kubernetes-api.clusters") Optional<List<String>> clusters,
+                              @ConfigProperty(name = "kubernetes-api.fan-out.timeout", defaultValue = "10S") Duration fanOutTimeout,
+                              @ConfigProperty(name = "kubernetes-api.fan-out.max-queries", defaultValue = "4") int maxFanOutQueries,
+                              @ConfigProperty(name = "kubernetes-api.client.max-concurrent-requests", defaultValue = "64") int maxConcurrentRequests,
+                              @ConfigProperty(name = "kubernetes-api.client.request-timeout", defaultValue = "10S") Duration requestTimeout) {
+        this.defaultClientInstance = kubernetesClient;
+        this.fanOutTimeout = fanOutTimeout;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.requestTimeout = requestTimeout;
+
+        var allNames = new LinkedHashSet<String>();
+        allNames.add(DEFAULT_CLUSTER);
+        clusters.ifPresent(allNames::addAll);
+        this.names = List.copyOf(allNames);
+
+        var threads = Math.max(1, maxFanOutQueries) * names.size();
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads), runnable -> {
+            var thread = new Thread(runnable, "cluster-fan-out-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The names of the clusters, the default cluster first.
+     *
+     * @return the names
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * Resolve a cluster name, null or empty means the default cluster.
+     *
+     * @param cluster the cluster name
+     * @return the cluster name
+     */
+    public String resolve(String cluster) {
+        return StringUtils.isEmpty(cluster) ? DEFAULT_CLUSTER : cluster;
+    }
+
+    /**
+     * Check if the cluster name means every cluster.
+     *
+     * @param cluster the cluster name
+     * @return true for an all-clusters query
+     */
+    public boolean isAllClusters(String cluster) {
+        return ALL_CLUSTERS.equals(cluster);
+    }
+
+    /**
+     * The client of a cluster, the clients are created on first use.
+     *
+     * @param cluster the cluster name, null for the default cluster
+     * @return the kubernetes client
+     */
+    public KubernetesClient client(String cluster) {
+        var name = resolve(cluster);
+
+        if (isAllClusters(name)) {
+            throw new BadRequestException("This operation can't be applied on all clusters");
+        }
+        if (DEFAULT_CLUSTER.equals(name)) {
+            return defaultClient();
+        }
+        if (!names.contains(name)) {
+            throw new NotFoundException("Cluster [" + name + "] is not configured");
+        }
+
+        return clients.computeIfAbsent(name, this::createClient);
+    }
+
+    /**
+     * Run a query on every cluster in parallel and merge the results.
+     * <p>
+     * Each resource is tagged with the {@link #CLUSTER_ANNOTATION} annotation. The clusters that fail or don't answer
+     * before the deadline are left out of the result, their query is interrupted.
+     *
+     * @param query the query to run, it receives the cluster name
+     * @return the merged list
+     * @throws ServiceUnavailableException when too many all-clusters queries are running
+     */
+    public List<ConfigMap> fanOut(Function<String, List<ConfigMap>> query) {
+        var deadline = System.nanoTime() + fanOutTimeout.toNanos();
+
+        var futures = new LinkedHashMap<String, Future<List<ConfigMap>>>();
+        try {
+            for (var name : names) {
+                futures.put(name, executor.submit(() -> query.apply(name)));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.values().forEach(future -> future.cancel(true));
+            log.warn("All-clusters query rejected, {} queries are running or waiting", executor.getActiveCount() + executor.getQueue().size());
+            throw new ServiceUnavailableException("Too many all-clusters queries, try again later", 1L);
+        }
+
+        List<ConfigMap> merged = new ArrayList<>();
+        for (var entry : futures.entrySet()) {
+            var name = entry.getKey();
+            var future = entry.getValue();
+            try {
+                var items = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                for (var configMap : items) {
+                    merged.add(tag(name, configMap));
+                }
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Cluster [{}] did not answer within [{}]", name, fanOutTimeout);
+            } catch (ExecutionException e) {
+                log.error("Query failed on cluster [{}]", name, e.getCause());
+            } catch (InterruptedException e) {
+                futures.values().forEach(remaining -> remaining.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return merged;
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdownNow();
+        clients.values().forEach(KubernetesClient::close);
+    }
+
+    private KubernetesClient defaultClient() {
+        var client = defaultClient;
+        if (client == null) {
+            // the producer of the extension is a singleton, a race resolves the same client
+            client = defaultClientInstance.get();
+            defaultClient = client;
+        }
+        return client;
+    }
+
+    private KubernetesClient createClient(String name) {
+        var config = ConfigProvider.getConfig();
+        var prefix = CLUSTER_CONFIG_PREFIX + name + '.';
+
+        var builder = new ConfigBuilder()
+                .withMasterUrl(config.getValue(prefix + "master-url", String.class))
+                .withTrustCerts(config.getOptionalValue(prefix + "trust-certs", Boolean.class).orElse(false))
+                .withMaxConcurrentRequests(maxConcurrentRequests)
+                .withMaxConcurrentRequestsPerHost(maxConcurrentRequests)
+                .withRequestTimeout((int) requestTimeout.toMillis());
+        config.getOptionalValue(prefix + "namespace", String.class).ifPresent(builder::withNamespace);
+        config.getOptionalValue(prefix + "token", String.class).ifPresent(builder::withOauthToken);
+
+        log.debug("Creating kubernetes client for cluster [{}]", name);
+        return new DefaultKubernetesClient(builder.build());
+    }
+
+    private ConfigMap tag(String cluster, ConfigMap configMap) {
+        return new ConfigMapBuilder(configMap)
+                .editOrNewMetadata()
+                .addToAnnotations(CLUSTER_ANNOTATION, cluster)
+                .endMetadata()
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.comact.iep.api.logging;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import com.comact.iep.logging.RequestDebug;
+import com.comact.iep.logging.RequestDebugSettings;
+
+/**
+ * The rules of the requests logged at DEBUG, next to the levels of the logging-manager.
+ * <p>
+ * Every user can read the rules, only an admin can change them.
+ */
+@Path("/logging/request-debug")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@Tag(name = "logging-manager")
+@RolesAllowed({"serviceAccount", "user"}) // only a user with this role can have access
+public class RequestDebugging {
+
+    /**
+     * The request debug logging.
+     */
+    @Inject
+    RequestDebug requestDebug;
+
+    /**
+     * The current rules.
+     *
+     * @return the rules
+     */
+    @GET
+    @Operation(summary = "return the request debug rules", description = "return the rules marking the requests logged at DEBUG")
+    @Path("/")
+    public RequestDebugSettings settings() {
+        return requestDebug.getSettings();
+    }
+
+    /**
+     * Replace the rules.
+     *
+     * @param settings the rules
+     * @return the rules
+     */
+    @PUT
+    @RolesAllowed("admin")
+    @Operation(summary = "replace the request debug rules", description = "mark the requests with the debug header, on a namespace, of a user or a percentage of them, their events of the categories are logged at DEBUG")
+    @Path("/")
+    public Response update(RequestDebugSettings settings) {
+        try {
+            requestDebug.setSettings(settings);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build();
+        }
+        return Response.ok(requestDebug.getSettings()).build();
+    }
+
+    /**
+     * Disable the rules, the categories get their own level back.
+     *
+     * @return the rules
+     */
+    @DELETE
+    @RolesAllowed("admin")
+    @Operation(summary = "disable the request debug rules", description = "no request is logged at DEBUG, the categories get their own level back")
+    @Path("/")
+    public RequestDebugSettings disable() {
+        var settings = requestDebug.getSettings();
+        var disabled = new RequestDebugSettings();
+        disabled.setCategories(settings.getCategories());
+        requestDebug.setSettings(disabled);
+        return requestDebug.getSettings();
+    }
+}
@@ -0,0 +1,38 @@
+package com.comact.iep.api.security;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+
+import com.comact.iep.security.SecurityIdentityCache;
+
+/**
+ * The cache of the security identities, cleared after a token was revoked.
+ */
+@Path("/security/identity-cache")
+@RolesAllowed("admin") // only a user with this role can have access
+public class IdentityCaching {
+
+    /**
+     * The security identity cache.
+     */
+    @Inject
+    SecurityIdentityCache cache;
+
+    /**
+     * Remove every cached identity.
+     *
+     * @return no content
+     */
+    @DELETE
+    @Operation(summary = "clear the security identity cache", description = "the next request of each token is authenticated again, a revoked token is then rejected")
+    @Path("/")
+    public Response clear() {
+        cache.clear();
+        return Response.noContent().build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.comact.iep.cleanupjob;
+
+import lombok.Data;
+
+/**
+ * A request to clean up a service, read from the cleanupjob channel.
+ * <p>
+ * The cleanup runs as a Kubernetes Job calling the cleanup path of the service. The jobs of the same cluster and
+ * namespace are run in the order they were received.
+ */
+@Data
+public class CleanupJob {
+    /**
+     * The id of the request, echoed in the result.
+     */
+    private String id;
+    /**
+     * The cluster, null for the default cluster.
+     */
+    private String cluster;
+    /**
+     * The namespace of the service.
+     */
+    private String namespace;
+    /**
+     * The service to clean up, cleanupjob.service.name if null.
+     */
+    private String service;
+    /**
+     * The path called on the service, /cleanup if null.
+     */
+    private String path;
+    /**
+     * The max wait for the cleanup in seconds, wait-for-cleanup.timeout.default if null.
+     */
+    private Integer timeout;
+    /**
+     * When the cleanup was requested, in epoch milliseconds, 0 if unknown.
+     */
+    private long requestedAt;
+
+    /**
+     * The key of the jobs run in order, one after the other.
+     *
+     * @return the cluster and namespace
+     */
+    public String orderingKey() {
+        return (cluster == null ? "" : cluster) + '/' + namespace;
+    }
+}
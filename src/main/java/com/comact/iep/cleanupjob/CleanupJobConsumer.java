@@ -0,0 +1,138 @@
+package com.comact.iep.cleanupjob;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Consumer of the cleanupjob channel.
+ * <p>
+ * The jobs are read by batches, mp.messaging.incoming.cleanupjob.batch=true. The jobs of a batch are grouped by
+ * cluster and namespace, the groups run concurrently on cleanupjob.concurrency threads and the jobs of a group one
+ * after the other, in the order of the batch. The next batch is read once every job of the batch is done and its
+ * result sent to the cleanupjob-completed channel, where the producer groups them by batches.
+ * <p>
+ * Metrics : cleanupjob.lag, the delay between the request of the oldest job of the last batch and its processing,
+ * cleanupjob.batch.size and cleanupjob.processing by status.
+ */
+@Slf4j
+@ApplicationScoped
+public class CleanupJobConsumer {
+
+    @ConfigProperty(name = "cleanupjob.concurrency", defaultValue = "8")
+    int concurrency;
+
+    @Inject
+    CleanupJobRunner runner;
+
+    @Inject
+    @Channel("cleanupjob-completed")
+    Emitter<CleanupJobResult> completed;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    private final AtomicLong lag = new AtomicLong();
+    private ExecutorService executor;
+    private Histogram batchSize;
+
+    @PostConstruct
+    void init() {
+        var threads = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            var thread = new Thread(runnable, "cleanupjob-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = Executors.newFixedThreadPool(Math.max(1, concurrency), threadFactory);
+
+        metricRegistry.register(Metadata.builder()
+                .withName("cleanupjob.lag")
+                .withDescription("Delay in milliseconds between the request of the oldest job of the last batch and its processing")
+                .withType(MetricType.GAUGE)
+                .build(), (Gauge<Long>) lag::get);
+        batchSize = metricRegistry.histogram("cleanupjob.batch.size");
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run a batch of cleanup jobs.
+     *
+     * @param jobs the jobs
+     * @return the completion of the batch, once every result is sent
+     */
+    @Incoming("cleanupjob")
+    public CompletionStage<Void> consume(List<CleanupJob> jobs) {
+        batchSize.update(jobs.size());
+        var now = System.currentTimeMillis();
+        lag.set(jobs.stream()
+                .mapToLong(CleanupJob::getRequestedAt)
+                .filter(requestedAt -> requestedAt > 0)
+                .map(requestedAt -> Math.max(0, now - requestedAt))
+                .max()
+                .orElse(0));
+
+        Map<String, List<CleanupJob>> groups = new LinkedHashMap<>();
+        for (var job : jobs) {
+            // a record that can't be read is null
+            if (job != null) {
+                groups.computeIfAbsent(job.orderingKey(), key -> new ArrayList<>()).add(job);
+            }
+        }
+
+        var groupCompletions = groups.values().stream()
+                .map(group -> CompletableFuture.supplyAsync(() -> run(group), executor)
+                        .thenCompose(sent -> CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new))))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(groupCompletions);
+    }
+
+    /**
+     * Run the jobs of a group in order.
+     *
+     * @return the completions of the sent results
+     */
+    private List<CompletableFuture<Void>> run(List<CleanupJob> group) {
+        List<CompletableFuture<Void>> sent = new ArrayList<>();
+        for (var job : group) {
+            var start = System.nanoTime();
+            var result = runner.run(job);
+            metricRegistry.timer("cleanupjob.processing", new Tag("status", result.getStatus().name().toLowerCase()))
+                    .update(Duration.ofNanos(System.nanoTime() - start));
+            log.debug("Cleanup job [{}] in namespace [{}] {} in {} ms", job.getId(), job.getNamespace(), result.getStatus(), result.getDuration());
+
+            sent.add(completed.send(result).toCompletableFuture());
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,34 @@
+package com.comact.iep.cleanupjob;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of a {@link CleanupJob}, written to the cleanupjob-completed channel.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CleanupJobResult {
+
+    /**
+     * The status of a cleanup.
+     */
+    public enum Status {
+        SUCCEEDED, FAILED, TIMEOUT
+    }
+
+    private String id;
+    private String cluster;
+    private String namespace;
+    private Status status;
+    /**
+     * The duration of the cleanup in milliseconds.
+     */
+    private long duration;
+    /**
+     * The error, null if succeeded.
+     */
+    private String message;
+}
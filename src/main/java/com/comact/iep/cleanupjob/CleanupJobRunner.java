@@ -0,0 +1,177 @@
+package com.comact.iep.cleanupjob;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.comact.iep.api.kubernetes.service.KubernetesApiRateLimiter;
+import com.comact.iep.api.kubernetes.service.KubernetesApiRateLimiter.Verb;
+import com.comact.iep.api.kubernetes.service.KubernetesClusters;
+import com.comact.iep.cleanupjob.CleanupJobResult.Status;
+import io.fabric8.kubernetes.api.model.DeletionPropagation;
+import io.fabric8.kubernetes.api.model.batch.v1.Job;
+import io.fabric8.kubernetes.api.model.batch.v1.JobBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Run a {@link CleanupJob} as a Kubernetes Job and wait for it.
+ * <p>
+ * The Job runs cleanupjob.image.name to POST on the cleanup path of the service, it is retried up to
+ * wait-for-cleanup.retry.max times. The wait is the timeout of the request, wait-for-cleanup.timeout.default seconds
+ * if not set, and at most wait-for-cleanup.timeout.max seconds. The Job is deleted once done, unless it was not
+ * created by this runner, when a Job of the same name already exists.
+ */
+@Slf4j
+@ApplicationScoped
+public class CleanupJobRunner {
+    private static final String DEFAULT_PATH = "/cleanup";
+    private static final int MAX_NAME_LENGTH = 63;
+
+    @ConfigProperty(name = "cleanupjob.image.name")
+    String imageName;
+
+    @ConfigProperty(name = "cleanupjob.service.name")
+    String serviceName;
+
+    @ConfigProperty(name = "wait-for-cleanup.timeout.default", defaultValue = "10")
+    int defaultTimeout;
+
+    @ConfigProperty(name = "wait-for-cleanup.timeout.max", defaultValue = "600")
+    int maxTimeout;
+
+    @ConfigProperty(name = "wait-for-cleanup.retry.max", defaultValue = "10")
+    int maxRetries;
+
+    private final KubernetesClusters kubernetesClusters;
+    private final KubernetesApiRateLimiter rateLimiter;
+
+    /**
+     * Instantiates a new cleanup job runner.
+     *
+     * @param kubernetesClusters the kubernetes clusters
+     * @param rateLimiter        the rate limiter in front of the API server
+     */
+    public CleanupJobRunner(KubernetesClusters kubernetesClusters, KubernetesApiRateLimiter rateLimiter) {
+        this.kubernetesClusters = kubernetesClusters;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Run a cleanup and wait for its end, blocking.
+     *
+     * @param job the cleanup
+     * @return the result
+     */
+    public CleanupJobResult run(CleanupJob job) {
+        var start = System.nanoTime();
+        var result = new CleanupJobResult(job.getId(), job.getCluster(), job.getNamespace(), null, 0, null);
+
+        if (job.getNamespace() == null || job.getNamespace().isEmpty()) {
+            result.setStatus(Status.FAILED);
+            result.setMessage("The namespace is missing");
+            return result;
+        }
+
+        var cluster = kubernetesClusters.resolve(job.getCluster());
+        var client = kubernetesClusters.client(cluster);
+        var namespace = job.getNamespace();
+        var timeout = timeout(job);
+        var jobName = jobName(job);
+        // a Job of the same name, from another runner, is never deleted by this one
+        var created = false;
+
+        try {
+            rateLimiter.execute(cluster, Verb.CREATE, namespace, () -> client.batch().v1().jobs().inNamespace(namespace).create(kubernetesJob(job, jobName, timeout)));
+            created = true;
+
+            var done = client.batch().v1().jobs().inNamespace(namespace).withName(jobName)
+                    .waitUntilCondition(CleanupJobRunner::finished, timeout, TimeUnit.SECONDS);
+            if (failed(done)) {
+                result.setStatus(Status.FAILED);
+                result.setMessage("The cleanup job " + jobName + " failed");
+            } else {
+                result.setStatus(Status.SUCCEEDED);
+            }
+        } catch (KubernetesClientTimeoutException e) {
+            result.setStatus(Status.TIMEOUT);
+            result.setMessage("The cleanup job " + jobName + " didn't end in " + timeout + " s");
+        } catch (Exception e) {
+            log.error("Unable to run the cleanup job [{}] in namespace [{}] on cluster [{}]", jobName, namespace, cluster, e);
+            result.setStatus(Status.FAILED);
+            result.setMessage(e.getMessage());
+        } finally {
+            if (created) {
+                delete(cluster, namespace, jobName);
+            }
+        }
+
+        result.setDuration(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private Job kubernetesJob(CleanupJob job, String jobName, int timeout) {
+        var service = job.getService() == null ? serviceName : job.getService();
+        var path = job.getPath() == null ? DEFAULT_PATH : job.getPath();
+        var url = "http://" + service + "." + job.getNamespace() + ".svc" + (path.startsWith("/") ? path : "/" + path);
+
+        return new JobBuilder()
+                .withNewMetadata()
+                .withName(jobName)
+                .addToLabels("app.kubernetes.io/managed-by", serviceName)
+                .endMetadata()
+                .withNewSpec()
+                .withBackoffLimit(maxRetries)
+                .withActiveDeadlineSeconds((long) timeout)
+                .withNewTemplate()
+                .withNewSpec()
+                .withRestartPolicy("Never")
+                .addNewContainer()
+                .withName("cleanup")
+                .withImage(imageName)
+                .withArgs("-sSf", "-X", "POST", url)
+                .endContainer()
+                .endSpec()
+                .endTemplate()
+                .endSpec()
+                .build();
+    }
+
+    private void delete(String cluster, String namespace, String jobName) {
+        try {
+            var client = kubernetesClusters.client(cluster);
+            rateLimiter.execute(cluster, Verb.DELETE, namespace, () -> client.batch().v1().jobs().inNamespace(namespace).withName(jobName)
+                    .withPropagationPolicy(DeletionPropagation.BACKGROUND).delete());
+        } catch (Exception e) {
+            log.warn("Unable to delete the cleanup job [{}] in namespace [{}] on cluster [{}]", jobName, namespace, cluster, e);
+        }
+    }
+
+    private int timeout(CleanupJob job) {
+        var timeout = job.getTimeout() == null || job.getTimeout() <= 0 ? defaultTimeout : job.getTimeout();
+        return Math.min(timeout, maxTimeout);
+    }
+
+    /**
+     * The name of the Kubernetes Job, cleanup- and the id as a DNS label.
+     */
+    static String jobName(CleanupJob job) {
+        var id = job.getId() == null ? Long.toHexString(System.nanoTime()) : job.getId();
+        var name = ("cleanup-" + id).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]", "-");
+        name = name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name;
+        return name.replaceAll("-+$", "");
+    }
+
+    private static boolean finished(Job job) {
+        return job != null && job.getStatus() != null &&
+                (job.getStatus().getSucceeded() != null && job.getStatus().getSucceeded() > 0 || failed(job));
+    }
+
+    private static boolean failed(Job job) {
+        return job != null && job.getStatus() != null && job.getStatus().getConditions() != null &&
+                job.getStatus().getConditions().stream()
+                        .anyMatch(condition -> "Failed".equals(condition.getType()) && "True".equals(condition.getStatus()));
+    }
+}
@@ -0,0 +1,139 @@
+package com.comact.iep.keycloak;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.keycloak.representations.AccessTokenResponse;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of the access tokens by user and client.
+ * <p>
+ * A token is reused until shortly before it expires, then it is renewed with its refresh token, or with a new password
+ * grant if the refresh token expired or was refused. The callers asking a token while it is renewed wait for the same
+ * renewal instead of sending their own request.
+ */
+@Slf4j
+public class AccessTokenCache {
+    private static final long MAX_EXPIRY_MARGIN_SECONDS = 10;
+
+    private final Map<String, CompletableFuture<CachedToken>> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * Get an access token.
+     *
+     * @param key           the key of the token, the user and the client
+     * @param passwordGrant the request of a new token
+     * @param refreshGrant  the request of a token with a refresh token
+     * @return the access token
+     */
+    public String get(String key, Supplier<AccessTokenResponse> passwordGrant, Function<String, AccessTokenResponse> refreshGrant) {
+        while (true) {
+            var current = tokens.get(key);
+            CachedToken token = null;
+
+            if (current != null) {
+                if (!current.isDone()) {
+                    // single flight : wait for the renewal in progress
+                    return join(current).accessToken;
+                }
+
+                token = current.isCompletedExceptionally() ? null : current.join();
+                if (token != null && token.isValid()) {
+                    return token.accessToken;
+                }
+            }
+
+            var renewal = new CompletableFuture<CachedToken>();
+            var owner = current == null ? tokens.putIfAbsent(key, renewal) == null : tokens.replace(key, current, renewal);
+            if (!owner) {
+                // another caller started a renewal
+                continue;
+            }
+
+            try {
+                var renewed = new CachedToken(renew(key, token, passwordGrant, refreshGrant));
+                renewal.complete(renewed);
+                return renewed.accessToken;
+            } catch (RuntimeException e) {
+                tokens.remove(key, renewal);
+                renewal.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Forget a token, for example when it was refused.
+     *
+     * @param key the key of the token
+     */
+    public void invalidate(String key) {
+        tokens.remove(key);
+    }
+
+    private static AccessTokenResponse renew(String key, CachedToken token, Supplier<AccessTokenResponse> passwordGrant, Function<String, AccessTokenResponse> refreshGrant) {
+        if (token != null && token.canRefresh()) {
+            try {
+                return refreshGrant.apply(token.refreshToken);
+            } catch (RuntimeException e) {
+                log.debug("Unable to refresh the token of [{}], requesting a new one", key, e);
+            }
+        }
+        return passwordGrant.get();
+    }
+
+    private static CachedToken join(CompletableFuture<CachedToken> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A token and its expiration.
+     */
+    private static class CachedToken {
+        private final String accessToken;
+        private final String refreshToken;
+        private final long expiresAt;
+        private final long refreshExpiresAt;
+
+        CachedToken(AccessTokenResponse response) {
+            var now = System.nanoTime();
+            this.accessToken = response.getToken();
+            this.refreshToken = response.getRefreshToken();
+            this.expiresAt = now + TimeUnit.SECONDS.toNanos(response.getExpiresIn() - margin(response.getExpiresIn()));
+            this.refreshExpiresAt = now + TimeUnit.SECONDS.toNanos(response.getRefreshExpiresIn() - margin(response.getRefreshExpiresIn()));
+        }
+
+        boolean isValid() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+
+        boolean canRefresh() {
+            // an offline token has a refresh_expires_in of 0, a new token is requested instead
+            return refreshToken != null && System.nanoTime() - refreshExpiresAt < 0;
+        }
+
+        /**
+         * Renew a token a bit before it expires : half of the lifespan of short tokens, at most 10 seconds.
+         */
+        private static long margin(long expiresIn) {
+            return Math.min(MAX_EXPIRY_MARGIN_SECONDS, expiresIn / 2);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.comact.iep.keycloak;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.keycloak.representations.idm.PartialImportRepresentation;
+
+import com.comact.iep.keycloak.RealmSections.Section;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Import a partial import in chunks, several chunks at a time.
+ * <p>
+ * The sections are imported one after the other in the order of {@link Section}, so the clients and the roles exist
+ * before the groups and the users referencing them. The lists of a section are split in chunks of at most chunkSize
+ * items, imported concurrently on the executor. The roles are imported in a single chunk since composite roles can
+ * reference each other.
+ * <p>
+ * A failed chunk doesn't stop the other chunks of its section, but the following sections are not imported and the
+ * failed chunks are reported in the thrown exception.
+ */
+@Slf4j
+public class ChunkedRealmImport {
+
+    /**
+     * The import of one chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkImporter {
+        /**
+         * Import a chunk.
+         *
+         * @param name  the name of the chunk, for the logs
+         * @param chunk the chunk
+         * @throws Exception the import failed
+         */
+        void importChunk(String name, PartialImportRepresentation chunk) throws Exception;
+    }
+
+    private final int chunkSize;
+    private final Executor executor;
+    private final ChunkImporter importer;
+
+    /**
+     * Instantiates a new chunked import.
+     *
+     * @param chunkSize the max number of items of a chunk
+     * @param executor  the executor of the chunks, its number of threads limits the chunks imported at the same time
+     * @param importer  the import of one chunk
+     */
+    public ChunkedRealmImport(int chunkSize, Executor executor, ChunkImporter importer) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive : " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+        this.importer = importer;
+    }
+
+    /**
+     * Import the sections of a partial import.
+     *
+     * @param realm         the realm, for the logs
+     * @param partialImport the partial import
+     * @throws IllegalStateException some chunks failed, with the report of the failures
+     */
+    public void run(String realm, PartialImportRepresentation partialImport) {
+        for (var section : Section.values()) {
+            var chunks = chunks(partialImport, section, chunkSize);
+            if (chunks.isEmpty()) {
+                continue;
+            }
+
+            var start = System.nanoTime();
+            var done = new AtomicInteger();
+            Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            for (var index = 0; index < chunks.size(); index++) {
+                var name = section + " " + (index + 1) + "/" + chunks.size();
+                var chunk = chunks.get(index);
+                futures.add(CompletableFuture.runAsync(() -> importChunk(realm, name, chunk, done, chunks.size(), failures), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException(failures.size() + " of " + chunks.size() + " chunks of " + section +
+                        " failed in realm [" + realm + "], the next sections were not imported : " +
+                        failures.stream().sorted().collect(Collectors.joining("; ")));
+            }
+
+            log.info("Imported {} of realm [{}] in {} chunks in {} ms", section, realm, chunks.size(),
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    private void importChunk(String realm, String name, PartialImportRepresentation chunk, AtomicInteger done, int total, Queue<String> failures) {
+        var start = System.nanoTime();
+        try {
+            importer.importChunk(name, chunk);
+            log.debug("Imported chunk {} of realm [{}] in {} ms, {}/{} done", name, realm,
+                    Duration.ofNanos(System.nanoTime() - start).toMillis(), done.incrementAndGet(), total);
+        } catch (Exception e) {
+            log.error("Unable to import chunk {} of realm [{}]", name, realm, e);
+            failures.add(name + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Split a section of a partial import in chunks.
+     *
+     * @param partialImport the partial import
+     * @param section       the section
+     * @param chunkSize     the max number of items of a chunk
+     * @return the chunks, each with only this section, empty if the section is absent
+     */
+    static List<PartialImportRepresentation> chunks(PartialImportRepresentation partialImport, Section section, int chunkSize) {
+        var value = section.get(partialImport);
+        var chunks = new ArrayList<PartialImportRepresentation>();
+
+        if (value instanceof List) {
+            var items = (List<?>) value;
+            for (var from = 0; from < items.size(); from += chunkSize) {
+                chunks.add(chunk(partialImport, section, new ArrayList<>(items.subList(from, Math.min(items.size(), from + chunkSize)))));
+            }
+        } else if (value != null) {
+            chunks.add(chunk(partialImport, section, value));
+        }
+        return chunks;
+    }
+
+    private static PartialImportRepresentation chunk(PartialImportRepresentation partialImport, Section section, Object value) {
+        var chunk = new PartialImportRepresentation();
+        chunk.setIfResourceExists(partialImport.getIfResourceExists());
+        section.set(chunk, value);
+        return chunk;
+    }
+}
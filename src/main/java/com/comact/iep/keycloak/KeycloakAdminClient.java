@@ -0,0 +1,264 @@
+package com.comact.iep.keycloak;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.MultiMap;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpRequest;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import io.vertx.mutiny.ext.web.client.WebClient;
+
+/**
+ * Client of the Keycloak admin API.
+ * <p>
+ * The requests are sent with the Vert.x web client, on a pool of at most keycloak.admin.max-connections keep-alive
+ * connections, each request fails after keycloak.admin.request-timeout. The admin token of the master realm is
+ * cached in an {@link AccessTokenCache} and renewed before it expires.
+ * <p>
+ * The Keycloak server is keycloak.admin.url, or else the server of quarkus.oidc.auth-server-url.
+ */
+@ApplicationScoped
+public class KeycloakAdminClient {
+    private static final String DEFAULT_ADMIN = "admin";
+    private static final String ADMIN_CLIENT_ID = "admin-cli";
+    private static final String JSON = "application/json";
+
+    @ConfigProperty(name = "keycloak.admin.url")
+    Optional<String> adminUrl;
+
+    @ConfigProperty(name = "quarkus.oidc.auth-server-url")
+    Optional<String> authServerUrl;
+
+    @ConfigProperty(name = "keycloak.admin.user", defaultValue = "")
+    Optional<String> adminUsername;
+
+    @ConfigProperty(name = "keycloak.admin.password", defaultValue = "")
+    Optional<String> adminPassword;
+
+    @ConfigProperty(name = "keycloak.admin.max-connections", defaultValue = "20")
+    int maxConnections;
+
+    @ConfigProperty(name = "keycloak.admin.connect-timeout", defaultValue = "5S")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "keycloak.admin.request-timeout", defaultValue = "5M")
+    Duration requestTimeout;
+
+    @ConfigProperty(name = "keycloak.admin.idle-timeout", defaultValue = "60S")
+    Duration idleTimeout;
+
+    @Inject
+    Vertx vertx;
+
+    private final AccessTokenCache tokenCache = new AccessTokenCache();
+
+    private WebClient client;
+    private String baseUrl;
+
+    @PostConstruct
+    void init() {
+        baseUrl = adminUrl.or(() -> authServerUrl.map(KeycloakAdminClient::serverUrl))
+                .orElseThrow(() -> new IllegalStateException("keycloak.admin.url or quarkus.oidc.auth-server-url must be set"));
+
+        client = WebClient.create(vertx, new WebClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(maxConnections)
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setIdleTimeout((int) idleTimeout.toSeconds())
+                .setTryUseCompression(true));
+    }
+
+    @PreDestroy
+    void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    /**
+     * Get a realm.
+     *
+     * @param realm the realm
+     * @return the realm, null if it doesn't exist
+     */
+    public Uni<RealmRepresentation> getRealm(String realm) {
+        return send("get realm " + realm, token -> client.getAbs(baseUrl + "/admin/realms/" + realm)
+                .bearerTokenAuthentication(token)
+                .timeout(requestTimeout.toMillis())
+                .putHeader("Accept", JSON)
+                .send(), 200, 404)
+                .map(response -> response.statusCode() == 404 ? null : read(response, RealmRepresentation.class));
+    }
+
+    /**
+     * Create a realm.
+     *
+     * @param realm the realm
+     * @return the completion
+     */
+    public Uni<Void> createRealm(RealmRepresentation realm) {
+        return send("create realm " + realm.getRealm(), token -> json(client.postAbs(baseUrl + "/admin/realms"), token)
+                .sendBuffer(write(realm)), 201)
+                .replaceWithVoid();
+    }
+
+    /**
+     * Set attributes of a realm, the other attributes and settings of the realm are kept.
+     * <p>
+     * Keycloak removes the attributes missing from an update, the current attributes are read first and sent with
+     * the new ones.
+     *
+     * @param realm      the realm
+     * @param attributes the attributes to set
+     * @return the completion
+     */
+    public Uni<Void> updateRealmAttributes(String realm, Map<String, String> attributes) {
+        return getRealm(realm)
+                .chain(current -> {
+                    if (current == null) {
+                        return Uni.createFrom().failure(new IllegalStateException("Unable to update realm " + realm + ", it doesn't exist"));
+                    }
+
+                    var realmRepresentation = new RealmRepresentation();
+                    realmRepresentation.setRealm(realm);
+                    realmRepresentation.setAttributes(mergeAttributes(current.getAttributes(), attributes));
+
+                    return send("update realm " + realm, token -> json(client.putAbs(baseUrl + "/admin/realms/" + realm), token)
+                            .sendBuffer(write(realmRepresentation)), 204);
+                })
+                .replaceWithVoid();
+    }
+
+    /**
+     * Partial import.
+     *
+     * @param realm         the realm
+     * @param partialImport the partial import representation
+     * @return the completion
+     */
+    public Uni<Void> partialImport(String realm, PartialImportRepresentation partialImport) {
+        return send("import in realm " + realm, token -> json(client.postAbs(baseUrl + "/admin/realms/" + realm + "/partialImport"), token)
+                .sendBuffer(write(partialImport)), 200)
+                .replaceWithVoid();
+    }
+
+    /**
+     * Get the admin access token, from the cache if still valid.
+     * <p>
+     * A token renewal blocks, it runs on a worker thread.
+     *
+     * @return the access token
+     */
+    public Uni<String> getAccessToken() {
+        var username = username();
+        var password = adminUsername.filter(user -> !user.isEmpty()).isPresent() ? adminPassword.orElse(null) : DEFAULT_ADMIN;
+        var tokenUrl = baseUrl + "/realms/master/protocol/openid-connect/token";
+
+        return Uni.createFrom().item(() -> tokenCache.get(tokenKey(username),
+                        () -> token(tokenUrl, form("password").add("username", username).add("password", password)),
+                        refreshToken -> token(tokenUrl, form("refresh_token").add("refresh_token", refreshToken))))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private AccessTokenResponse token(String tokenUrl, MultiMap form) {
+        var response = client.postAbs(tokenUrl)
+                .timeout(requestTimeout.toMillis())
+                .sendForm(form)
+                .await().atMost(requestTimeout);
+
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unable to get a Keycloak admin token, status " + response.statusCode() + " : " + response.bodyAsString());
+        }
+        return read(response, AccessTokenResponse.class);
+    }
+
+    private Uni<HttpResponse<Buffer>> send(String request, Function<String, Uni<HttpResponse<Buffer>>> sender, int... expectedStatus) {
+        return getAccessToken()
+                .chain(sender::apply)
+                .map(response -> {
+                    if (response.statusCode() == 401) {
+                        // the token was revoked, the next request gets a new one
+                        tokenCache.invalidate(tokenKey(username()));
+                    }
+                    if (IntStream.of(expectedStatus).noneMatch(status -> status == response.statusCode())) {
+                        throw new IllegalStateException("Unable to " + request + ", status " + response.statusCode() + " : " + response.bodyAsString());
+                    }
+                    return response;
+                });
+    }
+
+    private HttpRequest<Buffer> json(HttpRequest<Buffer> request, String token) {
+        return request.bearerTokenAuthentication(token)
+                .timeout(requestTimeout.toMillis())
+                .putHeader("Content-Type", JSON)
+                .putHeader("Accept", JSON);
+    }
+
+    private String username() {
+        return adminUsername.filter(user -> !user.isEmpty()).orElse(DEFAULT_ADMIN);
+    }
+
+    private String tokenKey(String username) {
+        return baseUrl + '|' + username + '|' + ADMIN_CLIENT_ID;
+    }
+
+    private static MultiMap form(String grantType) {
+        return MultiMap.caseInsensitiveMultiMap()
+                .add("grant_type", grantType)
+                .add("client_id", ADMIN_CLIENT_ID);
+    }
+
+    private static Buffer write(Object value) {
+        try {
+            return Buffer.buffer(JsonSerialization.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T read(HttpResponse<Buffer> response, Class<T> type) {
+        try {
+            return JsonSerialization.readValue(response.body().getBytes(), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The attributes of a realm with some attributes set, the other attributes are kept.
+     */
+    static Map<String, String> mergeAttributes(Map<String, String> current, Map<String, String> attributes) {
+        Map<String, String> merged = current == null ? new HashMap<>() : new HashMap<>(current);
+        merged.putAll(attributes);
+        return merged;
+    }
+
+    /**
+     * The server of an OIDC auth server url, http://keycloak/auth for http://keycloak/auth/realms/comact.
+     */
+    static String serverUrl(String authServerUrl) {
+        var realms = authServerUrl.indexOf("/realms/");
+        return realms < 0 ? authServerUrl : authServerUrl.substring(0, realms);
+    }
+}
@@ -0,0 +1,64 @@
+package com.comact.iep.keycloak;
+
+import org.keycloak.common.util.MultivaluedHashMap;
+import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.representations.idm.AuthenticationExecutionExportRepresentation;
+import org.keycloak.representations.idm.AuthenticationFlowRepresentation;
+import org.keycloak.representations.idm.AuthenticatorConfigRepresentation;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.ClientScopeRepresentation;
+import org.keycloak.representations.idm.ComponentExportRepresentation;
+import org.keycloak.representations.idm.CredentialRepresentation;
+import org.keycloak.representations.idm.FederatedIdentityRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.IdentityProviderMapperRepresentation;
+import org.keycloak.representations.idm.IdentityProviderRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.ProtocolMapperRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.representations.idm.RequiredActionProviderRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.RolesRepresentation;
+import org.keycloak.representations.idm.ScopeMappingRepresentation;
+import org.keycloak.representations.idm.UserConsentRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * The Keycloak representations serialized by {@link KeycloakAdminClient} and {@link RealmFileParser}.
+ * <p>
+ * keycloak-core is not a Quarkus extension, its classes are registered here for the native image so that Jackson
+ * finds their constructors and properties. The fabric8 models are registered by the kubernetes-client extension.
+ */
+@RegisterForReflection(targets = {
+        RealmRepresentation.class,
+        PartialImportRepresentation.class,
+        PartialImportRepresentation.Policy.class,
+        ClientRepresentation.class,
+        ClientScopeRepresentation.class,
+        ProtocolMapperRepresentation.class,
+        ScopeMappingRepresentation.class,
+        RolesRepresentation.class,
+        RoleRepresentation.class,
+        RoleRepresentation.Composites.class,
+        GroupRepresentation.class,
+        UserRepresentation.class,
+        UserConsentRepresentation.class,
+        CredentialRepresentation.class,
+        FederatedIdentityRepresentation.class,
+        IdentityProviderRepresentation.class,
+        IdentityProviderMapperRepresentation.class,
+        AuthenticationFlowRepresentation.class,
+        AuthenticationExecutionExportRepresentation.class,
+        AuthenticatorConfigRepresentation.class,
+        RequiredActionProviderRepresentation.class,
+        ComponentExportRepresentation.class,
+        MultivaluedHashMap.class,
+        AccessTokenResponse.class
+})
+final class KeycloakRepresentations {
+
+    private KeycloakRepresentations() {
+    }
+}
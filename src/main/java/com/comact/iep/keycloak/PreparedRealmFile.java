@@ -0,0 +1,100 @@
+package com.comact.iep.keycloak;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * The realm file prepared at build time by RealmFilePreprocessor, a build tool of src/build/java.
+ * <p>
+ * Next to a realm file keycloak/realm.json, the build writes :
+ * <ul>
+ *     <li>keycloak/realm.prepared.json, the compact partial import of the imported sections</li>
+ *     <li>keycloak/realm.hashes, the hash of each section, one section=hash line per section</li>
+ * </ul>
+ * The hashes are read first, the partial import is only decoded when a section changed since the last import.
+ */
+public final class PreparedRealmFile {
+    static final String PREPARED_SUFFIX = ".prepared.json";
+    static final String HASHES_SUFFIX = ".hashes";
+
+    private PreparedRealmFile() {
+    }
+
+    /**
+     * Check if a realm file was prepared at build time.
+     *
+     * @param filename the realm file
+     * @return true if the prepared file and its hashes exist
+     */
+    public static boolean exists(String filename) {
+        return PreparedRealmFile.class.getResource(baseName(filename) + PREPARED_SUFFIX) != null &&
+                PreparedRealmFile.class.getResource(baseName(filename) + HASHES_SUFFIX) != null;
+    }
+
+    /**
+     * Read the hashes of the sections of a prepared realm file.
+     *
+     * @param filename the realm file
+     * @return the hash of each section
+     * @throws IOException the hashes are missing or invalid
+     */
+    public static Map<RealmSections.Section, String> readHashes(String filename) throws IOException {
+        Map<RealmSections.Section, String> hashes = new EnumMap<>(RealmSections.Section.class);
+        try (var reader = new BufferedReader(new InputStreamReader(open(baseName(filename) + HASHES_SUFFIX), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var separator = line.indexOf('=');
+                if (separator > 0) {
+                    hashes.put(RealmSections.Section.valueOf(line.substring(0, separator)), line.substring(separator + 1));
+                }
+            }
+        }
+
+        if (hashes.size() != RealmSections.Section.values().length) {
+            throw new IOException("Incomplete hashes for realm file [" + filename + "] : " + hashes.keySet());
+        }
+        return hashes;
+    }
+
+    /**
+     * Read the partial import of a prepared realm file.
+     *
+     * @param filename               the realm file
+     * @param policyIfResourceExists the policy if resource exists
+     * @return the partial import representation
+     * @throws IOException the prepared file is missing or invalid
+     */
+    public static PartialImportRepresentation readPartialImport(String filename, String policyIfResourceExists) throws IOException {
+        try (var input = open(baseName(filename) + PREPARED_SUFFIX)) {
+            var partialImport = JsonSerialization.readValue(input, PartialImportRepresentation.class);
+            partialImport.setIfResourceExists(policyIfResourceExists);
+            return partialImport;
+        }
+    }
+
+    /**
+     * The name of a realm file without its .json extension.
+     *
+     * @param filename the realm file
+     * @return the base name
+     */
+    static String baseName(String filename) {
+        return filename.endsWith(".json") ? filename.substring(0, filename.length() - ".json".length()) : filename;
+    }
+
+    private static InputStream open(String resource) throws IOException {
+        var input = PreparedRealmFile.class.getResourceAsStream(resource);
+        if (input == null) {
+            throw new IOException("Prepared realm file [" + resource + "] not found");
+        }
+        return input;
+    }
+}
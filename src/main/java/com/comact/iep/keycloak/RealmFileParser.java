@@ -0,0 +1,151 @@
+package com.comact.iep.keycloak;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.IdentityProviderRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.representations.idm.RolesRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Parser of the realm files.
+ * <p>
+ * In streaming mode, only the imported sections are decoded, the other fields of the realm (authentication flows, client scopes, keys,
+ * ...) are skipped token by token without being built. The arrays are decoded one element at a time, the parser never
+ * holds more than the current element besides the result.
+ */
+public final class RealmFileParser {
+    private static final ObjectReader CLIENT_READER = JsonSerialization.mapper.readerFor(ClientRepresentation.class);
+    private static final ObjectReader GROUP_READER = JsonSerialization.mapper.readerFor(GroupRepresentation.class);
+    private static final ObjectReader IDENTITY_PROVIDER_READER = JsonSerialization.mapper.readerFor(IdentityProviderRepresentation.class);
+    private static final ObjectReader USER_READER = JsonSerialization.mapper.readerFor(UserRepresentation.class);
+    private static final ObjectReader ROLES_READER = JsonSerialization.mapper.readerFor(RolesRepresentation.class);
+
+    private RealmFileParser() {
+    }
+
+    /**
+     * Load file partial import representation.
+     *
+     * @param filename               the filename
+     * @param policyIfResourceExists the policy if resource exists
+     * @return the partial import representation
+     * @throws Exception the exception
+     */
+    public static PartialImportRepresentation loadFile(String filename, String policyIfResourceExists) throws Exception {
+        return loadFile(filename, policyIfResourceExists, false);
+    }
+
+    /**
+     * Load file partial import representation.
+     *
+     * @param filename               the filename
+     * @param policyIfResourceExists the policy if resource exists
+     * @param streaming              decode only the imported sections with {@link #parse}, instead of the whole realm
+     * @return the partial import representation
+     * @throws Exception the exception
+     */
+    public static PartialImportRepresentation loadFile(String filename, String policyIfResourceExists, boolean streaming) throws Exception {
+        var input = RealmFileParser.class.getResourceAsStream(filename);
+        if (input == null) {
+            throw new FileNotFoundException("Realm file [" + filename + "] not found");
+        }
+        return streaming ? parse(input, policyIfResourceExists) : readRealm(input, policyIfResourceExists);
+    }
+
+    /**
+     * Read a whole realm file and keep the imported sections.
+     *
+     * @param input                  the realm file
+     * @param policyIfResourceExists the policy if resource exists
+     * @return the partial import representation
+     * @throws IOException the exception
+     */
+    public static PartialImportRepresentation readRealm(InputStream input, String policyIfResourceExists) throws IOException {
+        var realmRepresentation = JsonSerialization.readValue(input, RealmRepresentation.class);
+
+        var partialImport = new PartialImportRepresentation();
+        partialImport.setIfResourceExists(policyIfResourceExists);
+        partialImport.setClients(realmRepresentation.getClients());
+        partialImport.setGroups(realmRepresentation.getGroups());
+        partialImport.setIdentityProviders(realmRepresentation.getIdentityProviders());
+        partialImport.setRoles(realmRepresentation.getRoles());
+        partialImport.setUsers(realmRepresentation.getUsers());
+
+        return partialImport;
+    }
+
+    /**
+     * Parse the imported sections of a realm file.
+     *
+     * @param input                  the realm file, it is closed
+     * @param policyIfResourceExists the policy if resource exists
+     * @return the partial import representation
+     * @throws IOException the file is not a valid realm file
+     */
+    public static PartialImportRepresentation parse(InputStream input, String policyIfResourceExists) throws IOException {
+        var partialImport = new PartialImportRepresentation();
+        partialImport.setIfResourceExists(policyIfResourceExists);
+
+        try (var parser = JsonSerialization.mapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The realm file must contain a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.getCurrentName();
+                parser.nextToken();
+
+                switch (field) {
+                    case "clients":
+                        partialImport.setClients(readList(parser, CLIENT_READER));
+                        break;
+                    case "groups":
+                        partialImport.setGroups(readList(parser, GROUP_READER));
+                        break;
+                    case "identityProviders":
+                        partialImport.setIdentityProviders(readList(parser, IDENTITY_PROVIDER_READER));
+                        break;
+                    case "users":
+                        partialImport.setUsers(readList(parser, USER_READER));
+                        break;
+                    case "roles":
+                        partialImport.setRoles(parser.currentToken() == JsonToken.VALUE_NULL ? null : ROLES_READER.readValue(parser));
+                        break;
+                    default:
+                        // skips the whole value without decoding it
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        return partialImport;
+    }
+
+    private static <T> List<T> readList(JsonParser parser, ObjectReader reader) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array for [" + parser.getCurrentName() + "] at " + parser.getCurrentLocation());
+        }
+
+        List<T> items = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            items.add(reader.readValue(parser));
+        }
+        return items;
+    }
+}
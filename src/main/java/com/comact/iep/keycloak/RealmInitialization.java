@@ -0,0 +1,113 @@
+package com.comact.iep.keycloak;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.comact.iep.keycloak.RealmInitializerClass.Status;
+
+/**
+ * The initialization of a realm from its file.
+ */
+public class RealmInitialization {
+    private final String realm;
+    private final String filename;
+
+    private volatile Status status;
+    private volatile String error;
+    private volatile long duration;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Instantiates a new initialization.
+     *
+     * @param realm    the realm
+     * @param filename the realm file, the initialization is disabled if empty
+     */
+    public RealmInitialization(String realm, String filename) {
+        this.realm = realm;
+        this.filename = filename;
+        this.status = filename == null || filename.isEmpty() ? Status.DISABLED : Status.RUNNING;
+    }
+
+    /**
+     * The realm to initialize.
+     *
+     * @return the realm
+     */
+    public String getRealm() {
+        return realm;
+    }
+
+    /**
+     * The realm file.
+     *
+     * @return the filename
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * The status of the initialization.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * The error of the last failed attempt.
+     *
+     * @return the error, null if there was none
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * The duration of the initialization.
+     *
+     * @return the duration in milliseconds, 0 while running
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * The duration of each phase of the initialization, in the order they ran.
+     *
+     * @return the durations in milliseconds by phase
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    /**
+     * A one-line summary of the initialization.
+     *
+     * @return the summary
+     */
+    public synchronized String summary() {
+        return realm + " " + status + " in " + duration + " ms" + phases.entrySet().stream()
+                .map(phase -> phase.getKey() + " " + phase.getValue())
+                .collect(Collectors.joining(", ", " (", ")"));
+    }
+
+    synchronized void addPhase(String phase, long millis) {
+        phases.merge(phase, millis, Long::sum);
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    void setDuration(long duration) {
+        this.duration = duration;
+    }
+}
@@ -1,74 +1,365 @@
 package com.comact.iep.keycloak;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 
-import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.keycloak.representations.idm.PartialImportRepresentation;
 import org.keycloak.representations.idm.PartialImportRepresentation.Policy;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.RolesRepresentation;
 
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
 import io.quarkus.runtime.Startup;
+import io.smallrye.mutiny.Uni;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Create and import the realms in Keycloak.
+ * <p>
+ * The realms are listed in keycloak.realms as realm:file pairs, without it the realm keycloak.realm is initialized
+ * from keycloak.realm.init.filename. Up to keycloak.realm.init.realm-parallelism realms are initialized at the same
+ * time, they share the {@link KeycloakAdminClient}, its connections to Keycloak and its admin token.
+ * <p>
+ * The initialization runs in background so it doesn't delay the boot of the application, the
+ * {@link RealmInitializerHealthCheck} keeps the application not ready until it is done. Each call to Keycloak is
+ * retried with an exponential backoff, a failed initialization is attempted again every
+ * keycloak.realm.init.retry.max-delay until it succeeds.
+ * <p>
+ * The hash of each imported section of the file is stored in the realm attributes, only the sections changed since the
+ * last import are sent to Keycloak. With keycloak.realm.init.incremental=false, the whole file is always imported.
+ * <p>
+ * The sections are imported in chunks of keycloak.realm.init.chunk-size items, keycloak.realm.init.parallelism chunks
+ * at a time, see {@link ChunkedRealmImport}.
+ * <p>
+ * When the realm file was prepared by the build, see {@link PreparedRealmFile}, the hashes computed at build time are
+ * compared first and the realm file is not parsed at all if nothing changed.
+ * <p>
+ * Each phase of an initialization is timed by the keycloak.realm.init.phase metric and a span, the phases of all the
+ * realms are summarized on one line once done and reported by {@link #getInitializations()}.
+ */
 @Slf4j
 @ApplicationScoped
 @Startup(0)
 public class RealmInitializerClass {
 
+    /**
+     * The status of the initialization.
+     */
+    public enum Status {
+        DISABLED, RUNNING, DONE, FAILED
+    }
+
     @ConfigProperty(name = "keycloak.realm")
     String realm;
 
     @ConfigProperty(name = "keycloak.realm.init.filename")
     String realmFilename;
 
-    @ConfigProperty(name = "keycloak.admin.user", defaultValue = "")
-    Optional<String> adminUsername;
+    @ConfigProperty(name = "keycloak.realms")
+    Optional<List<String>> realms;
+
+    @ConfigProperty(name = "keycloak.realm.init.realm-parallelism", defaultValue = "4")
+    int realmParallelism;
+
+    @ConfigProperty(name = "keycloak.realm.init.incremental", defaultValue = "true")
+    boolean incremental;
+
+    @ConfigProperty(name = "keycloak.realm.init.streaming", defaultValue = "true")
+    boolean streaming;
+
+    @ConfigProperty(name = "keycloak.realm.init.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @ConfigProperty(name = "keycloak.realm.init.parallelism", defaultValue = "4")
+    int parallelism;
+
+    @ConfigProperty(name = "keycloak.realm.init.retry.max", defaultValue = "10")
+    int maxRetries;
 
-    @ConfigProperty(name = "keycloak.admin.password", defaultValue = "")
-    Optional<String> adminPassword;
+    @ConfigProperty(name = "keycloak.realm.init.retry.delay", defaultValue = "1S")
+    Duration retryDelay;
+
+    @ConfigProperty(name = "keycloak.realm.init.retry.max-delay", defaultValue = "30S")
+    Duration retryMaxDelay;
+
+    @ConfigProperty(name = "keycloak.realm.init.call-timeout", defaultValue = "6M")
+    Duration callTimeout;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @Inject
+    KeycloakAdminClient client;
+
+    @Inject
+    Tracer tracer;
+
+    private final Map<String, RealmInitialization> initializations = new LinkedHashMap<>();
+
+    private ExecutorService executor;
+    private ExecutorService importExecutor;
 
     @PostConstruct
     public void init() {
-        if (StringUtils.isNotEmpty(realmFilename)) {
-            log.debug("Importing realm [{}]", realm);
-            var client = new KeycloakRealmsHelper();
+        realmFiles().forEach((name, filename) -> initializations.put(name, new RealmInitialization(name, filename)));
+        initializations.values().forEach(this::registerMetrics);
 
-            RealmRepresentation realmRepresentation = null;
-            try {
-                realmRepresentation = client.getRealm(realm, adminUsername.orElse(null), adminPassword.orElse(null));
-            } catch (Throwable ignore) {
+        if (initializations.values().stream().noneMatch(initialization -> initialization.getStatus() == Status.RUNNING)) {
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(realmParallelism, daemonThreads("realm-initializer"));
+        importExecutor = Executors.newFixedThreadPool(parallelism, daemonThreads("realm-import"));
+
+        var futures = initializations.values().stream()
+                .filter(initialization -> initialization.getStatus() == Status.RUNNING)
+                .map(initialization -> CompletableFuture.runAsync(() -> initialize(initialization), executor))
+                .toArray(CompletableFuture[]::new);
+
+        var start = System.nanoTime();
+        CompletableFuture.allOf(futures).whenComplete((result, e) -> {
+            var elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            var summary = initializations.values().stream().map(RealmInitialization::summary).collect(Collectors.joining(", "));
+            var failed = initializations.values().stream()
+                    .filter(initialization -> initialization.getStatus() == Status.FAILED)
+                    .map(RealmInitialization::getRealm)
+                    .collect(Collectors.toList());
+            if (failed.isEmpty()) {
+                log.info("Realm initialization done in {} ms : {}", elapsed, summary);
+            } else {
+                log.warn("Realm initialization failed for {} after {} ms, attempted again every {} : {}", failed, elapsed, retryMaxDelay, summary);
+            }
+        });
+    }
+
+    @PreDestroy
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            importExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * The initializations of the realms.
+     *
+     * @return the initializations, in the configured order
+     */
+    public Collection<RealmInitialization> getInitializations() {
+        return Collections.unmodifiableCollection(initializations.values());
+    }
+
+    /**
+     * The realm files by realm, from keycloak.realms or else keycloak.realm and keycloak.realm.init.filename.
+     */
+    private Map<String, String> realmFiles() {
+        Map<String, String> files = new LinkedHashMap<>();
+        if (realms.isEmpty() || realms.get().isEmpty()) {
+            files.put(realm, realmFilename);
+            return files;
+        }
+
+        for (var entry : realms.get()) {
+            var separator = entry.indexOf(':');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                throw new IllegalArgumentException("Invalid keycloak.realms entry [" + entry + "], expected realm:file");
             }
+            if (files.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim()) != null) {
+                throw new IllegalArgumentException("Duplicated realm in keycloak.realms [" + entry + "]");
+            }
+        }
+        return files;
+    }
+
+    private void registerMetrics(RealmInitialization initialization) {
+        var tag = new Tag("realm", initialization.getRealm());
+        metricRegistry.register(Metadata.builder()
+                .withName("keycloak.realm.init.done")
+                .withDescription("1 once the realm is initialized, -1 if the initialization failed")
+                .withType(MetricType.GAUGE)
+                .build(), (Gauge<Integer>) () -> initialization.getStatus() == Status.DONE ? 1 : initialization.getStatus() == Status.FAILED ? -1 : 0, tag);
+        metricRegistry.register(Metadata.builder()
+                .withName("keycloak.realm.init.duration")
+                .withDescription("Duration of the initialization of the realm")
+                .withType(MetricType.GAUGE)
+                .withUnit(MetricUnits.MILLISECONDS)
+                .build(), (Gauge<Long>) initialization::getDuration, tag);
+    }
+
+    private void initialize(RealmInitialization initialization) {
+        var start = System.nanoTime();
+        var name = initialization.getRealm();
+        var filename = initialization.getFilename();
+        log.debug("Importing realm [{}]", name);
+
+        var span = tracer.buildSpan("realm-init").withTag("realm", name).withTag("file", filename).start();
+        try (var scope = tracer.activateSpan(span)) {
+            phase(initialization, "token", () -> retry(initialization, "get an admin token for", () -> await(client.getAccessToken())));
+
+            var existingRealm = phase(initialization, "get-realm", () -> retry(initialization, "get realm", () -> await(client.getRealm(name))));
 
             // create realm is not present
-            if (realmRepresentation == null) {
-                realmRepresentation = createRealm(realm);
-                realmRepresentation.setRevokeRefreshToken(true);
-                realmRepresentation.setRefreshTokenMaxReuse(0);
-                realmRepresentation.setAccessTokenLifespan(3);
-
-                try {
-                    client.createRealm(realmRepresentation);
-                } catch (Throwable e) {
-                    log.error("Unable to create realm [{}]", realm, e);
-                }
+            if (existingRealm == null) {
+                phase(initialization, "create-realm", () -> retry(initialization, "create realm", () -> {
+                    var realmRepresentation = createRealm(name);
+                    realmRepresentation.setRevokeRefreshToken(true);
+                    realmRepresentation.setRefreshTokenMaxReuse(0);
+                    realmRepresentation.setAccessTokenLifespan(3);
+
+                    return await(client.createRealm(realmRepresentation));
+                }));
             }
 
-            // import realms
+            // import the sections changed since the last import, the file prepared at build time is only decoded if needed
+            var prepared = PreparedRealmFile.exists(filename);
+            var partialImportRepresentation = prepared ? null : phase(initialization, "load-file", () -> RealmFileParser.loadFile(filename, Policy.SKIP.toString(), streaming));
+            var hashes = phase(initialization, "hash", () -> prepared ? PreparedRealmFile.readHashes(filename) : RealmSections.hashes(partialImportRepresentation));
+            var changed = incremental ? RealmSections.changed(existingRealm, hashes) : hashes.keySet();
+
+            if (changed.isEmpty()) {
+                log.info("Realm [{}] is up to date with file [{}], nothing to import", name, filename);
+            } else {
+                log.info("Importing sections {} of {}file [{}] in realm [{}]", changed, prepared ? "prepared " : "", filename, name);
+                var loaded = partialImportRepresentation != null ? partialImportRepresentation :
+                        phase(initialization, "load-file", () -> PreparedRealmFile.readPartialImport(filename, Policy.SKIP.toString()));
+                phase(initialization, "import", () -> {
+                    importChunks(initialization, RealmSections.only(loaded, changed));
+                    return null;
+                });
+
+                // the hashes are stored once the import succeeded, a failed import is retried on the next start
+                phase(initialization, "store-hashes", () -> retry(initialization, "store import hashes", () ->
+                        await(client.updateRealmAttributes(name, RealmSections.attributes(hashes)))));
+            }
+
+            initialization.setError(null);
+            initialization.setStatus(Status.DONE);
+        } catch (Exception e) {
+            log.error("Unable to initialize realm [{}] from file [{}]", name, filename, e);
+            initialization.setError(e.getMessage());
+            initialization.setStatus(Status.FAILED);
+            Tags.ERROR.set(span, true);
+        } finally {
+            initialization.setDuration(Duration.ofNanos(System.nanoTime() - start).toMillis());
+            span.setTag("status", initialization.getStatus().toString());
+            span.finish();
+        }
+
+        if (initialization.getStatus() == Status.DONE) {
+            log.info("Initialization of realm [{}] done in {} ms, outside of the application boot", name, initialization.getDuration());
+        } else {
+            // the application stays not ready until the realm is initialized, so it is never given up
+            // a new attempt keeps the FAILED status until it succeeds, the readiness doesn't flap when not required
+            log.warn("Initialization of realm [{}] failed in {} ms, it will be attempted again in {}", name, initialization.getDuration(), retryMaxDelay);
+            CompletableFuture.runAsync(() -> initialize(initialization),
+                    CompletableFuture.delayedExecutor(retryMaxDelay.toMillis(), TimeUnit.MILLISECONDS, executor));
+        }
+    }
+
+    /**
+     * Run a phase of the initialization of a realm, timed by a metric and a span.
+     *
+     * @param initialization the initialization of the realm
+     * @param phase          the phase
+     * @param step           the phase
+     * @param <T>            the type of the result
+     * @return the result
+     * @throws Exception the phase failed
+     */
+    private <T> T phase(RealmInitialization initialization, String phase, Callable<T> step) throws Exception {
+        var span = tracer.buildSpan("realm-init." + phase).withTag("realm", initialization.getRealm()).start();
+        var start = System.nanoTime();
+        try (var scope = tracer.activateSpan(span)) {
+            return step.call();
+        } catch (Exception e) {
+            Tags.ERROR.set(span, true);
+            span.log(String.valueOf(e.getMessage()));
+            throw e;
+        } finally {
+            var elapsed = Duration.ofNanos(System.nanoTime() - start);
+            initialization.addPhase(phase, elapsed.toMillis());
+            metricRegistry.timer("keycloak.realm.init.phase", new Tag("realm", initialization.getRealm()), new Tag("phase", phase)).update(elapsed);
+            span.finish();
+        }
+    }
+
+    private void importChunks(RealmInitialization initialization, PartialImportRepresentation partialImport) {
+        new ChunkedRealmImport(chunkSize, importExecutor, (name, chunk) -> retry(initialization, "import chunk " + name + " of", () -> {
+            await(client.partialImport(initialization.getRealm(), chunk));
+            return null;
+        })).run(initialization.getRealm(), partialImport);
+    }
+
+    /**
+     * Call Keycloak until it succeeds, with an exponential backoff between the attempts.
+     *
+     * @param initialization the initialization of the realm
+     * @param step           the name of the step, for the logs
+     * @param attempt        the call
+     * @param <T>            the type of the result
+     * @return the result
+     * @throws Exception the error of the last attempt
+     */
+    private <T> T retry(RealmInitialization initialization, String step, Callable<T> attempt) throws Exception {
+        var delay = retryDelay;
+        for (var count = 1; ; count++) {
             try {
-                var partialImportRepresentation = KeycloakRealmsHelper.loadFile(realmFilename, Policy.SKIP.toString());
-                client.partialImport(realm, partialImportRepresentation, adminUsername.orElse(null), adminPassword.orElse(null));
-            } catch (Throwable e) {
-                log.error("Unable to import realm file [{}]", realmFilename, e);
+                return attempt.call();
+            } catch (Exception e) {
+                initialization.setError(e.getMessage());
+                if (count >= maxRetries) {
+                    throw e;
+                }
+
+                log.warn("Unable to {} [{}], attempt {}/{}, retrying in {}", step, initialization.getRealm(), count, maxRetries, delay, e);
+                Thread.sleep(delay.toMillis());
+                delay = delay.multipliedBy(2).compareTo(retryMaxDelay) > 0 ? retryMaxDelay : delay.multipliedBy(2);
             }
         }
+    }
+
+    /**
+     * Wait for a call to Keycloak, at most keycloak.realm.init.call-timeout, a call timed out is retried as a failed one.
+     */
+    private <T> T await(Uni<T> call) {
+        return call.await().atMost(callTimeout);
+    }
 
+    private static ThreadFactory daemonThreads(String name) {
+        var threadCount = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     /**
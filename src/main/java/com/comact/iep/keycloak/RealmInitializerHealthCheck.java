@@ -0,0 +1,47 @@
+package com.comact.iep.keycloak;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+/**
+ * The application is ready once the realms are initialized.
+ * <p>
+ * With keycloak.realm.init.required=false, a failed initialization doesn't keep the application not ready.
+ */
+@Readiness
+@ApplicationScoped
+public class RealmInitializerHealthCheck implements HealthCheck {
+
+    @Inject
+    RealmInitializerClass realmInitializer;
+
+    @ConfigProperty(name = "keycloak.realm.init.required", defaultValue = "true")
+    boolean required;
+
+    @Override
+    public HealthCheckResponse call() {
+        var ready = true;
+        var response = HealthCheckResponse.named("keycloak-realm-init");
+
+        for (var initialization : realmInitializer.getInitializations()) {
+            var status = initialization.getStatus();
+            ready &= status == RealmInitializerClass.Status.DONE || status == RealmInitializerClass.Status.DISABLED ||
+                    (status == RealmInitializerClass.Status.FAILED && !required);
+
+            var realm = initialization.getRealm();
+            response.withData(realm + ".status", status.toString())
+                    .withData(realm + ".duration", initialization.getDuration());
+
+            if (initialization.getError() != null) {
+                response.withData(realm + ".error", initialization.getError());
+            }
+        }
+
+        return response.status(ready).build();
+    }
+}
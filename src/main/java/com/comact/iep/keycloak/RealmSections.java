@@ -0,0 +1,161 @@
+package com.comact.iep.keycloak;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The sections of a realm file that are imported, and their hashes.
+ * <p>
+ * The hash of each imported section is kept in an attribute of the realm, so the next import only sends the sections
+ * that changed in the file.
+ */
+public final class RealmSections {
+    private static final String ATTRIBUTE_PREFIX = "comact.import.hash.";
+
+    // map entries are sorted so the same section always gives the same hash
+    private static final ObjectMapper MAPPER = JsonSerialization.mapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    /**
+     * The imported sections, in the order Keycloak imports them.
+     */
+    public enum Section {
+        CLIENTS(PartialImportRepresentation::getClients, (partialImport, value) -> partialImport.setClients(cast(value))),
+        ROLES(PartialImportRepresentation::getRoles, (partialImport, value) -> partialImport.setRoles(cast(value))),
+        IDENTITY_PROVIDERS(PartialImportRepresentation::getIdentityProviders, (partialImport, value) -> partialImport.setIdentityProviders(cast(value))),
+        GROUPS(PartialImportRepresentation::getGroups, (partialImport, value) -> partialImport.setGroups(cast(value))),
+        USERS(PartialImportRepresentation::getUsers, (partialImport, value) -> partialImport.setUsers(cast(value)));
+
+        private final Function<PartialImportRepresentation, Object> getter;
+        private final BiConsumer<PartialImportRepresentation, Object> setter;
+
+        Section(Function<PartialImportRepresentation, Object> getter, BiConsumer<PartialImportRepresentation, Object> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        /**
+         * The realm attribute with the hash of the section.
+         *
+         * @return the attribute name
+         */
+        public String attribute() {
+            return ATTRIBUTE_PREFIX + name().toLowerCase();
+        }
+
+        /**
+         * The content of the section.
+         *
+         * @param partialImport the partial import
+         * @return the content, null if absent
+         */
+        public Object get(PartialImportRepresentation partialImport) {
+            return getter.apply(partialImport);
+        }
+
+        /**
+         * Set the content of the section.
+         *
+         * @param partialImport the partial import
+         * @param value         the content
+         */
+        public void set(PartialImportRepresentation partialImport, Object value) {
+            setter.accept(partialImport, value);
+        }
+    }
+
+    private RealmSections() {
+    }
+
+    /**
+     * Hash each section of a partial import.
+     *
+     * @param partialImport the partial import
+     * @return the SHA-256 of each section, as hexadecimal
+     */
+    public static Map<Section, String> hashes(PartialImportRepresentation partialImport) {
+        Map<Section, String> hashes = new EnumMap<>(Section.class);
+        for (var section : Section.values()) {
+            hashes.put(section, hash(section.get(partialImport)));
+        }
+        return hashes;
+    }
+
+    /**
+     * Find the sections with a hash different of the one stored in the realm.
+     *
+     * @param realm  the realm, null if it doesn't exist yet
+     * @param hashes the hashes of the sections in the file
+     * @return the changed sections
+     */
+    public static Set<Section> changed(RealmRepresentation realm, Map<Section, String> hashes) {
+        var attributes = realm == null ? null : realm.getAttributes();
+        Set<Section> changed = EnumSet.noneOf(Section.class);
+        for (var entry : hashes.entrySet()) {
+            if (attributes == null || !entry.getValue().equals(attributes.get(entry.getKey().attribute()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Keep only some sections of a partial import.
+     *
+     * @param partialImport the partial import
+     * @param sections      the sections to keep
+     * @return a new partial import with the same policy
+     */
+    public static PartialImportRepresentation only(PartialImportRepresentation partialImport, Set<Section> sections) {
+        var result = new PartialImportRepresentation();
+        result.setIfResourceExists(partialImport.getIfResourceExists());
+        for (var section : sections) {
+            section.set(result, section.get(partialImport));
+        }
+        return result;
+    }
+
+    /**
+     * The realm attributes storing the hashes.
+     *
+     * @param hashes the hashes
+     * @return the attributes
+     */
+    public static Map<String, String> attributes(Map<Section, String> hashes) {
+        Map<String, String> attributes = new HashMap<>();
+        hashes.forEach((section, hash) -> attributes.put(section.attribute(), hash));
+        return attributes;
+    }
+
+    private static String hash(Object value) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(MAPPER.writeValueAsBytes(value));
+            var hex = new StringBuilder(digest.length * 2);
+            for (var b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Unable to hash a realm section", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
@@ -0,0 +1,55 @@
+package com.comact.iep.logging;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+
+import io.quarkus.runtime.Startup;
+
+/**
+ * Metrics of the {@link RingBufferAsyncAppender}s and of the rollovers of the {@link MeteredRollingFileAppender}s.
+ * <p>
+ * The appenders are started by the logging configuration before the beans, they are found with
+ * {@link RingBufferAsyncAppender#instances()} and {@link MeteredRollingFileAppender#instances()}.
+ */
+@Startup
+@ApplicationScoped
+public class AsyncAppenderMetrics {
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @PostConstruct
+    void init() {
+        for (var appender : RingBufferAsyncAppender.instances()) {
+            var tag = new Tag("appender", appender.getName());
+
+            metricRegistry.register(Metadata.builder()
+                    .withName("logging.async.queue-depth")
+                    .withDescription("Log events waiting to be written")
+                    .withType(MetricType.GAUGE)
+                    .build(), (Gauge<Integer>) appender::getQueueDepth, tag);
+            var dropped = metricRegistry.counter(Metadata.builder()
+                    .withName("logging.async.dropped")
+                    .withDescription("Log events dropped because the buffer was full")
+                    .withType(MetricType.COUNTER)
+                    .build(), tag);
+            appender.setDroppedListener(dropped::inc);
+
+            var flushTimer = metricRegistry.timer("logging.async.flush", tag);
+            appender.setFlushListener(nanos -> flushTimer.update(Duration.ofNanos(nanos)));
+        }
+
+        for (var appender : MeteredRollingFileAppender.instances()) {
+            var rolloverTimer = metricRegistry.timer("logging.file.rollover", new Tag("appender", appender.getName()));
+            appender.setRolloverListener(nanos -> rolloverTimer.update(Duration.ofNanos(nanos)));
+        }
+    }
+}
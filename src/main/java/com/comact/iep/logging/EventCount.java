@@ -0,0 +1,64 @@
+package com.comact.iep.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * A count of events since the start, forwarded to a listener, a metrics counter.
+ * <p>
+ * The appenders are started by the logging configuration before the beans, the events counted before the listener is
+ * set are forwarded to it when it is set.
+ */
+final class EventCount {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong unreported = new AtomicLong();
+    private volatile LongConsumer listener;
+
+    /**
+     * Count an event.
+     */
+    void increment() {
+        count.incrementAndGet();
+        var current = listener;
+        if (current != null) {
+            current.accept(1);
+            return;
+        }
+
+        unreported.incrementAndGet();
+        // the listener may have been set since it was read, and may have missed this event
+        current = listener;
+        if (current != null) {
+            report(current);
+        }
+    }
+
+    /**
+     * The number of events since the start.
+     *
+     * @return the count
+     */
+    long get() {
+        return count.get();
+    }
+
+    /**
+     * Set the listener of the events, it first receives the events counted without a listener.
+     *
+     * @param listener the listener of the number of new events
+     */
+    void setListener(LongConsumer listener) {
+        this.listener = listener;
+        if (listener != null) {
+            report(listener);
+        }
+    }
+
+    private void report(LongConsumer listener) {
+        // each missed event is taken once, by this call or by a concurrent one
+        var missed = unreported.getAndSet(0);
+        if (missed > 0) {
+            listener.accept(missed);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.comact.iep.logging;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.core.encoder.EncoderBase;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Encoder of the events as JSON lines, for the log collectors.
+ * <p>
+ * Each event is written in a reusable buffer of its thread, the only allocation by event is the returned byte array.
+ * A line holds the timestamp, level, logger, thread and message, the traceId and spanId of the OpenTracing span
+ * (tracing.log-trace-context), the other MDC values and the stack trace.
+ * <pre>
+ * {"@timestamp":"2026-10-19T09:32:05.123Z","level":"INFO","logger":"com.comact.iep.api.kubernetes.ConfigMapsService","thread":"executor-thread-0","message":"...","traceId":"...","spanId":"...","mdc":{...}}
+ * </pre>
+ */
+public class JsonEncoder extends EncoderBase<ILoggingEvent> {
+    private static final String TRACE_ID = "traceId";
+    private static final String SPAN_ID = "spanId";
+
+    private static final byte[] TIMESTAMP = field("@timestamp", true);
+    private static final byte[] LEVEL = field("level", false);
+    private static final byte[] LOGGER = field("logger", false);
+    private static final byte[] THREAD = field("thread", false);
+    private static final byte[] MESSAGE = field("message", false);
+    private static final byte[] TRACE_ID_FIELD = field(TRACE_ID, false);
+    private static final byte[] SPAN_ID_FIELD = field(SPAN_ID, false);
+    private static final byte[] MDC = field("mdc", false);
+    private static final byte[] STACK_TRACE = field("stack_trace", false);
+    private static final byte[] CAUSED_BY = "Caused by: ".getBytes();
+    private static final byte[] SUPPRESSED = "Suppressed: ".getBytes();
+    private static final byte[] AT = "\\tat ".getBytes();
+    private static final byte[] MORE = "\\t... ".getBytes();
+    private static final byte[] MORE_SUFFIX = " more\\n".getBytes();
+    private static final byte[] NATIVE_METHOD = "Native Method".getBytes();
+    private static final byte[] UNKNOWN_SOURCE = "Unknown Source".getBytes();
+
+    private static final ThreadLocal<EventWriter> WRITERS = ThreadLocal.withInitial(EventWriter::new);
+
+    @Getter @Setter
+    private boolean includeMdc = true;
+    @Getter @Setter
+    private boolean includeStackTrace = true;
+    @Getter @Setter
+    private int maxStackTraceElements = 100;
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        var eventWriter = WRITERS.get();
+        var writer = eventWriter.writer;
+        writer.reset();
+
+        writer.raw(TIMESTAMP).timestamp(event.getTimeStamp());
+        writer.raw(LEVEL).string(event.getLevel().levelStr);
+        writer.raw(LOGGER).string(event.getLoggerName());
+        writer.raw(THREAD).string(event.getThreadName());
+        writer.raw(MESSAGE).string(event.getFormattedMessage());
+
+        var mdc = event.getMDCPropertyMap();
+        if (mdc != null && !mdc.isEmpty()) {
+            writeMdc(writer, eventWriter, mdc);
+        }
+
+        var throwable = event.getThrowableProxy();
+        if (includeStackTrace && throwable != null) {
+            writer.raw(STACK_TRACE).raw('"');
+            writeThrowable(writer, throwable, null);
+            writer.raw('"');
+        }
+
+        writer.raw('}').raw('\n');
+        return writer.toByteArray();
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private void writeMdc(JsonWriter writer, EventWriter eventWriter, Map<String, String> mdc) {
+        var traceId = mdc.get(TRACE_ID);
+        if (traceId != null) {
+            writer.raw(TRACE_ID_FIELD).string(traceId);
+        }
+        var spanId = mdc.get(SPAN_ID);
+        if (spanId != null) {
+            writer.raw(SPAN_ID_FIELD).string(spanId);
+        }
+
+        if (includeMdc) {
+            var traceValues = (traceId == null ? 0 : 1) + (spanId == null ? 0 : 1);
+            if (mdc.size() > traceValues) {
+                writer.raw(MDC).raw('{');
+                eventWriter.first = true;
+                mdc.forEach(eventWriter.mdcWriter);
+                writer.raw('}');
+            }
+        }
+    }
+
+    private void writeThrowable(JsonWriter writer, IThrowableProxy throwable, byte[] prefix) {
+        if (prefix != null) {
+            writer.raw(prefix);
+        }
+        writer.escaped(throwable.getClassName());
+        if (throwable.getMessage() != null) {
+            writer.raw(':').raw(' ').escaped(throwable.getMessage());
+        }
+        writer.raw('\\').raw('n');
+
+        var elements = throwable.getStackTraceElementProxyArray();
+        var written = Math.min(elements.length - throwable.getCommonFrames(), maxStackTraceElements);
+        for (var index = 0; index < written; index++) {
+            var element = elements[index].getStackTraceElement();
+            writer.raw(AT).escaped(element.getClassName()).raw('.').escaped(element.getMethodName()).raw('(');
+            if (element.isNativeMethod()) {
+                writer.raw(NATIVE_METHOD);
+            } else if (element.getFileName() == null) {
+                writer.raw(UNKNOWN_SOURCE);
+            } else {
+                writer.escaped(element.getFileName());
+                if (element.getLineNumber() >= 0) {
+                    writer.raw(':').number(element.getLineNumber());
+                }
+            }
+            writer.raw(')').raw('\\').raw('n');
+        }
+        if (elements.length > written) {
+            writer.raw(MORE).number(elements.length - written).raw(MORE_SUFFIX);
+        }
+
+        var suppressed = throwable.getSuppressed();
+        if (suppressed != null) {
+            for (var suppressedThrowable : suppressed) {
+                writeThrowable(writer, suppressedThrowable, SUPPRESSED);
+            }
+        }
+        if (throwable.getCause() != null) {
+            writeThrowable(writer, throwable.getCause(), CAUSED_BY);
+        }
+    }
+
+    private static byte[] field(String name, boolean first) {
+        return ((first ? "{\"" : ",\"") + name + "\":").getBytes();
+    }
+
+    /**
+     * The writer of a thread, with its MDC writer to avoid a lambda by event.
+     */
+    private static class EventWriter {
+        private final JsonWriter writer = new JsonWriter();
+        private boolean first;
+        private final BiConsumer<String, String> mdcWriter = (key, value) -> {
+            if (TRACE_ID.equals(key) || SPAN_ID.equals(key)) {
+                return;
+            }
+            if (!first) {
+                writer.raw(',');
+            }
+            first = false;
+            writer.string(key).raw(':').string(value);
+        };
+    }
+}
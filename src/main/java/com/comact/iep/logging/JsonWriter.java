@@ -0,0 +1,199 @@
+package com.comact.iep.logging;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reusable buffer writing JSON as UTF-8 bytes, without intermediate Strings.
+ * <p>
+ * A writer is used by a single thread, it is reset for each event and keeps its buffer.
+ */
+class JsonWriter {
+    private static final int INITIAL_CAPACITY = 1024;
+    // a buffer grown by a huge event is not kept
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:").withZone(ZoneOffset.UTC);
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    private long minute = Long.MIN_VALUE;
+    private byte[] minutePrefix;
+
+    /**
+     * Empty the writer.
+     */
+    void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        length = 0;
+    }
+
+    /**
+     * Copy the written bytes.
+     *
+     * @return the bytes
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Write an ASCII character as is.
+     */
+    JsonWriter raw(char c) {
+        ensure(1);
+        buffer[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Write bytes as is.
+     */
+    JsonWriter raw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Write a JSON string, null is written as an empty string.
+     */
+    JsonWriter string(CharSequence value) {
+        raw('"');
+        escaped(value);
+        return raw('"');
+    }
+
+    /**
+     * Write the characters of a JSON string, escaped and encoded in UTF-8, without the quotes.
+     */
+    JsonWriter escaped(CharSequence value) {
+        if (value == null) {
+            return this;
+        }
+
+        var size = value.length();
+        // at most 6 bytes by character, \\u00XX or a surrogate pair
+        ensure(size * 6);
+        for (var index = 0; index < size; index++) {
+            var c = value.charAt(index);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x80) {
+                escape(c);
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && index + 1 < size && Character.isLowSurrogate(value.charAt(index + 1))) {
+                var codePoint = Character.toCodePoint(c, value.charAt(++index));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // lone surrogate, not valid UTF-8
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write a number.
+     */
+    JsonWriter number(long value) {
+        if (value == Long.MIN_VALUE) {
+            // no positive counterpart
+            return raw(Long.toString(value).getBytes());
+        }
+
+        ensure(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        var start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        // the digits were written from the lowest
+        for (int left = start, right = length - 1; left < right; left++, right--) {
+            var digit = buffer[left];
+            buffer[left] = buffer[right];
+            buffer[right] = digit;
+        }
+        return this;
+    }
+
+    /**
+     * Write a timestamp as an ISO-8601 UTC JSON string, 2026-10-19T09:32:05.123Z.
+     * <p>
+     * The date and the time up to the minute are formatted once per minute.
+     */
+    JsonWriter timestamp(long epochMillis) {
+        var eventMinute = Math.floorDiv(epochMillis, MINUTE_MILLIS);
+        if (eventMinute != minute) {
+            minute = eventMinute;
+            minutePrefix = MINUTE_FORMAT.format(Instant.ofEpochMilli(eventMinute * MINUTE_MILLIS)).getBytes();
+        }
+
+        var millis = (int) Math.floorMod(epochMillis, MINUTE_MILLIS);
+        raw('"').raw(minutePrefix);
+        ensure(8);
+        var seconds = millis / 1000;
+        var fraction = millis % 1000;
+        buffer[length++] = (byte) ('0' + seconds / 10);
+        buffer[length++] = (byte) ('0' + seconds % 10);
+        buffer[length++] = '.';
+        buffer[length++] = (byte) ('0' + fraction / 100);
+        buffer[length++] = (byte) ('0' + fraction / 10 % 10);
+        buffer[length++] = (byte) ('0' + fraction % 10);
+        buffer[length++] = 'Z';
+        return raw('"');
+    }
+
+    private void escape(char c) {
+        buffer[length++] = '\\';
+        switch (c) {
+            case '"':
+            case '\\':
+                buffer[length++] = (byte) c;
+                break;
+            case '\n':
+                buffer[length++] = 'n';
+                break;
+            case '\r':
+                buffer[length++] = 'r';
+                break;
+            case '\t':
+                buffer[length++] = 't';
+                break;
+            default:
+                buffer[length++] = 'u';
+                buffer[length++] = '0';
+                buffer[length++] = '0';
+                buffer[length++] = HEX[c >> 4];
+                buffer[length++] = HEX[c & 0xF];
+        }
+    }
+
+    private void ensure(int size) {
+        if (length + size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + size));
+        }
+    }
+}
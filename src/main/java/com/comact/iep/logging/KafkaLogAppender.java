@@ -0,0 +1,405 @@
+package com.comact.iep.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Appender shipping the events to Kafka by batches, through the {@link Sender} set by {@link LogShipper}.
+ * <p>
+ * The logging threads only add the events to a {@link RingBuffer}, an event is dropped when the buffer is full. A
+ * worker thread encodes the events and groups them in batches of at most maxBatchBytes, a batch is sent once full or
+ * lingerMs after its first event, as one record of encoded lines.
+ * <p>
+ * A batch that can't be sent, before the sender is set, while more than maxInFlight batches are waiting for their
+ * acknowledgement or after a failure, is written to the spill directory. The spilled batches are sent again, the
+ * oldest first, once the broker answers. A spilled batch is deleted only once acknowledged, a batch in flight when the
+ * application stops is sent again after the restart, it may be received twice. The spill directory holds at most
+ * maxSpillBytes, the oldest batches are dropped beyond. After a failure, no batch is sent for retryIntervalMs.
+ * <p>
+ * The events of the Kafka client are not shipped, they would loop while the broker is unavailable.
+ */
+public class KafkaLogAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    /**
+     * The sender of the batches.
+     */
+    public interface Sender {
+        /**
+         * Send a batch.
+         *
+         * @param batch the encoded events
+         * @return the acknowledgement of the batch
+         */
+        CompletionStage<Void> send(byte[] batch);
+    }
+
+    private static final Set<KafkaLogAppender> INSTANCES = ConcurrentHashMap.newKeySet();
+    private static final String[] EXCLUDED_LOGGERS = {"org.apache.kafka", "io.smallrye.reactive.messaging.kafka"};
+    private static final String SPILL_SUFFIX = ".batch";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Getter @Setter
+    private Encoder<ILoggingEvent> encoder;
+    @Getter @Setter
+    private int bufferSize = 8192;
+    @Getter @Setter
+    private int maxBatchBytes = 256 * 1024;
+    @Getter @Setter
+    private long lingerMs = 500;
+    @Getter @Setter
+    private int maxInFlight = 16;
+    @Getter @Setter
+    private long retryIntervalMs = 10_000;
+    @Getter @Setter
+    private String spillDirectory = "log-spill";
+    @Getter @Setter
+    private long maxSpillBytes = 100L * 1024 * 1024;
+    @Getter @Setter
+    private int maxFlushTime = 1000;
+
+    private final EventCount dropped = new EventCount();
+    private final EventCount droppedBatches = new EventCount();
+    private final EventCount sent = new EventCount();
+    private final AtomicLong spillSequence = new AtomicLong();
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    // spill files, the oldest first, guarded by this
+    private final Deque<Path> spilled = new ArrayDeque<>();
+    private long spilledBytes;
+
+    private RingBuffer<ILoggingEvent> buffer;
+    private Semaphore inFlight;
+    private Path spillPath;
+    private Thread worker;
+    private long batchStart;
+    private volatile boolean running;
+    private volatile long pausedUntil;
+    private volatile Sender sender;
+
+    /**
+     * The started appenders.
+     *
+     * @return the appenders
+     */
+    public static Set<KafkaLogAppender> instances() {
+        return INSTANCES;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (encoder == null) {
+            addError("No encoder set for the appender [" + getName() + "]");
+            return;
+        }
+
+        buffer = new RingBuffer<>(bufferSize);
+        inFlight = new Semaphore(maxInFlight);
+        spillPath = Paths.get(spillDirectory);
+        loadSpilled();
+
+        running = true;
+        worker = new Thread(this::work, "kafka-appender-" + getName());
+        worker.setDaemon(true);
+        worker.start();
+
+        super.start();
+        INSTANCES.add(this);
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        INSTANCES.remove(this);
+
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(maxFlushTime);
+            if (worker.isAlive()) {
+                addWarn("The Kafka appender [" + getName() + "] was stopped with " + buffer.size() + " events not shipped");
+                // the worker spills its current batch and ends
+                worker.interrupt();
+                worker.join(maxFlushTime);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        for (var excluded : EXCLUDED_LOGGERS) {
+            if (event.getLoggerName().startsWith(excluded)) {
+                return;
+            }
+        }
+
+        event.prepareForDeferredProcessing();
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void work() {
+        while ((running || buffer.size() > 0) && !Thread.currentThread().isInterrupted()) {
+            var count = buffer.drain(this::add, 1024);
+
+            if (batch.size() > 0 && System.currentTimeMillis() - batchStart >= lingerMs) {
+                ship(takeBatch());
+            }
+            resend();
+
+            if (count == 0 && running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        if (batch.size() > 0) {
+            ship(takeBatch());
+        }
+    }
+
+    private void add(ILoggingEvent event) {
+        byte[] encoded;
+        try {
+            encoded = encoder.encode(event);
+        } catch (Exception e) {
+            dropped.increment();
+            return;
+        }
+
+        if (batch.size() > 0 && batch.size() + encoded.length > maxBatchBytes) {
+            ship(takeBatch());
+        }
+        if (batch.size() == 0) {
+            batchStart = System.currentTimeMillis();
+        }
+        batch.writeBytes(encoded);
+    }
+
+    private byte[] takeBatch() {
+        var bytes = batch.toByteArray();
+        batch.reset();
+        return bytes;
+    }
+
+    private void ship(byte[] bytes) {
+        send(bytes, null);
+    }
+
+    /**
+     * Send a batch, a spilled batch keeps its file until it is acknowledged.
+     *
+     * @param bytes the batch
+     * @param file  the spill file of the batch, null for a new batch
+     */
+    private void send(byte[] bytes, Path file) {
+        var currentSender = sender;
+        if (!running || currentSender == null || System.currentTimeMillis() < pausedUntil || !inFlight.tryAcquire()) {
+            spill(bytes, file);
+            return;
+        }
+
+        try {
+            currentSender.send(bytes).whenComplete((ignored, failure) -> {
+                inFlight.release();
+                if (failure == null) {
+                    sent.increment();
+                    acknowledged(bytes, file);
+                } else {
+                    failed(bytes, file, failure);
+                }
+            });
+        } catch (Exception e) {
+            inFlight.release();
+            failed(bytes, file, e);
+        }
+    }
+
+    private void failed(byte[] bytes, Path file, Throwable failure) {
+        if (System.currentTimeMillis() >= pausedUntil) {
+            addWarn("Unable to ship the logs of the appender [" + getName() + "], retry in " + retryIntervalMs + " ms : " + failure.getMessage());
+        }
+        pausedUntil = System.currentTimeMillis() + retryIntervalMs;
+        spill(bytes, file);
+    }
+
+    private void acknowledged(byte[] bytes, Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            addError("Unable to remove the spilled logs " + file, e);
+        }
+        synchronized (this) {
+            spilledBytes -= bytes.length;
+        }
+    }
+
+    /**
+     * Send the oldest spilled batch again, when the sender is available.
+     */
+    private void resend() {
+        if (!running || sender == null || System.currentTimeMillis() < pausedUntil || inFlight.availablePermits() == 0) {
+            return;
+        }
+
+        Path file;
+        synchronized (this) {
+            file = spilled.pollFirst();
+            if (file == null) {
+                return;
+            }
+        }
+        try {
+            send(Files.readAllBytes(file), file);
+        } catch (IOException e) {
+            addError("Unable to read the spilled logs " + file, e);
+        }
+    }
+
+    private void spill(byte[] bytes, Path file) {
+        if (file == null) {
+            spill(bytes);
+            return;
+        }
+        // still on disk and counted, it stays the oldest batch
+        synchronized (this) {
+            spilled.addFirst(file);
+        }
+    }
+
+    private synchronized void spill(byte[] bytes) {
+        if (bytes.length > maxSpillBytes) {
+            droppedBatches.increment();
+            return;
+        }
+
+        while (spilledBytes + bytes.length > maxSpillBytes && !spilled.isEmpty()) {
+            var oldest = spilled.pollFirst();
+            try {
+                spilledBytes -= Files.size(oldest);
+                Files.deleteIfExists(oldest);
+            } catch (IOException e) {
+                addError("Unable to remove the spilled logs " + oldest, e);
+            }
+            droppedBatches.increment();
+        }
+
+        // named by time then sequence, sorted in the order of the spill across restarts
+        var file = spillPath.resolve(String.format("%013d-%06d%s", System.currentTimeMillis(), spillSequence.incrementAndGet() % 1_000_000, SPILL_SUFFIX));
+        try {
+            Files.createDirectories(spillPath);
+            Files.write(file, bytes);
+            spilled.addLast(file);
+            spilledBytes += bytes.length;
+        } catch (IOException e) {
+            addError("Unable to spill the logs to " + file, e);
+            droppedBatches.increment();
+        }
+    }
+
+    /**
+     * Reload the batches spilled before a restart.
+     */
+    private synchronized void loadSpilled() {
+        spilled.clear();
+        spilledBytes = 0;
+        if (!Files.isDirectory(spillPath)) {
+            return;
+        }
+
+        try (var files = Files.list(spillPath)) {
+            for (var file : files.filter(path -> path.getFileName().toString().endsWith(SPILL_SUFFIX)).sorted().collect(Collectors.toList())) {
+                spilled.addLast(file);
+                spilledBytes += Files.size(file);
+            }
+        } catch (IOException e) {
+            addError("Unable to read the spill directory " + spillPath, e);
+        }
+    }
+
+    /**
+     * Set the sender of the batches, null to spill them.
+     *
+     * @param sender the sender
+     */
+    public void setSender(Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * The number of events dropped since the start, because the buffer was full.
+     *
+     * @return the dropped events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * The number of batches dropped since the start, because the spill directory was full.
+     *
+     * @return the dropped batches
+     */
+    public long getDroppedBatches() {
+        return droppedBatches.get();
+    }
+
+    /**
+     * The number of batches acknowledged since the start.
+     *
+     * @return the sent batches
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Set the listeners of the counts, they first receive what was counted before.
+     *
+     * @param droppedListener        the listener of the number of newly dropped events
+     * @param droppedBatchesListener the listener of the number of newly dropped batches
+     * @param sentListener           the listener of the number of newly sent batches
+     */
+    public void setCountListeners(LongConsumer droppedListener, LongConsumer droppedBatchesListener, LongConsumer sentListener) {
+        dropped.setListener(droppedListener);
+        droppedBatches.setListener(droppedBatchesListener);
+        sent.setListener(sentListener);
+    }
+
+    /**
+     * The size of the batches waiting in the spill directory.
+     *
+     * @return the spilled bytes
+     */
+    public synchronized long getSpilledBytes() {
+        return spilledBytes;
+    }
+}
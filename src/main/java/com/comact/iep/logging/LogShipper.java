@@ -0,0 +1,83 @@
+package com.comact.iep.logging;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.concurrent.CompletionStage;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+
+import io.quarkus.runtime.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ship the batches of the {@link KafkaLogAppender}s to the logs channel, configured by mp.messaging.outgoing.logs.*.
+ * <p>
+ * The appenders are started by the logging configuration before the beans, they spill their batches until the
+ * shipper is started. When logging.kafka.enabled is false, the appenders are stopped.
+ */
+@Slf4j
+@Startup
+@ApplicationScoped
+public class LogShipper {
+
+    @ConfigProperty(name = "logging.kafka.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @Channel("logs")
+    Emitter<byte[]> emitter;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @PostConstruct
+    void init() {
+        for (var appender : KafkaLogAppender.instances()) {
+            if (!enabled) {
+                log.info("Kafka log appender {} stopped, logging.kafka.enabled is false", appender.getName());
+                appender.stop();
+                continue;
+            }
+
+            var tag = new Tag("appender", appender.getName());
+            appender.setCountListeners(
+                    counter("logging.kafka.dropped", "Log events dropped because the buffer was full", tag)::inc,
+                    counter("logging.kafka.dropped-batches", "Log batches dropped because the spill directory was full", tag)::inc,
+                    counter("logging.kafka.sent", "Log batches acknowledged by Kafka", tag)::inc);
+            metricRegistry.register(Metadata.builder()
+                    .withName("logging.kafka.spilled-bytes")
+                    .withDescription("Size of the log batches waiting in the spill directory")
+                    .withType(MetricType.GAUGE)
+                    .build(), (Gauge<Long>) appender::getSpilledBytes, tag);
+            appender.setSender(this::send);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        // the last batches are spilled, they are shipped after the restart
+        KafkaLogAppender.instances().forEach(appender -> appender.setSender(null));
+    }
+
+    CompletionStage<Void> send(byte[] batch) {
+        return emitter.send(batch);
+    }
+
+    private Counter counter(String name, String description, Tag tag) {
+        return metricRegistry.counter(Metadata.builder()
+                .withName(name)
+                .withDescription(description)
+                .withType(MetricType.COUNTER)
+                .build(), tag);
+    }
+}
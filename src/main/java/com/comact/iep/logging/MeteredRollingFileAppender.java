@@ -0,0 +1,65 @@
+package com.comact.iep.logging;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+import ch.qos.logback.core.rolling.RollingFileAppender;
+
+/**
+ * Rolling file appender measuring the pause of each rollover.
+ * <p>
+ * The writes wait while the file is renamed and a new one opened, the compression of the rotated file and the removal
+ * of the old ones run in the background with a time based rolling policy and a .gz file name pattern. The started
+ * appenders are listed by {@link #instances()}, for their metrics.
+ *
+ * @param <E> the type of the events
+ */
+public class MeteredRollingFileAppender<E> extends RollingFileAppender<E> {
+    private static final Set<MeteredRollingFileAppender<?>> INSTANCES = ConcurrentHashMap.newKeySet();
+
+    private volatile LongConsumer rolloverListener;
+
+    /**
+     * The started appenders.
+     *
+     * @return the appenders
+     */
+    public static Set<MeteredRollingFileAppender<?>> instances() {
+        return INSTANCES;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        if (isStarted()) {
+            INSTANCES.add(this);
+        }
+    }
+
+    @Override
+    public void stop() {
+        INSTANCES.remove(this);
+        super.stop();
+    }
+
+    @Override
+    public void rollover() {
+        var start = System.nanoTime();
+        super.rollover();
+
+        var listener = rolloverListener;
+        if (listener != null) {
+            listener.accept(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Set the listener of the pause of each rollover.
+     *
+     * @param rolloverListener the listener of the duration in nanoseconds
+     */
+    public void setRolloverListener(LongConsumer rolloverListener) {
+        this.rolloverListener = rolloverListener;
+    }
+}
@@ -0,0 +1,252 @@
+package com.comact.iep.logging;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import ch.qos.logback.classic.Level;
+import io.quarkus.runtime.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Debug logging of some requests only.
+ * <p>
+ * A request is marked by the debug header, its namespace, its user or a sampling percentage, see
+ * {@link RequestDebugMarker}. The categories of logging.request-debug.categories are raised to DEBUG only while a marked
+ * request is in flight, and the {@link RequestDebugFilter} of the log file drops their DEBUG events from the requests
+ * not marked running at the same time. The rest of the time, the DEBUG events are discarded by the level check of the
+ * logger, as before, even while a rule is active.
+ * <p>
+ * The levels are JUL levels, they are not per thread : while any marked request is in flight, isDebugEnabled() is true
+ * on every thread for the raised categories. The unmarked requests running at the same time then build the arguments
+ * and the events of their DEBUG logging, only for the {@link RequestDebugFilter} to drop them. The sampling percentage
+ * is at most logging.request-debug.max-sample-percent, 5 by default, but with concurrent requests even a few percents
+ * keep a marked request in flight much of the time, and most requests then pay for the DEBUG logging.
+ * <p>
+ * The rules start from the logging.request-debug.* configuration and are changed at runtime with
+ * /logging/request-debug. A level set with the logging-manager on a raised category is replaced when the last marked
+ * request ends.
+ */
+@Slf4j
+@Startup
+@ApplicationScoped
+public class RequestDebug {
+
+    /**
+     * The reason a request was marked.
+     */
+    public enum Reason {
+        HEADER, NAMESPACE, USER, SAMPLE
+    }
+
+    @ConfigProperty(name = "logging.request-debug.header", defaultValue = "X-Debug-Log")
+    String header;
+
+    @ConfigProperty(name = "logging.request-debug.header-enabled", defaultValue = "false")
+    boolean headerEnabled;
+
+    @ConfigProperty(name = "logging.request-debug.namespaces")
+    Optional<List<String>> namespaces;
+
+    @ConfigProperty(name = "logging.request-debug.users")
+    Optional<List<String>> users;
+
+    @ConfigProperty(name = "logging.request-debug.sample-percent", defaultValue = "0")
+    double samplePercent;
+
+    @ConfigProperty(name = "logging.request-debug.max-sample-percent", defaultValue = "5")
+    double maxSamplePercent;
+
+    @ConfigProperty(name = "logging.request-debug.categories", defaultValue = "com.comact")
+    List<String> categories;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    private final Map<Reason, Counter> marked = new EnumMap<>(Reason.class);
+    // the JBoss loggers raised to DEBUG with their own level, kept referenced while raised
+    private final Map<Logger, java.util.logging.Level> raisedLoggers = new HashMap<>();
+
+    private volatile RequestDebugSettings settings = new RequestDebugSettings();
+    // the marked requests in flight, the categories are raised while there is one
+    private int inFlight;
+
+    @PostConstruct
+    void init() {
+        for (var reason : Reason.values()) {
+            marked.put(reason, metricRegistry.counter("logging.request-debug.marked", new Tag("reason", reason.name().toLowerCase())));
+        }
+
+        var initialSettings = new RequestDebugSettings();
+        initialSettings.setHeaderEnabled(headerEnabled);
+        namespaces.ifPresent(values -> initialSettings.setNamespaces(new LinkedHashSet<>(values)));
+        users.ifPresent(values -> initialSettings.setUsers(new LinkedHashSet<>(values)));
+        initialSettings.setSamplePercent(samplePercent);
+        initialSettings.setCategories(new ArrayList<>(categories));
+        setSettings(initialSettings);
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        restoreLevels();
+    }
+
+    /**
+     * The name of the header marking a request, when the header rule is enabled.
+     *
+     * @return the header
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * The current rules.
+     *
+     * @return a copy of the rules
+     */
+    public RequestDebugSettings getSettings() {
+        return copy(settings);
+    }
+
+    /**
+     * Replace the rules.
+     *
+     * @param newSettings the rules
+     */
+    public synchronized void setSettings(RequestDebugSettings newSettings) {
+        if (newSettings.getSamplePercent() < 0 || newSettings.getSamplePercent() > maxSamplePercent) {
+            throw new IllegalArgumentException("The sample percentage must be between 0 and " + maxSamplePercent + " : " + newSettings.getSamplePercent());
+        }
+
+        var copy = copy(newSettings);
+        restoreLevels();
+        settings = copy;
+        if (copy.isActive() && inFlight > 0) {
+            raiseLevels(copy.getCategories());
+        }
+        log.info("Request debug logging {} : header {}, namespaces {}, users {}, sample {}%, categories {}",
+                copy.isActive() ? "enabled" : "disabled", copy.isHeaderEnabled(), copy.getNamespaces(), copy.getUsers(),
+                copy.getSamplePercent(), copy.getCategories());
+    }
+
+    /**
+     * A marked request starts, the categories are raised to DEBUG for the first one.
+     */
+    public synchronized void begin() {
+        if (inFlight++ == 0 && settings.isActive()) {
+            raiseLevels(settings.getCategories());
+        }
+    }
+
+    /**
+     * A marked request ended, the categories get their own level back after the last one.
+     */
+    public synchronized void end() {
+        if (inFlight > 0 && --inFlight == 0) {
+            restoreLevels();
+        }
+    }
+
+    /**
+     * Check if a request is logged at DEBUG.
+     *
+     * @param headerValue the value of the debug header, null if absent
+     * @param namespace   the namespace of the request, null if none
+     * @param user        the user, null if anonymous
+     * @return the reason, null if the request is not marked
+     */
+    public Reason mark(String headerValue, String namespace, String user) {
+        var current = settings;
+        if (!current.isActive()) {
+            return null;
+        }
+
+        Reason reason = null;
+        if (current.isHeaderEnabled() && headerValue != null && !"false".equalsIgnoreCase(headerValue)) {
+            reason = Reason.HEADER;
+        } else if (namespace != null && current.getNamespaces().contains(namespace)) {
+            reason = Reason.NAMESPACE;
+        } else if (user != null && current.getUsers().contains(user)) {
+            reason = Reason.USER;
+        } else if (current.getSamplePercent() > 0 && ThreadLocalRandom.current().nextDouble(100) < current.getSamplePercent()) {
+            reason = Reason.SAMPLE;
+        }
+
+        if (reason != null) {
+            marked.get(reason).inc();
+        }
+        return reason;
+    }
+
+    private void raiseLevels(List<String> raisedCategories) {
+        Map<String, Level> previousLevels = new HashMap<>();
+        for (var category : raisedCategories) {
+            var logger = Logger.getLogger(category);
+            var previousLevel = effectiveLevel(logger);
+            if (previousLevel.intValue() <= org.jboss.logmanager.Level.DEBUG.intValue()) {
+                // already logged at DEBUG for every request
+                continue;
+            }
+            raisedLoggers.put(logger, logger.getLevel());
+            logger.setLevel(org.jboss.logmanager.Level.DEBUG);
+            previousLevels.put(category, logbackLevel(previousLevel));
+        }
+        RequestDebugFilter.setRaisedCategories(previousLevels);
+    }
+
+    private void restoreLevels() {
+        RequestDebugFilter.setRaisedCategories(Map.of());
+        raisedLoggers.forEach(Logger::setLevel);
+        raisedLoggers.clear();
+    }
+
+    private static java.util.logging.Level effectiveLevel(Logger logger) {
+        for (var current = logger; current != null; current = current.getParent()) {
+            if (current.getLevel() != null) {
+                return current.getLevel();
+            }
+        }
+        return java.util.logging.Level.INFO;
+    }
+
+    private static Level logbackLevel(java.util.logging.Level level) {
+        var value = level.intValue();
+        if (value >= org.jboss.logmanager.Level.ERROR.intValue()) {
+            return Level.ERROR;
+        } else if (value >= org.jboss.logmanager.Level.WARN.intValue()) {
+            return Level.WARN;
+        } else if (value >= org.jboss.logmanager.Level.INFO.intValue()) {
+            return Level.INFO;
+        } else if (value >= org.jboss.logmanager.Level.DEBUG.intValue()) {
+            return Level.DEBUG;
+        }
+        return Level.TRACE;
+    }
+
+    private static RequestDebugSettings copy(RequestDebugSettings source) {
+        var copy = new RequestDebugSettings();
+        copy.setHeaderEnabled(source.isHeaderEnabled());
+        copy.setNamespaces(Set.copyOf(source.getNamespaces() == null ? Set.of() : source.getNamespaces()));
+        copy.setUsers(Set.copyOf(source.getUsers() == null ? Set.of() : source.getUsers()));
+        copy.setSamplePercent(source.getSamplePercent());
+        copy.setCategories(List.copyOf(source.getCategories() == null ? List.of() : source.getCategories()));
+        return copy;
+    }
+}
@@ -0,0 +1,69 @@
+package com.comact.iep.logging;
+
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Drop the events logged at DEBUG for the marked requests only, when they come from the other requests.
+ * <p>
+ * The Quarkus logging bridge calls the appenders directly, the turbo filters of logback don't run : this filter is
+ * attached to the appender. It runs before the event is queued and formatted. An event is dropped when its category
+ * was raised to DEBUG by {@link RequestDebug}, its level is below the level the category had before, and the MDC
+ * doesn't hold {@link #MDC_KEY}.
+ */
+public class RequestDebugFilter extends Filter<ILoggingEvent> {
+    /**
+     * The MDC key of the marked requests, its value is the reason of the mark.
+     */
+    public static final String MDC_KEY = "debugRequest";
+
+    private static volatile RaisedCategory[] raisedCategories = new RaisedCategory[0];
+
+    /**
+     * Set the categories raised to DEBUG, with the level they had before.
+     *
+     * @param categories the logback level by category
+     */
+    static void setRaisedCategories(Map<String, Level> categories) {
+        raisedCategories = categories.entrySet().stream()
+                .map(category -> new RaisedCategory(category.getKey(), category.getValue().toInt()))
+                .toArray(RaisedCategory[]::new);
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        var categories = raisedCategories;
+        var level = event.getLevel().toInt();
+        if (categories.length == 0 || level >= Level.INFO_INT) {
+            return FilterReply.NEUTRAL;
+        }
+
+        var loggerName = event.getLoggerName();
+        for (var category : categories) {
+            if (level < category.level && category.contains(loggerName)) {
+                var mdc = event.getMDCPropertyMap();
+                return mdc != null && mdc.containsKey(MDC_KEY) ? FilterReply.NEUTRAL : FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    private static class RaisedCategory {
+        private final String name;
+        private final int level;
+
+        RaisedCategory(String name, int level) {
+            this.name = name;
+            this.level = level;
+        }
+
+        boolean contains(String loggerName) {
+            return name.isEmpty() || loggerName.startsWith(name) &&
+                    (loggerName.length() == name.length() || loggerName.charAt(name.length()) == '.');
+        }
+    }
+}
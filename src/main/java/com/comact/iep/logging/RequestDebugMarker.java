@@ -0,0 +1,56 @@
+package com.comact.iep.logging;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+import org.jboss.logging.MDC;
+
+import io.quarkus.vertx.http.runtime.CurrentVertxRequest;
+
+/**
+ * Mark the requests logged at DEBUG with {@link RequestDebugFilter#MDC_KEY} in the MDC, by the rules of
+ * {@link RequestDebug}.
+ * <p>
+ * The namespace is the namespace path or query parameter of the request. The mark is removed with the response, and
+ * the end of a marked request is reported to {@link RequestDebug} once the response is sent, even when it failed.
+ */
+@Provider
+public class RequestDebugMarker implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String NAMESPACE = "namespace";
+
+    @Inject
+    RequestDebug requestDebug;
+
+    @Inject
+    CurrentVertxRequest currentVertxRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        var uriInfo = requestContext.getUriInfo();
+        var namespace = uriInfo.getPathParameters().getFirst(NAMESPACE);
+        if (namespace == null) {
+            namespace = uriInfo.getQueryParameters().getFirst(NAMESPACE);
+        }
+        var principal = requestContext.getSecurityContext() == null ? null : requestContext.getSecurityContext().getUserPrincipal();
+
+        var reason = requestDebug.mark(requestContext.getHeaderString(requestDebug.getHeader()), namespace,
+                principal == null ? null : principal.getName());
+        if (reason != null) {
+            MDC.put(RequestDebugFilter.MDC_KEY, reason.name().toLowerCase());
+            requestDebug.begin();
+            currentVertxRequest.getCurrent().addEndHandler(ended -> requestDebug.end());
+        } else {
+            // a worker thread may still hold the mark of a request that failed before its response
+            MDC.remove(RequestDebugFilter.MDC_KEY);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        MDC.remove(RequestDebugFilter.MDC_KEY);
+    }
+}
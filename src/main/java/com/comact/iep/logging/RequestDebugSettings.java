@@ -0,0 +1,44 @@
+package com.comact.iep.logging;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.Data;
+
+/**
+ * The rules marking the requests logged at DEBUG, see {@link RequestDebug}.
+ */
+@Data
+public class RequestDebugSettings {
+    /**
+     * Mark the requests with the debug header.
+     */
+    private boolean headerEnabled;
+    /**
+     * Mark the requests on these namespaces.
+     */
+    private Set<String> namespaces = new LinkedHashSet<>();
+    /**
+     * Mark the requests of these users.
+     */
+    private Set<String> users = new LinkedHashSet<>();
+    /**
+     * Mark this percentage of the other requests.
+     */
+    private double samplePercent;
+    /**
+     * The logger categories logged at DEBUG for the marked requests.
+     */
+    private List<String> categories = new ArrayList<>();
+
+    /**
+     * Check if a rule can mark a request.
+     *
+     * @return true if active
+     */
+    public boolean isActive() {
+        return headerEnabled || !namespaces.isEmpty() || !users.isEmpty() || samplePercent > 0;
+    }
+}
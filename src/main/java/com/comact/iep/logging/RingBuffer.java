@@ -0,0 +1,127 @@
+package com.comact.iep.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue, for many producers and a single consumer.
+ * <p>
+ * The slots are allocated once. Each slot has a sequence telling if it is free for the producer of a position or
+ * filled for the consumer, a producer claims a position with a compare-and-set on the tail and publishes its element
+ * with the sequence of the slot. No producer ever waits for another one.
+ *
+ * @param <E> the type of the elements
+ */
+public class RingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // written by the consumer only, volatile for the size
+    private volatile long head;
+
+    /**
+     * Instantiates a new ring buffer.
+     *
+     * @param capacity the capacity, rounded up to a power of 2
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity must be at least 2 : " + capacity);
+        }
+        var size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (var index = 0; index < size; index++) {
+            sequences.set(index, index);
+        }
+    }
+
+    /**
+     * Add an element, from any thread.
+     *
+     * @param element the element
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        var position = tail.get();
+        while (true) {
+            var index = (int) (position & mask);
+            var available = sequences.get(index) - position;
+
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // the slot still holds the element of the previous lap
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element, from the consumer thread only.
+     *
+     * @return the element, null if empty
+     */
+    public E poll() {
+        var position = head;
+        var index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        var element = slots.get(index);
+        slots.lazySet(index, null);
+        // frees the slot for the producer of the next lap
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Remove up to max elements, from the consumer thread only.
+     *
+     * @param consumer the consumer of the elements
+     * @param max      the max number of elements
+     * @return the number of elements removed
+     */
+    public int drain(Consumer<E> consumer, int max) {
+        var count = 0;
+        E element;
+        while (count < max && (element = poll()) != null) {
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * The number of elements, approximate while elements are added or removed.
+     *
+     * @return the size
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity(), tail.get() - head));
+    }
+
+    /**
+     * The capacity.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
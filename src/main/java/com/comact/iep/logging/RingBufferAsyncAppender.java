@@ -0,0 +1,307 @@
+package com.comact.iep.logging;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Asynchronous appender backed by a preallocated lock-free {@link RingBuffer}.
+ * <p>
+ * The logging threads only add the events to the ring buffer, a single worker thread writes them by batches of
+ * batchSize events to the attached appenders and flushes them once per batch. The attached appenders should be
+ * configured with immediateFlush=false.
+ * <p>
+ * Once less than a fifth of the buffer is free, the overflowPolicy applies to the DEBUG and INFO events :
+ * <ul>
+ *     <li>BLOCK : the logging thread waits for a free slot</li>
+ *     <li>DROP_LOW_LEVEL : the events are dropped</li>
+ *     <li>SAMPLE : one event out of sampleRate is kept, the others are dropped</li>
+ * </ul>
+ * The WARN and ERROR events are never dropped, the logging thread waits if the buffer is full.
+ * <p>
+ * The waits do not poll : the idle worker is unparked by the event that fills the empty buffer, the logging threads
+ * waiting for a free slot are unparked by the worker after each batch.
+ * <p>
+ * When stopped, the worker has maxFlushTime to write the remaining events, it is then interrupted and ends after its
+ * current batch. The attached appenders are stopped once the worker has ended.
+ * <p>
+ * The started appenders are listed by {@link #instances()}, for their metrics.
+ */
+public class RingBufferAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+    /**
+     * What to do with the DEBUG and INFO events when the buffer is almost full.
+     */
+    public enum OverflowPolicy {
+        BLOCK, DROP_LOW_LEVEL, SAMPLE
+    }
+
+    private static final Set<RingBufferAsyncAppender> INSTANCES = ConcurrentHashMap.newKeySet();
+    // the parks are ended by an unpark, their bound only covers a missed one
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+    private final EventCount dropped = new EventCount();
+    private final AtomicLong sampled = new AtomicLong();
+    private final Set<Thread> blocked = ConcurrentHashMap.newKeySet();
+
+    @Getter @Setter
+    private int bufferSize = 8192;
+    @Getter @Setter
+    private int batchSize = 256;
+    @Getter
+    private int sampleRate = 10;
+    @Getter @Setter
+    private int maxFlushTime = 1000;
+    @Getter @Setter
+    private boolean includeCallerData;
+    @Getter @Setter
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_LOW_LEVEL;
+
+    private RingBuffer<ILoggingEvent> buffer;
+    private int discardingThreshold;
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean idle;
+    private volatile LongConsumer flushListener;
+
+    /**
+     * The started appenders.
+     *
+     * @return the appenders
+     */
+    public static Set<RingBufferAsyncAppender> instances() {
+        return INSTANCES;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (!appenders.iteratorForAppenders().hasNext()) {
+            addError("No appender attached to the async appender [" + getName() + "]");
+            return;
+        }
+
+        buffer = new RingBuffer<>(bufferSize);
+        discardingThreshold = buffer.capacity() / 5;
+        running = true;
+        worker = new Thread(this::work, "async-appender-" + getName());
+        worker.setDaemon(true);
+        worker.start();
+
+        super.start();
+        INSTANCES.add(this);
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        INSTANCES.remove(this);
+
+        running = false;
+        LockSupport.unpark(worker);
+        blocked.forEach(LockSupport::unpark);
+        try {
+            worker.join(maxFlushTime);
+            if (worker.isAlive()) {
+                addWarn("The async appender [" + getName() + "] was stopped with " + buffer.size() + " events not written");
+                // the worker ends after its current batch
+                worker.interrupt();
+                worker.join(maxFlushTime);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // the attached appenders are not stopped under a worker still writing to them
+        if (worker.isAlive()) {
+            addError("The worker of the async appender [" + getName() + "] did not end, its appenders are not stopped");
+            return;
+        }
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        var lowLevel = event.getLevel().toInt() <= Level.INFO_INT;
+
+        if (lowLevel && overflowPolicy != OverflowPolicy.BLOCK && buffer.capacity() - buffer.size() <= discardingThreshold &&
+                (overflowPolicy == OverflowPolicy.DROP_LOW_LEVEL || sampled.incrementAndGet() % sampleRate != 0)) {
+            dropped.increment();
+            return;
+        }
+
+        // the message and the MDC are read on the logging thread, the event is written later
+        event.prepareForDeferredProcessing();
+        if (includeCallerData) {
+            event.getCallerData();
+        }
+
+        if (!buffer.offer(event) && !offerBlocking(event)) {
+            dropped.increment();
+            return;
+        }
+
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private boolean offerBlocking(ILoggingEvent event) {
+        var thread = Thread.currentThread();
+        blocked.add(thread);
+        try {
+            // registered before the offer, the thread is unparked by any batch ending after it
+            while (!buffer.offer(event)) {
+                if (!running) {
+                    return false;
+                }
+                if (idle) {
+                    LockSupport.unpark(worker);
+                }
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            }
+            return true;
+        } finally {
+            blocked.remove(thread);
+        }
+    }
+
+    private void work() {
+        while ((running || buffer.size() > 0) && !Thread.currentThread().isInterrupted()) {
+            var start = System.nanoTime();
+            var count = buffer.drain(appenders::appendLoopOnAppenders, batchSize);
+
+            if (count == 0) {
+                idle = true;
+                // the buffer is checked again once idle is set, the next event unparks the worker
+                if (buffer.size() == 0 && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+
+            if (!blocked.isEmpty()) {
+                blocked.forEach(LockSupport::unpark);
+            }
+            flush();
+            var listener = flushListener;
+            if (listener != null) {
+                listener.accept(System.nanoTime() - start);
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        for (Iterator<Appender<ILoggingEvent>> iterator = appenders.iteratorForAppenders(); iterator.hasNext(); ) {
+            var appender = iterator.next();
+            if (appender instanceof OutputStreamAppender) {
+                var outputStream = ((OutputStreamAppender<ILoggingEvent>) appender).getOutputStream();
+                try {
+                    if (outputStream != null) {
+                        outputStream.flush();
+                    }
+                } catch (Exception e) {
+                    addError("Unable to flush the appender [" + appender.getName() + "]", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of events waiting to be written.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return buffer == null ? 0 : buffer.size();
+    }
+
+    /**
+     * The number of dropped events since the start.
+     *
+     * @return the dropped events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Set the listener of the dropped events, it first receives the events dropped before.
+     *
+     * @param droppedListener the listener of the number of newly dropped events
+     */
+    public void setDroppedListener(LongConsumer droppedListener) {
+        dropped.setListener(droppedListener);
+    }
+
+    /**
+     * Set the listener of the duration of each batch, from the write of its first event to its flush.
+     *
+     * @param flushListener the listener of the duration in nanoseconds
+     */
+    public void setFlushListener(LongConsumer flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        appenders.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
@@ -0,0 +1,70 @@
+package com.comact.iep.security;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Set;
+
+import io.quarkus.security.identity.IdentityProviderManager;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.identity.request.AuthenticationRequest;
+import io.quarkus.security.identity.request.TokenAuthenticationRequest;
+import io.quarkus.vertx.http.runtime.security.ChallengeData;
+import io.quarkus.vertx.http.runtime.security.HttpAuthenticationMechanism;
+import io.quarkus.vertx.http.runtime.security.HttpCredentialTransport;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Authenticate a bearer token with the identity cached for it, see {@link SecurityIdentityCache}.
+ * <p>
+ * It runs before the OIDC mechanism, which authenticates the token when no identity is cached. The cached identity
+ * is already augmented, it is returned as is, without the identity providers and the augmentors.
+ */
+@ApplicationScoped
+public class CachedBearerAuthenticationMechanism implements HttpAuthenticationMechanism {
+    private static final String BEARER = "Bearer ";
+
+    @Inject
+    SecurityIdentityCache cache;
+
+    @Override
+    public Uni<SecurityIdentity> authenticate(RoutingContext context, IdentityProviderManager identityProviderManager) {
+        var token = cache.isEnabled() ? bearerToken(context.request().getHeader(HttpHeaders.AUTHORIZATION)) : null;
+        if (token == null) {
+            return Uni.createFrom().nullItem();
+        }
+        // a null identity falls through to the OIDC mechanism
+        return Uni.createFrom().item(cache.get(token, context));
+    }
+
+    @Override
+    public Uni<ChallengeData> getChallenge(RoutingContext context) {
+        // the challenge is the one of the OIDC mechanism
+        return Uni.createFrom().nullItem();
+    }
+
+    @Override
+    public Set<Class<? extends AuthenticationRequest>> getCredentialTypes() {
+        return Set.of(TokenAuthenticationRequest.class);
+    }
+
+    @Override
+    public HttpCredentialTransport getCredentialTransport() {
+        // the bearer transport belongs to the OIDC mechanism, two mechanisms can't declare the same one
+        return null;
+    }
+
+    @Override
+    public int getPriority() {
+        return DEFAULT_PRIORITY + 1;
+    }
+
+    static String bearerToken(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return null;
+        }
+        var token = authorization.substring(BEARER.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+}
@@ -0,0 +1,45 @@
+package com.comact.iep.security;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import io.quarkus.oidc.AccessTokenCredential;
+import io.quarkus.security.identity.AuthenticationRequestContext;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.identity.SecurityIdentityAugmentor;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Cache the identities authenticated from a bearer JWT, see {@link SecurityIdentityCache}.
+ * <p>
+ * It runs after the other augmentors, so the cached identity is the final one, returned as is by
+ * {@link CachedBearerAuthenticationMechanism}. The identities of opaque tokens are not cached, their expiration is
+ * unknown.
+ */
+@ApplicationScoped
+public class IdentityCachingAugmentor implements SecurityIdentityAugmentor {
+
+    @Inject
+    SecurityIdentityCache cache;
+
+    @Override
+    public Uni<SecurityIdentity> augment(SecurityIdentity identity, AuthenticationRequestContext context) {
+        if (cache.isEnabled() && !identity.isAnonymous() && identity.getPrincipal() instanceof JsonWebToken) {
+            var credential = identity.getCredential(AccessTokenCredential.class);
+            var expiresAt = ((JsonWebToken) identity.getPrincipal()).getExpirationTime();
+
+            if (credential != null && expiresAt > 0) {
+                cache.put(credential.getToken(), identity, TimeUnit.SECONDS.toMillis(expiresAt));
+            }
+        }
+        return Uni.createFrom().item(identity);
+    }
+
+    @Override
+    public int priority() {
+        return Integer.MIN_VALUE;
+    }
+}
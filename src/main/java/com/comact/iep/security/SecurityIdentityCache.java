@@ -0,0 +1,245 @@
+package com.comact.iep.security;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+
+import io.quarkus.oidc.AccessTokenCredential;
+import io.quarkus.security.identity.AuthenticationRequestContext;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.runtime.QuarkusSecurityIdentity;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of the security identities by bearer token.
+ * <p>
+ * The service accounts reuse the same token for many requests, the cached identity spares the verification of the
+ * token, the role mapping and the augmentors. An identity is kept until its token expires, at most
+ * security.identity-cache.max-ttl. The tokens are not kept, the entries are keyed by the SHA-256 of the token.
+ * <p>
+ * Only the principal, the roles and the attributes of the identity are kept, without the credential and the request
+ * of the first authentication. Each request gets a new identity with its own credential and request. A token revoked
+ * in Keycloak stays accepted until its entry expires, or until the cache is cleared with /security/identity-cache.
+ * <p>
+ * A lookup is a read of a {@link ConcurrentHashMap}. When the cache reaches security.identity-cache.max-size entries,
+ * one thread removes the expired entries, then the entries expiring first down to 90% of the max size, while the
+ * other threads keep going without caching.
+ */
+@Slf4j
+@ApplicationScoped
+public class SecurityIdentityCache {
+    // attributes of the request of the first authentication, not kept
+    private static final Set<String> REQUEST_ATTRIBUTES = Set.of(RoutingContext.class.getName(),
+            AuthenticationRequestContext.class.getName());
+
+    @ConfigProperty(name = "security.identity-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "security.identity-cache.max-size", defaultValue = "10000")
+    int maxSize;
+
+    @ConfigProperty(name = "security.identity-cache.max-ttl", defaultValue = "5M")
+    Duration maxTtl;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    private final Map<String, CachedIdentity> identities = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter expiredEvictions;
+    private Counter sizeEvictions;
+
+    @PostConstruct
+    void init() {
+        hits = metricRegistry.counter("security.identity-cache.hits");
+        misses = metricRegistry.counter("security.identity-cache.misses");
+        expiredEvictions = metricRegistry.counter("security.identity-cache.evictions", new Tag("reason", "expired"));
+        sizeEvictions = metricRegistry.counter("security.identity-cache.evictions", new Tag("reason", "size"));
+        metricRegistry.register(Metadata.builder()
+                .withName("security.identity-cache.size")
+                .withDescription("Security identities in the cache")
+                .withType(MetricType.GAUGE)
+                .build(), (Gauge<Integer>) identities::size);
+    }
+
+    /**
+     * Check if the cache is enabled.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get a new identity for a token, from the cached one.
+     *
+     * @param token   the bearer token
+     * @param context the request, null outside of a request
+     * @return the identity, null if not cached or expired
+     */
+    public SecurityIdentity get(String token, RoutingContext context) {
+        var key = key(token);
+        var cached = identities.get(key);
+
+        if (cached != null && cached.expiresAt <= System.currentTimeMillis()) {
+            if (identities.remove(key, cached)) {
+                expiredEvictions.inc();
+            }
+            cached = null;
+        }
+
+        if (cached == null) {
+            misses.inc();
+            return null;
+        }
+        hits.inc();
+        return cached.identity(token, context);
+    }
+
+    /**
+     * Cache the identity of a token, if it is not already cached.
+     *
+     * @param token     the bearer token
+     * @param identity  the identity
+     * @param expiresAt the expiration of the token, in milliseconds since the epoch
+     */
+    public void put(String token, SecurityIdentity identity, long expiresAt) {
+        var now = System.currentTimeMillis();
+        var cachedUntil = Math.min(expiresAt, now + maxTtl.toMillis());
+        if (cachedUntil <= now) {
+            return;
+        }
+
+        if (identities.size() >= maxSize && !evict(now)) {
+            // another thread is evicting, this identity is not cached
+            return;
+        }
+        identities.putIfAbsent(key(token), new CachedIdentity(identity, cachedUntil));
+    }
+
+    /**
+     * Remove every identity, the next request of each token is authenticated again.
+     */
+    public void clear() {
+        identities.clear();
+        log.info("Security identity cache cleared");
+    }
+
+    /**
+     * The number of cached identities.
+     *
+     * @return the size
+     */
+    public int size() {
+        return identities.size();
+    }
+
+    /**
+     * Remove the expired entries, then the entries expiring first if the cache is still full.
+     *
+     * @return false if another thread is evicting
+     */
+    private boolean evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return false;
+        }
+
+        try {
+            var iterator = identities.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expiresAt <= now) {
+                    iterator.remove();
+                    expiredEvictions.inc();
+                }
+            }
+
+            var target = maxSize - Math.max(1, maxSize / 10);
+            if (identities.size() > target) {
+                List<Map.Entry<String, CachedIdentity>> entries = new ArrayList<>(identities.entrySet());
+                entries.sort(Comparator.comparingLong(entry -> entry.getValue().expiresAt));
+                for (var entry : entries) {
+                    if (identities.size() <= target) {
+                        break;
+                    }
+                    if (identities.remove(entry.getKey(), entry.getValue())) {
+                        sizeEvictions.inc();
+                    }
+                }
+            }
+            return true;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static String key(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The principal, the roles and the attributes of an identity, and the end of their validity.
+     */
+    private static class CachedIdentity {
+        private final Principal principal;
+        private final Set<String> roles;
+        private final Map<String, Object> attributes;
+        private final long expiresAt;
+
+        CachedIdentity(SecurityIdentity identity, long expiresAt) {
+            this.principal = identity.getPrincipal();
+            this.roles = Set.copyOf(identity.getRoles());
+            var kept = new HashMap<String, Object>();
+            identity.getAttributes().forEach((name, value) -> {
+                if (!REQUEST_ATTRIBUTES.contains(name)) {
+                    kept.put(name, value);
+                }
+            });
+            this.attributes = kept;
+            this.expiresAt = expiresAt;
+        }
+
+        SecurityIdentity identity(String token, RoutingContext context) {
+            var builder = QuarkusSecurityIdentity.builder()
+                    .setPrincipal(principal)
+                    .addRoles(roles)
+                    .addAttributes(attributes)
+                    .addCredential(new AccessTokenCredential(token));
+            if (context != null) {
+                builder.addAttribute(RoutingContext.class.getName(), context);
+            }
+            return builder.build();
+        }
+    }
+}
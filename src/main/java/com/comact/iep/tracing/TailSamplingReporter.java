@@ -0,0 +1,250 @@
+package com.comact.iep.tracing;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import io.jaegertracing.internal.JaegerSpan;
+import io.jaegertracing.internal.utils.RateLimiter;
+import io.jaegertracing.spi.Reporter;
+import io.opentracing.tag.Tags;
+
+/**
+ * Reporter deciding which traces are exported once their request is done.
+ * <p>
+ * The spans of a trace are kept in memory until its local root span ends, the span without parent, the server span
+ * of the request or the consumer span of a message. The trace is then exported if one of its spans has an error, if
+ * the root span lasted at least the slow threshold, or else if the rate limiter has a credit. The decision is kept for
+ * decisionRetentionMillis, the spans ending after it, the async work of the request, follow it rather than starting a
+ * new trace.
+ * <p>
+ * At most maxTraces traces are buffered, the spans of the other traces are only exported if they have an error. The
+ * traces whose root doesn't end within maxTraceAge are exported if they have an error, dropped otherwise.
+ */
+public class TailSamplingReporter implements Reporter {
+
+    /**
+     * Why a trace was exported or dropped.
+     */
+    public enum Decision {
+        ERROR, SLOW, SAMPLED, DROPPED
+    }
+
+    private final Reporter delegate;
+    private final long slowThresholdMicros;
+    private final RateLimiter rateLimiter;
+    private final int maxTraces;
+    private final long maxTraceAgeMillis;
+    private final long decisionRetentionMillis;
+
+    private final Map<String, Trace> traces = new ConcurrentHashMap<>();
+    private final Map<String, Decided> decided = new ConcurrentHashMap<>();
+    private final Map<Decision, AtomicLong> decisions = new EnumMap<>(Decision.class);
+    private final ScheduledExecutorService sweeper;
+    private volatile Consumer<Decision> decisionListener;
+
+    /**
+     * Instantiates a new tail sampling reporter.
+     *
+     * @param delegate          the reporter of the exported spans
+     * @param slowThresholdMs   the duration of the root span from which a trace is exported
+     * @param sampledPerSecond  the traces exported per second out of the others, 0 for none
+     * @param maxTraces         the max number of buffered traces
+     * @param maxTraceAgeMillis the max time a trace is buffered
+     * @param decisionRetentionMillis the time a decision is applied to the late spans of its trace
+     */
+    public TailSamplingReporter(Reporter delegate, long slowThresholdMs, double sampledPerSecond, int maxTraces, long maxTraceAgeMillis,
+                                long decisionRetentionMillis) {
+        this.delegate = delegate;
+        this.slowThresholdMicros = TimeUnit.MILLISECONDS.toMicros(slowThresholdMs);
+        this.rateLimiter = sampledPerSecond > 0 ? new RateLimiter(sampledPerSecond, Math.max(1, sampledPerSecond)) : null;
+        this.maxTraces = maxTraces;
+        this.maxTraceAgeMillis = maxTraceAgeMillis;
+        this.decisionRetentionMillis = decisionRetentionMillis;
+        for (var decision : Decision.values()) {
+            decisions.put(decision, new AtomicLong());
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "tail-sampling-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void report(JaegerSpan span) {
+        var traceId = span.context().getTraceId();
+
+        var previous = decided.get(traceId);
+        if (previous != null) {
+            if (previous.decision != Decision.DROPPED) {
+                delegate.report(span);
+            }
+            return;
+        }
+
+        var trace = traces.get(traceId);
+        if (trace == null) {
+            if (traces.size() >= maxTraces) {
+                if (isError(span)) {
+                    delegate.report(span);
+                }
+                return;
+            }
+            trace = traces.computeIfAbsent(traceId, id -> new Trace());
+        }
+
+        List<JaegerSpan> exported = null;
+        synchronized (trace) {
+            if (trace.decision == null && trace.spans.isEmpty()) {
+                // created after the trace was decided and removed by another thread, the span is late
+                previous = decided.get(traceId);
+                if (previous != null) {
+                    trace.decision = previous.decision;
+                    traces.remove(traceId, trace);
+                }
+            }
+            if (trace.decision != null) {
+                // decided by another thread since the lookup
+                if (trace.decision != Decision.DROPPED) {
+                    exported = List.of(span);
+                }
+            } else {
+                trace.spans.add(span);
+                trace.error |= isError(span);
+                if (isLocalRoot(span)) {
+                    trace.decision = decide(trace, span);
+                    decided.put(traceId, new Decided(trace.decision));
+                    traces.remove(traceId, trace);
+                    if (trace.decision != Decision.DROPPED) {
+                        exported = trace.spans;
+                    }
+                }
+            }
+        }
+
+        if (exported != null) {
+            exported.forEach(delegate::report);
+        }
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        delegate.close();
+    }
+
+    /**
+     * The number of traces by decision.
+     *
+     * @param decision the decision
+     * @return the number of traces
+     */
+    public long getCount(Decision decision) {
+        return decisions.get(decision).get();
+    }
+
+    /**
+     * Set the listener of the decision taken for each trace.
+     *
+     * @param decisionListener the listener
+     */
+    public void setDecisionListener(Consumer<Decision> decisionListener) {
+        this.decisionListener = decisionListener;
+    }
+
+    /**
+     * The number of traces waiting for their root span.
+     *
+     * @return the buffered traces
+     */
+    public int getBufferedTraces() {
+        return traces.size();
+    }
+
+    private Decision decide(Trace trace, JaegerSpan root) {
+        Decision decision;
+        if (trace.error) {
+            decision = Decision.ERROR;
+        } else if (root.getDuration() >= slowThresholdMicros) {
+            decision = Decision.SLOW;
+        } else if (rateLimiter != null && rateLimiter.checkCredit(1.0)) {
+            decision = Decision.SAMPLED;
+        } else {
+            decision = Decision.DROPPED;
+        }
+        count(decision);
+        return decision;
+    }
+
+    private void count(Decision decision) {
+        decisions.get(decision).incrementAndGet();
+        var listener = decisionListener;
+        if (listener != null) {
+            listener.accept(decision);
+        }
+    }
+
+    /**
+     * Remove the traces whose root span never ended, and the expired decisions.
+     */
+    void sweep() {
+        var now = System.currentTimeMillis();
+        var oldest = now - maxTraceAgeMillis;
+
+        traces.forEach((traceId, trace) -> {
+            if (trace.created >= oldest) {
+                return;
+            }
+            List<JaegerSpan> exported = null;
+            synchronized (trace) {
+                if (trace.decision == null) {
+                    trace.decision = trace.error ? Decision.ERROR : Decision.DROPPED;
+                    count(trace.decision);
+                    decided.put(traceId, new Decided(trace.decision));
+                    traces.remove(traceId, trace);
+                    exported = trace.error ? trace.spans : null;
+                }
+            }
+            if (exported != null) {
+                exported.forEach(delegate::report);
+            }
+        });
+
+        decided.values().removeIf(previous -> previous.created < now - decisionRetentionMillis);
+    }
+
+    private static boolean isError(JaegerSpan span) {
+        return Boolean.TRUE.equals(span.getTags().get(Tags.ERROR.getKey()));
+    }
+
+    private static boolean isLocalRoot(JaegerSpan span) {
+        var kind = span.getTags().get(Tags.SPAN_KIND.getKey());
+        return span.context().getParentId() == 0 || Tags.SPAN_KIND_SERVER.equals(kind) || Tags.SPAN_KIND_CONSUMER.equals(kind);
+    }
+
+    private static class Trace {
+        private final long created = System.currentTimeMillis();
+        private final List<JaegerSpan> spans = new ArrayList<>();
+        private boolean error;
+        private Decision decision;
+    }
+
+    private static class Decided {
+        private final long created = System.currentTimeMillis();
+        private final Decision decision;
+
+        Decided(Decision decision) {
+            this.decision = decision;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.comact.iep.tracing;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.thrift.transport.TTransportException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.reporters.RemoteReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.jaegertracing.thrift.internal.senders.HttpSender;
+import io.opentracing.util.GlobalTracer;
+import io.opentracing.util.ThreadLocalScopeManager;
+import io.quarkus.jaeger.runtime.MDCScopeManager;
+import io.quarkus.runtime.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The Jaeger tracer of the application, exporting the traces chosen by a {@link TailSamplingReporter}.
+ * <p>
+ * Every span is recorded, the decision to export a trace is taken when its request is done : the traces with an
+ * error, the requests slower than tracing.sampling.slow-threshold-ms and tracing.sampling.rate traces per second out
+ * of the others. The tracer of quarkus-jaeger samples when a trace starts, it is disabled with quarkus.jaeger.enabled.
+ * <p>
+ * The traceId and spanId are put in the MDC when tracing.log-trace-context is true.
+ */
+@Slf4j
+@Startup(-100) // registered before the startup beans create their spans
+@ApplicationScoped
+public class TailSamplingTracer {
+
+    @ConfigProperty(name = "tracing.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tracing.service-name", defaultValue = "kubernetes-api")
+    String serviceName;
+
+    @ConfigProperty(name = "tracing.endpoint")
+    Optional<String> endpoint;
+
+    @ConfigProperty(name = "tracing.log-trace-context", defaultValue = "true")
+    boolean logTraceContext;
+
+    @ConfigProperty(name = "tracing.sampling.slow-threshold-ms", defaultValue = "500")
+    long slowThresholdMs;
+
+    @ConfigProperty(name = "tracing.sampling.rate", defaultValue = "1")
+    double sampledPerSecond;
+
+    @ConfigProperty(name = "tracing.sampling.max-traces", defaultValue = "10000")
+    int maxTraces;
+
+    @ConfigProperty(name = "tracing.sampling.max-trace-age", defaultValue = "60S")
+    Duration maxTraceAge;
+
+    @ConfigProperty(name = "tracing.sampling.decision-retention", defaultValue = "10S")
+    Duration decisionRetention;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    private JaegerTracer tracer;
+
+    @PostConstruct
+    void init() {
+        if (!enabled || endpoint.isEmpty()) {
+            log.info("Tracing disabled, tracing.enabled is false or tracing.endpoint is not set");
+            return;
+        }
+
+        HttpSender sender;
+        try {
+            sender = new HttpSender.Builder(endpoint.get()).build();
+        } catch (TTransportException e) {
+            log.error("Tracing disabled, unable to send the traces to [{}]", endpoint.get(), e);
+            return;
+        }
+
+        var reporter = new TailSamplingReporter(new RemoteReporter.Builder()
+                .withSender(sender)
+                .build(), slowThresholdMs, sampledPerSecond, maxTraces, maxTraceAge.toMillis(), decisionRetention.toMillis());
+        Map<TailSamplingReporter.Decision, Counter> traces = new EnumMap<>(TailSamplingReporter.Decision.class);
+        for (var decision : TailSamplingReporter.Decision.values()) {
+            traces.put(decision, metricRegistry.counter(Metadata.builder()
+                    .withName("tracing.sampling.traces")
+                    .withDescription("Traces exported or dropped, by decision")
+                    .withType(MetricType.COUNTER)
+                    .build(), new Tag("decision", decision.name().toLowerCase())));
+        }
+        reporter.setDecisionListener(decision -> traces.get(decision).inc());
+
+        var builder = new JaegerTracer.Builder(serviceName)
+                .withSampler(new ConstSampler(true))
+                .withReporter(reporter);
+        if (logTraceContext) {
+            builder.withScopeManager(new MDCScopeManager(new ThreadLocalScopeManager()));
+        }
+        tracer = builder.build();
+
+        if (!GlobalTracer.registerIfAbsent(tracer)) {
+            log.warn("A tracer is already registered, check quarkus.jaeger.enabled is false, the tail sampling is not used");
+            tracer.close();
+            tracer = null;
+            return;
+        }
+
+        metricRegistry.register(Metadata.builder()
+                .withName("tracing.sampling.buffered-traces")
+                .withDescription("Traces waiting for the end of their request")
+                .withType(MetricType.GAUGE)
+                .build(), (Gauge<Integer>) reporter::getBufferedTraces);
+        log.info("Tracing to [{}], traces slower than {} ms, with an error and {} per second of the others are exported", endpoint.get(), slowThresholdMs, sampledPerSecond);
+    }
+
+    @PreDestroy
+    void close() {
+        if (tracer != null) {
+            tracer.close();
+        }
+    }
+}
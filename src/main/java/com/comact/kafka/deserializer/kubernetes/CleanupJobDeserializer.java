@@ -0,0 +1,81 @@
+package com.comact.kafka.deserializer.kubernetes;
+
+import java.io.IOException;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import com.comact.iep.cleanupjob.CleanupJob;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deserializer of the {@link CleanupJob} records.
+ * <p>
+ * The fields are read with the streaming parser of Jackson, without reflection nor intermediate tree. The unknown
+ * fields are skipped, a null or empty record is read as null.
+ * <p>
+ * A record that can't be read is logged and read as null, it is skipped by the consumer rather than stopping the
+ * channel.
+ */
+@Slf4j
+public class CleanupJobDeserializer implements Deserializer<CleanupJob> {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public CleanupJob deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
+        try (var parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                log.error("A cleanup job must be a JSON object, skipping a record of topic [{}]", topic);
+                return null;
+            }
+            return read(parser);
+        } catch (IOException e) {
+            log.error("Unable to read a cleanup job, skipping a record of topic [{}]", topic, e);
+            return null;
+        }
+    }
+
+    private static CleanupJob read(JsonParser parser) throws IOException {
+        var job = new CleanupJob();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            var token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            switch (field) {
+                case "id":
+                    job.setId(parser.getValueAsString());
+                    break;
+                case "cluster":
+                    job.setCluster(parser.getValueAsString());
+                    break;
+                case "namespace":
+                    job.setNamespace(parser.getValueAsString());
+                    break;
+                case "service":
+                    job.setService(parser.getValueAsString());
+                    break;
+                case "path":
+                    job.setPath(parser.getValueAsString());
+                    break;
+                case "timeout":
+                    job.setTimeout(parser.getValueAsInt());
+                    break;
+                case "requestedAt":
+                    job.setRequestedAt(parser.getValueAsLong());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return job;
+    }
+}
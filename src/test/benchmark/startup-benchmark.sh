@@ -0,0 +1,104 @@
+#!/usr/bin/env bash
+#
+# Time to the first successful GET /configMap/ and resident memory, for each packaging of the application.
+#
+# Build the packagings first, the missing ones are skipped:
+#
+#   ./mvnw package -Pappcds -DskipTests          # target/quarkus-app, with app-cds.jsa
+#   ./mvnw package -Pnative -DskipTests          # target/*-runner
+#
+# Then run, from the project directory, with a bearer token accepted by the service:
+#
+#   TOKEN=... src/test/benchmark/startup-benchmark.sh [runs]
+#
+# The Kubernetes API server and Keycloak of the prod profile must be reachable, override them with the usual
+# environment variables (QUARKUS_KUBERNETES_CLIENT_MASTER_URL, QUARKUS_OIDC_AUTH_SERVER_URL, ...).
+# Each run is written to target/startup-benchmark.csv, the averages are printed at the end.
+#
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-8080}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-60}
+URL="http://localhost:${PORT}/configMap/"
+APP=target/quarkus-app
+RESULTS=target/startup-benchmark.csv
+
+if [[ -z "${TOKEN:-}" ]]; then
+    echo "TOKEN is not set, /configMap/ requires a bearer token" >&2
+    exit 1
+fi
+
+now_millis() {
+    date +%s%3N
+}
+
+# the packaging name and its command line
+packagings=()
+if [[ -f "${APP}/quarkus-run.jar" ]]; then
+    packagings+=("jvm|java -jar ${APP}/quarkus-run.jar")
+    if [[ -f "${APP}/app-cds.jsa" ]]; then
+        packagings+=("jvm-appcds|java -XX:SharedArchiveFile=${APP}/app-cds.jsa -Xshare:on -jar ${APP}/quarkus-run.jar")
+    fi
+fi
+for runner in target/*-runner; do
+    [[ -x "${runner}" ]] && packagings+=("native|${runner}")
+done
+
+if [[ ${#packagings[@]} -eq 0 ]]; then
+    echo "Nothing to run, build the application first" >&2
+    exit 1
+fi
+
+# start the application, wait for the first 200 and print "ready_ms,rss_kb"
+measure() {
+    local command=$1
+    local start ready status rss pid
+
+    start=$(now_millis)
+    QUARKUS_HTTP_PORT="${PORT}" ${command} > target/startup-benchmark.log 2>&1 &
+    pid=$!
+
+    ready=""
+    while (( $(now_millis) - start < TIMEOUT_SECONDS * 1000 )); do
+        if ! kill -0 "${pid}" 2> /dev/null; then
+            break
+        fi
+        status=$(curl -s -o /dev/null -w '%{http_code}' -H "Authorization: Bearer ${TOKEN}" "${URL}" || true)
+        if [[ "${status}" == "200" ]]; then
+            ready=$(( $(now_millis) - start ))
+            break
+        fi
+        sleep 0.01
+    done
+
+    rss=$(ps -o rss= -p "${pid}" 2> /dev/null | tr -d ' ' || true)
+    kill "${pid}" 2> /dev/null || true
+    wait "${pid}" 2> /dev/null || true
+
+    if [[ -z "${ready}" ]]; then
+        echo "No successful response within ${TIMEOUT_SECONDS}s, see target/startup-benchmark.log" >&2
+        return 1
+    fi
+    echo "${ready},${rss:-0}"
+}
+
+echo "packaging,run,ready_ms,rss_kb" > "${RESULTS}"
+for packaging in "${packagings[@]}"; do
+    name=${packaging%%|*}
+    command=${packaging#*|}
+    for run in $(seq 1 "${RUNS}"); do
+        result=$(measure "${command}") || continue
+        echo "${name},${run},${result}" | tee -a "${RESULTS}"
+    done
+done
+
+echo
+awk -F, 'NR > 1 { ready[$1] += $3; rss[$1] += $4; runs[$1]++; if (!($1 in order)) { order[$1] = ++count; names[count] = $1 } }
+    END {
+        printf "%-12s %14s %14s\n", "packaging", "ready (ms)", "RSS (MB)"
+        for (i = 1; i <= count; i++) {
+            name = names[i]
+            printf "%-12s %14.0f %14.1f\n", name, ready[name] / runs[name], rss[name] / runs[name] / 1024
+        }
+    }' "${RESULTS}"
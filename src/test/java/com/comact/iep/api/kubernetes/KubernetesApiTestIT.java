@@ -37,7 +37,9 @@ public class KubernetesApiTestIT {
     private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesApiTestIT.class);
 
     private static final String DEFAULT_NAMESPACE = "default";
-    private static final String NAMESPACE = "namespace-cm";
+
+    // a namespace by test, the tests don't wait for the deletion of the namespaces of the others
+    private String namespace;
 
     @BeforeAll
     static void init() throws Exception {
@@ -46,22 +48,15 @@ public class KubernetesApiTestIT {
 
     @BeforeEach
     public void initBeforeTest() {
-        // create namespace if not present
-        try {
-            KindClusterForQuarkusTest.CLUSTER.createNamespace(NAMESPACE);
-            KindClusterForQuarkusTest.CLUSTER.createRoleInNamespace("configmap-role", NAMESPACE); // allow kubernetes-api to query this namespace
-        } catch (Exception ignore) {
-            // ignore
-        }
+        // allow kubernetes-api to query this namespace
+        namespace = KindClusterForQuarkusTest.CLUSTER.createTestNamespace();
     }
 
     @AfterEach
     public void cleanup() {
-        // delete namespace if present
-        try {
-            KindClusterForQuarkusTest.CLUSTER.deleteNamespace(NAMESPACE);
-        } catch (Exception ignore) {
-            // ignore
+        // the namespace is deleted in background
+        if (namespace != null) {
+            KindClusterForQuarkusTest.CLUSTER.deleteNamespace(namespace);
         }
     }
 
@@ -76,4 +71,25 @@ public class KubernetesApiTestIT {
 
         assertNotNull(configMaps, "configMaps can't be null");
     }
+
+    @Test
+    public void testConfigMapOfNamespace() {
+        var name = "cm-" + UUID.randomUUID();
+        KindClusterForQuarkusTest.CLUSTER.client().configMaps().inNamespace(namespace).create(new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .endMetadata()
+                .addToData("key", "value")
+                .build());
+
+        var configMap = given()
+                .when()
+                .get("/configMap/namespace/" + namespace + "/name/" + name)
+                .then()
+                .statusCode(200)
+                .extract().body().as(ConfigMap.class);
+
+        assertEquals(name, configMap.getMetadata().getName());
+        assertEquals("value", configMap.getData().get("key"));
+    }
 }
@@ -30,7 +30,7 @@ public class KindClusterForQuarkusTest implements QuarkusTestResourceLifecycleMa
 
     @Override
     public Map<String, String> start() {
-        LOGGER.info("Creating Kind Cluster");
+        LOGGER.info("Creating Kind Cluster, or reusing the running one");
         try {
             CLUSTER.initKindClusterWithDefaults();
         } catch (Exception e) {
@@ -46,6 +46,12 @@ public class KindClusterForQuarkusTest implements QuarkusTestResourceLifecycleMa
     @Override
     public void stop() {
         if (KEEP_CLUSTER) {
+            // the cluster is reused by the next run, only the namespaces of the tests are dropped
+            try {
+                CLUSTER.deleteTestNamespaces();
+            } catch (Exception e) {
+                LOGGER.error("Unable to delete the test namespaces", e);
+            }
             return;
         }
 
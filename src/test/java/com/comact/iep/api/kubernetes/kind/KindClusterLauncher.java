@@ -1,11 +1,16 @@
 package com.comact.iep.api.kubernetes.kind;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -16,6 +21,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.api.model.rbac.RoleBindingBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+
 /**
  * Used only for LOCAL testing for Integration testing
  * <p>
@@ -23,19 +34,31 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Need to have "Kind" installed on your computer.
  * <p>
+ * A cluster left running by a previous run is detected once and reused, kind is only called to create or delete the
+ * cluster. The namespaces and role bindings are managed with the fabric8 client of the cluster context.
+ * <p>
  * Work in progress !!! (We could add the code to retrieve Kind and install it if it's not present)
  */
-@SuppressWarnings({"CallToRuntimeExecWithNonConstantString", "CallToRuntimeExec"})
 @ApplicationScoped
 public class KindClusterLauncher {
     private static final Logger LOGGER = LoggerFactory.getLogger(KindClusterLauncher.class);
 
     public static final String DEFAULT_CLUSTER_NAME = "kind";
+    /**
+     * The label of the namespaces created by {@link #createTestNamespace()}.
+     */
+    public static final String TEST_NAMESPACE_LABEL = "kubernetes-api/it";
     private static final int DEFAULT_TIMEOUT = 180;
+    private static final int WARM_CHECK_TIMEOUT_MILLIS = 2000;
     private static final String DEFAULT_IMAGE = "kindest/node:v1.22.2";
     private static final String DEFAULT_CONFIG_FILE = "kind-config.yaml";
+    private static final String ROLE_API_GROUP = "rbac.authorization.k8s.io";
+    private static final String API_ROLE = "kubernetes-api-role";
+    private static final String API_SERVICE_ACCOUNT = "sa-kubernetes-api";
+    private static final String API_SERVICE_ACCOUNT_NAMESPACE = "kubeapi";
 
     private String clusterName = "kind-kind";
+    private KubernetesClient client;
 
     /**
      * Find the version of Kind installed
@@ -44,14 +67,7 @@ public class KindClusterLauncher {
      * @throws Exception if there are errors calling Kind
      */
     private String getKindVersion() throws Exception {
-        var command = "kind version";
-
-        LOGGER.debug("request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-        var version = IOUtils.toString(pr.getInputStream(), Charset.defaultCharset()).trim();
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
-        return version;
+        return run("kind", "version").output;
     }
 
     /**
@@ -61,14 +77,7 @@ public class KindClusterLauncher {
      * @throws Exception if there are errors calling Kind
      */
     public String getKindKubeConfig() throws Exception {
-        var command = "kind get kubeconfig";
-
-        LOGGER.debug("request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-        var kubeconfig = IOUtils.toString(pr.getInputStream(), Charset.defaultCharset()).trim();
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
-        return kubeconfig;
+        return run("kind", "get", "kubeconfig").output;
     }
 
     /**
@@ -81,19 +90,19 @@ public class KindClusterLauncher {
      * @throws Exception          if there are errors calling Kind
      */
     private void createKindCluster(String imageName, String clusterName, String config, boolean keepCurrentContext) throws Exception {
-        var command = "kind create cluster ";
+        var command = new ArrayList<>(List.of("kind", "create", "cluster"));
 
         if (!StringUtils.isEmpty(imageName)) {
-            command += " --image " + imageName;
+            command.addAll(List.of("--image", imageName));
         }
 
         if (!StringUtils.isEmpty(clusterName)) {
-            command += " --name " + clusterName;
+            command.addAll(List.of("--name", clusterName));
             this.clusterName = "kind-" + clusterName;
         }
 
         if (!StringUtils.isEmpty(config)) {
-            command += " --config " + config;
+            command.addAll(List.of("--config", config));
         }
 
         String currentContext = null;
@@ -101,12 +110,7 @@ public class KindClusterLauncher {
             currentContext = getCurrentKubeContext();
         }
 
-        LOGGER.debug("createKindCluster request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-
-        var output = IOUtils.toString(pr.getInputStream(), Charset.defaultCharset()).trim();
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+        run(command.toArray(String[]::new));
 
         if (!StringUtils.isEmpty(currentContext)) {
             setCurrentKubeContext(currentContext);
@@ -119,41 +123,32 @@ public class KindClusterLauncher {
      * @param  clusterName name of the cluster
      * @throws Exception   if there are errors calling Kind
      */
-    public void deleteKindCluster(String clusterName) throws Exception {
-        var command = "kind delete cluster ";
+    public synchronized void deleteKindCluster(String clusterName) throws Exception {
+        var command = new ArrayList<>(List.of("kind", "delete", "cluster"));
 
         if (!StringUtils.isEmpty(clusterName)) {
-            command += " --name " + clusterName;
+            command.addAll(List.of("--name", clusterName));
         }
 
-        LOGGER.debug("deleteKindCluster request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-
-        var output = IOUtils.toString(pr.getInputStream(), Charset.defaultCharset()).trim();
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
-
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        run(command.toArray(String[]::new));
     }
 
     /**
      * Find the current context in kubeconfig
      *
-     * @return           the current context in kubeconfig
-     * @throws Exception if there are errors calling Kind
+     * @return the current context in kubeconfig
      */
-    private String getCurrentKubeContext() throws Exception {
-        var command = "kubectl config current-context";
-        LOGGER.debug("getCurrentKubeContext request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-        var context = IOUtils.toString(pr.getInputStream(), Charset.defaultCharset()).trim();
+    private String getCurrentKubeContext() {
         try {
-            waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+            return run("kubectl", "config", "current-context").output;
         } catch (Exception ignored) {
             // context probably not setted
+            return null;
         }
-
-        return context;
     }
 
     /**
@@ -163,11 +158,7 @@ public class KindClusterLauncher {
      * @throws Exception if there are errors calling Kind
      */
     private void setCurrentKubeContext(String context) throws Exception {
-        var command = "kubectl config use-context " + context;
-        LOGGER.debug("setCurrentKubeContext request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+        run("kubectl", "config", "use-context", context);
     }
 
     /**
@@ -190,19 +181,10 @@ public class KindClusterLauncher {
      * @throws Exception   if there are errors calling Kind
      */
     private boolean isKindClusterExist(String clusterName) throws Exception {
-        var command = "kind get clusters";
-
-        LOGGER.debug("isKindClusterExist request : command [{}]", command);
-
-        var pr = Runtime.getRuntime().exec(command);
-
-        var output = IOUtils.toString(pr.getInputStream(), Charset.defaultCharset()).trim();
-        var outputErr = IOUtils.toString(pr.getErrorStream(), Charset.defaultCharset()).trim();
-
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+        var result = run("kind", "get", "clusters");
 
         // no clusters
-        if ("No kind clusters found.".equals(outputErr)) {
+        if ("No kind clusters found.".equals(result.error)) {
             return false;
         }
 
@@ -211,57 +193,93 @@ public class KindClusterLauncher {
             return true;
         }
 
-        //noinspection RedundantIfStatement
-        if (Arrays.stream(output.split("\n")).anyMatch(clusterName::equalsIgnoreCase)) {
-            // the output contains cluster name
-            return true;
-        }
-
-        return false;
+        // the output contains cluster name
+        return Arrays.stream(result.output.split("\n")).anyMatch(clusterName::equalsIgnoreCase);
     }
 
     /**
-     * Wait for the process to end until a timeout
+     * Check if the API server of the cluster context answers, without starting any process.
      *
-     * @param  process   the process to run
-     * @param  timeout   timeout value
-     * @param  unit      time unit to use for timeout
-     * @throws Exception if there are errors calling Kind
+     * @return the client of the cluster, null if the cluster is not running
      */
-    private void waitForNormalTermination(Process process, int timeout, TimeUnit unit) throws Exception {
-
-        var stdInput = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-        var stdError = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-
-        // Read the output from the command
-        LOGGER.debug("Here is the standard output of the command:\n");
-        String value;
-        while ((value = stdInput.readLine()) != null) {
-            LOGGER.debug(value);
+    private KubernetesClient connectToRunningCluster() {
+        var config = Config.autoConfigure(clusterName);
+        if (!clusterName.equals(config.getCurrentContext() == null ? null : config.getCurrentContext().getName())) {
+            // no such context in kubeconfig
+            return null;
         }
 
-        // Read any errors from the attempted command
-        LOGGER.debug("Here is the standard error of the command (if any):\n");
-        while ((value = stdError.readLine()) != null) {
-            LOGGER.debug(value);
+        config.setConnectionTimeout(WARM_CHECK_TIMEOUT_MILLIS);
+        config.setRequestTimeout(WARM_CHECK_TIMEOUT_MILLIS);
+        var candidate = new DefaultKubernetesClient(config);
+        try {
+            LOGGER.debug("Kubernetes version of context [{}] : [{}]", clusterName, candidate.getKubernetesVersion().getGitVersion());
+            return new DefaultKubernetesClient(Config.autoConfigure(clusterName));
+        } catch (Exception e) {
+            LOGGER.debug("Context [{}] is not reachable", clusterName, e);
+            return null;
+        } finally {
+            candidate.close();
         }
+    }
 
-        if (!process.waitFor(timeout, unit)) {
-            throw new TimeoutException("Timeout while executing " + process.info().commandLine().orElse(null));
+    /**
+     * Run a command until it ends or times out, its output and error are read concurrently.
+     *
+     * @param  command   the command and its arguments
+     * @return           the output and error of the command
+     * @throws Exception if the command fails, times out or ends with a non zero exit value
+     */
+    private CommandResult run(String... command) throws Exception {
+        var commandLine = String.join(" ", command);
+        LOGGER.debug("request : command [{}]", commandLine);
+
+        var process = new ProcessBuilder(command).start();
+        // a pipe not drained blocks the process once full
+        var output = CompletableFuture.supplyAsync(() -> read(process.getInputStream()));
+        var error = CompletableFuture.supplyAsync(() -> read(process.getErrorStream()));
+
+        if (!process.waitFor(DEFAULT_TIMEOUT, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new TimeoutException("Timeout while executing " + commandLine);
         }
 
+        var result = new CommandResult(output.get(DEFAULT_TIMEOUT, TimeUnit.SECONDS), error.get(DEFAULT_TIMEOUT, TimeUnit.SECONDS));
+        LOGGER.debug("Standard output of [{}] :\n{}", commandLine, result.output);
+        LOGGER.debug("Standard error of [{}] :\n{}", commandLine, result.error);
+
         if (process.exitValue() != 0) {
-            throw new Exception("Process termination was abnormal, exit value: [" + process.exitValue() + "], command:[" + process.info().commandLine().orElse(null) + "] error returned:[" + IOUtils.toString(process.getErrorStream(), StandardCharsets.UTF_8) + ']');
+            throw new Exception("Process termination was abnormal, exit value: [" + process.exitValue() + "], command:[" + commandLine + "] error returned:[" + result.error + ']');
+        }
+        return result;
+    }
+
+    private static String read(InputStream stream) {
+        try {
+            return IOUtils.toString(stream, Charset.defaultCharset()).trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * Init Kind cluster with the default configuration
+     * Init Kind cluster with the default configuration, a running cluster is reused.
+     * <p>
+     * The cluster is detected once, the next calls return immediately.
      *
      * @throws Exception if there are errors calling Kind
      */
-    public void initKindClusterWithDefaults() throws Exception {
+    public synchronized void initKindClusterWithDefaults() throws Exception {
+        if (client != null) {
+            return;
+        }
+
+        client = connectToRunningCluster();
+        if (client != null) {
+            LOGGER.info("Reusing the running cluster of context [{}]", clusterName);
+            return;
+        }
+
         var resource = KindClusterLauncher.class.getClassLoader().getResource(DEFAULT_CONFIG_FILE);
 
         if (resource == null) {
@@ -270,49 +288,81 @@ public class KindClusterLauncher {
 
         var configPath = resource.getFile();
         createKindCluster(DEFAULT_IMAGE, DEFAULT_CLUSTER_NAME, new File(configPath).getAbsolutePath(), true);
+        client = new DefaultKubernetesClient(Config.autoConfigure(clusterName));
     }
 
     /**
-     * Create a new namespace in the cluster
+     * The client of the cluster.
      *
-     * @param  namespace the namespace to create
-     * @throws Exception if there are errors calling Kind
+     * @return the kubernetes client
      */
-    public void createNamespace(String namespace) throws Exception {
-        var command = "kubectl --context " + clusterName + " create namespace " + namespace;
-
-        LOGGER.debug("request : command [{}]", command);
+    public synchronized KubernetesClient client() {
+        if (client == null) {
+            throw new IllegalStateException("The cluster is not initialized, call initKindClusterWithDefaults first");
+        }
+        return client;
+    }
 
-        var pr = Runtime.getRuntime().exec(command);
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+    /**
+     * Create a new namespace in the cluster
+     *
+     * @param namespace the namespace to create
+     */
+    public void createNamespace(String namespace) {
+        client().namespaces().createOrReplace(new NamespaceBuilder()
+                .withNewMetadata()
+                .withName(namespace)
+                .endMetadata()
+                .build());
     }
 
     /**
-     * Delete a namespace in the cluster
+     * Create a namespace with a random name, labeled with {@link #TEST_NAMESPACE_LABEL}, that kubernetes-api is
+     * allowed to query.
+     * <p>
+     * Each test has its own namespace, the tests don't depend on the cleanup of the others.
      *
-     * @param  namespace the namespace to delete
-     * @throws Exception if there are errors calling Kind
+     * @return the namespace name
      */
-    public void deleteNamespace(String namespace) throws Exception {
-        var command = "kubectl --context " + clusterName + " delete namespace " + namespace;
+    public String createTestNamespace() {
+        var namespace = "it-" + UUID.randomUUID().toString().substring(0, 8);
+        client().namespaces().create(new NamespaceBuilder()
+                .withNewMetadata()
+                .withName(namespace)
+                .addToLabels(TEST_NAMESPACE_LABEL, "true")
+                .endMetadata()
+                .build());
+        createRoleInNamespace("configmap-role", namespace);
+        return namespace;
+    }
 
-        LOGGER.debug("request : command [{}]", command);
+    /**
+     * Delete a namespace in the cluster, the deletion goes on in background
+     *
+     * @param namespace the namespace to delete
+     */
+    public void deleteNamespace(String namespace) {
+        client().namespaces().withName(namespace).delete();
+    }
 
-        var pr = Runtime.getRuntime().exec(command);
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+    /**
+     * Delete the namespaces created by {@link #createTestNamespace()}, the deletion goes on in background
+     */
+    public void deleteTestNamespaces() {
+        client().namespaces().withLabel(TEST_NAMESPACE_LABEL).delete();
     }
 
     /**
      * Recreate a new namespace in the cluster
      *
-     * @param  namespace the namespace to create
-     * @throws Exception if there are errors calling Kind
+     * @param namespace the namespace to create
      */
-    public void recreateNamespace(String namespace) throws Exception {
-        // delete namespace if present
-        try {
-            deleteNamespace(namespace);
-        } catch (Exception ignore) {
+    public void recreateNamespace(String namespace) {
+        // delete namespace if present, and wait for its resources to be gone
+        var resource = client().namespaces().withName(namespace);
+        if (resource.get() != null) {
+            resource.delete();
+            resource.waitUntilCondition(Objects::isNull, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
         }
         // create the namespace
         createNamespace(namespace);
@@ -321,15 +371,38 @@ public class KindClusterLauncher {
     /**
      * Create a role to see in the namespace in the cluster
      *
-     * @param  namespace the namespace to allow
-     * @throws Exception if there are errors calling Kind
+     * @param rolename  the name of the role binding
+     * @param namespace the namespace to allow
      */
-    public void createRoleInNamespace(String rolename, String namespace) throws Exception {
-        var command = "kubectl --context " + clusterName + " create rolebinding " + rolename + " --clusterrole=kubernetes-api-role --serviceaccount=kubeapi:sa-kubernetes-api --namespace=" + namespace;
+    public void createRoleInNamespace(String rolename, String namespace) {
+        client().rbac().roleBindings().inNamespace(namespace).createOrReplace(new RoleBindingBuilder()
+                .withNewMetadata()
+                .withName(rolename)
+                .withNamespace(namespace)
+                .endMetadata()
+                .withNewRoleRef()
+                .withApiGroup(ROLE_API_GROUP)
+                .withKind("ClusterRole")
+                .withName(API_ROLE)
+                .endRoleRef()
+                .addNewSubject()
+                .withKind("ServiceAccount")
+                .withName(API_SERVICE_ACCOUNT)
+                .withNamespace(API_SERVICE_ACCOUNT_NAMESPACE)
+                .endSubject()
+                .build());
+    }
 
-        LOGGER.debug("request : command [{}]", command);
+    /**
+     * The output and error of a command.
+     */
+    private static final class CommandResult {
+        private final String output;
+        private final String error;
 
-        var pr = Runtime.getRuntime().exec(command);
-        waitForNormalTermination(pr, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+        private CommandResult(String output, String error) {
+            this.output = output;
+            this.error = error;
+        }
     }
 }
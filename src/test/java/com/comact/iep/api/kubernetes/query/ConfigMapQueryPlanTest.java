@@ -0,0 +1,98 @@
+package com.comact.iep.api.kubernetes.query;
+
+import static com.comact.iep.api.kubernetes.query.ConfigMapQuery.combine;
+import static com.comact.iep.api.kubernetes.query.ConfigMapQuery.condition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.ws.rs.BadRequestException;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.comact.iep.api.kubernetes.query.ConfigMapQuery.Operator;
+import com.comact.iep.api.kubernetes.query.ConfigMapQuery.Type;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+
+/**
+ * Check how the queries are planned and evaluated, no cluster needed.
+ */
+public class ConfigMapQueryPlanTest {
+
+    private static final ConfigMapQuery QUERY = combine(Type.AND,
+            condition(Type.DATA_KEY, "settings.json", Operator.EXISTS, null),
+            condition(Type.LABEL, "app", Operator.EQUALS, "x"),
+            condition(Type.ANNOTATION, "owner", Operator.EXISTS, null),
+            condition(Type.NAME, null, Operator.PREFIX, "cfg-"));
+
+    @Test
+    public void testLabelsArePushedToTheApiServer() {
+        var plan = ConfigMapQueryPlan.of(QUERY);
+
+        assertEquals(1, plan.getLabelSelectors().size());
+        assertEquals("app", plan.getLabelSelectors().get(0).getKey());
+        assertEquals(3, plan.getLocalConditions().size());
+    }
+
+    @Test
+    public void testMostSelectiveConditionFirst() {
+        var plan = ConfigMapQueryPlan.of(QUERY);
+
+        assertEquals(Type.NAME, plan.getLocalConditions().get(0).getType());
+        assertEquals(Type.DATA_KEY, plan.getLocalConditions().get(2).getType());
+    }
+
+    @Test
+    public void testOneSelectorByLabelKey() {
+        var plan = ConfigMapQueryPlan.of(combine(Type.AND,
+                condition(Type.LABEL, "app", Operator.EXISTS, null),
+                condition(Type.LABEL, "app", Operator.NOT_EQUALS, "y")));
+
+        assertEquals(1, plan.getLabelSelectors().size());
+        assertEquals(1, plan.getLocalConditions().size());
+    }
+
+    @Test
+    public void testMatches() {
+        var plan = ConfigMapQueryPlan.of(QUERY);
+
+        assertTrue(plan.matches(configMap("cfg-a", Map.of("owner", "me"), Map.of("settings.json", "{}"))));
+        assertFalse(plan.matches(configMap("other", Map.of("owner", "me"), Map.of("settings.json", "{}"))));
+        assertFalse(plan.matches(configMap("cfg-a", Map.of(), Map.of("settings.json", "{}"))));
+        assertFalse(plan.matches(configMap("cfg-a", Map.of("owner", "me"), Map.of())));
+    }
+
+    @Test
+    public void testOrAndNot() {
+        var plan = ConfigMapQueryPlan.of(combine(Type.OR,
+                condition(Type.NAME, null, Operator.EQUALS, "a"),
+                combine(Type.NOT, condition(Type.ANNOTATION, "owner", Operator.EXISTS, null))));
+
+        assertTrue(plan.getLabelSelectors().isEmpty());
+        assertTrue(plan.matches(configMap("a", Map.of("owner", "me"), Map.of())));
+        assertTrue(plan.matches(configMap("b", Map.of(), Map.of())));
+        assertFalse(plan.matches(configMap("b", Map.of("owner", "me"), Map.of())));
+    }
+
+    @Test
+    public void testInvalidQuery() {
+        assertThrows(BadRequestException.class, () -> ConfigMapQueryPlan.of(condition(Type.LABEL, null, Operator.EXISTS, null)));
+        assertThrows(BadRequestException.class, () -> ConfigMapQueryPlan.of(condition(Type.NAME, null, Operator.PREFIX, null)));
+        assertThrows(BadRequestException.class, () -> ConfigMapQueryPlan.of(combine(Type.NOT)));
+    }
+
+    private static ConfigMap configMap(String name, Map<String, String> annotations, Map<String, String> data) {
+        return new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withAnnotations(annotations)
+                .withLabels(Map.of("app", "x"))
+                .endMetadata()
+                .withData(data)
+                .build();
+    }
+}
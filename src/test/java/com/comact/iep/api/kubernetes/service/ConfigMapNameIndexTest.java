@@ -0,0 +1,72 @@
+package com.comact.iep.api.kubernetes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.comact.iep.api.kubernetes.service.ConfigMapNameIndex.Match;
+
+/**
+ * Check the translation of the patterns used by the name index, no cluster needed.
+ */
+public class ConfigMapNameIndexTest {
+
+    @Test
+    public void testGlobPrefix() {
+        assertEquals("release-2026-", ConfigMapNameIndex.globPrefix("release-2026-*"));
+        assertEquals("cfg-", ConfigMapNameIndex.globPrefix("cfg-?-[ab]"));
+        assertEquals("", ConfigMapNameIndex.globPrefix("*-settings"));
+    }
+
+    @Test
+    public void testGlobToRegex() {
+        var regex = ConfigMapNameIndex.globToRegex("cfg-?.[ab]*");
+
+        assertTrue("cfg-1.a-settings".matches(regex));
+        assertFalse("cfg-12.a".matches(regex));
+        assertFalse("cfg-1xa".matches(regex));
+    }
+
+    @Test
+    public void testGlobNegatedClass() {
+        var pattern = Pattern.compile(ConfigMapNameIndex.globToRegex("cfg-[!ab]"));
+
+        assertTrue(pattern.matcher("cfg-c").find());
+        assertFalse(pattern.matcher("cfg-a").find());
+        // a glob matches the whole name
+        assertFalse(pattern.matcher("cfg-c-settings").find());
+    }
+
+    @Test
+    public void testRegexFound() {
+        var names = new TreeSet<>(List.of("release-2026-01", "release-2026-", "old-release-2026-02", "release-2025-12"));
+
+        assertEquals(List.of("old-release-2026-02", "release-2026-", "release-2026-01"),
+                ConfigMapNameIndex.filter(names, Pattern.compile("release-2026-")));
+        assertEquals(List.of("release-2026-", "release-2026-01"),
+                ConfigMapNameIndex.filter(names, Pattern.compile("^release-2026-")));
+    }
+
+    @Test
+    public void testMatches() {
+        var names = new TreeSet<>(List.of("cfg-a", "cfg-b-settings", "cfg-c", "release-2026-01"));
+
+        assertEquals(List.of("cfg-a", "cfg-b-settings", "cfg-c"), ConfigMapNameIndex.matches(names, Match.PREFIX, "cfg-"));
+        assertEquals(List.of("cfg-a", "cfg-c"), ConfigMapNameIndex.matches(names, Match.GLOB, "cfg-?"));
+        assertEquals(List.of("cfg-b-settings", "release-2026-01"), ConfigMapNameIndex.matches(names, Match.REGEX, "-[0-9s]"));
+    }
+
+    @Test
+    public void testRegexPrefix() {
+        assertEquals("release-2026-", ConfigMapNameIndex.regexPrefix("^release-2026-.*"));
+        assertEquals("a", ConfigMapNameIndex.regexPrefix("^ab?c"));
+        assertEquals("", ConfigMapNameIndex.regexPrefix("release-.*"));
+        assertEquals("", ConfigMapNameIndex.regexPrefix("^a|b"));
+    }
+}
@@ -0,0 +1,170 @@
+package com.comact.iep.api.kubernetes.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.smallrye.metrics.MetricRegistries;
+
+/**
+ * Check the hits, the invalidation, the size accounting and the eviction of the response cache, no cluster needed.
+ */
+public class ConfigMapResponseCacheTest {
+    private final AtomicInteger queries = new AtomicInteger();
+    private ConfigMapResponseCache cache;
+    private KubernetesClusters clusters;
+    private ConfigMapNameIndex nameIndex;
+    private volatile boolean watched = true;
+
+    @BeforeEach
+    public void init() {
+        clusters = new KubernetesClusters(null, Optional.of(List.of("east")), Duration.ofSeconds(5), 4, 64, Duration.ofSeconds(10));
+        nameIndex = new ConfigMapNameIndex(clusters, null, 256, 8, Duration.ofMinutes(10)) {
+            @Override
+            public boolean isWatched(String cluster, String namespace) {
+                return watched;
+            }
+        };
+
+        cache = new ConfigMapResponseCache();
+        cache.enabled = true;
+        cache.maxSize = new MemorySize(BigInteger.valueOf(1024 * 1024));
+        cache.nameIndex = nameIndex;
+        cache.kubernetesClusters = clusters;
+        cache.objectMapper = new ObjectMapper();
+        cache.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        cache.init();
+    }
+
+    @AfterEach
+    public void close() {
+        nameIndex.close();
+        clusters.close();
+        MetricRegistries.dropAll();
+    }
+
+    @Test
+    public void testHit() {
+        var first = cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+        var second = cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+
+        assertArrayEquals(first, second);
+        assertEquals(1, queries.get());
+        assertEquals(1, counter("kubernetes-api.response-cache.hits"));
+        assertEquals(1, counter("kubernetes-api.response-cache.misses"));
+    }
+
+    @Test
+    public void testMiss() {
+        cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+        cache.get("east", "prod", "configmaps", "label=app", false, loader("settings"));
+        cache.get("east", "dev", "configmaps", "", false, loader("settings"));
+
+        assertEquals(3, queries.get());
+        assertEquals(3, counter("kubernetes-api.response-cache.misses"));
+    }
+
+    @Test
+    public void testNotWatched() {
+        watched = false;
+
+        cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+        cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+
+        // a namespace without a watch would not be invalidated
+        assertEquals(2, queries.get());
+        assertEquals(0, size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+        var dev = cache.get("east", "dev", "configmaps", "", false, loader("settings"));
+
+        cache.invalidate("east", "prod");
+        var prod = cache.get("east", "prod", "configmaps", "", false, loader("settings-v2"));
+        cache.get("east", "dev", "configmaps", "", false, loader("settings"));
+
+        // only the changed namespace is queried again
+        assertEquals(3, queries.get());
+        assertTrue(new String(prod, StandardCharsets.UTF_8).contains("settings-v2"));
+        assertEquals(dev.length + prod.length, size());
+    }
+
+    @Test
+    public void testGzipSize() throws IOException {
+        var json = cache.get("east", "prod", "configmaps", "", false, loader("settings"));
+        assertEquals(json.length, size());
+
+        var gzip = cache.get("east", "prod", "configmaps", "", true, loader("settings"));
+        assertEquals(json.length + gzip.length, size());
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(json, in.readAllBytes());
+        }
+
+        // the gzip bytes are compressed once
+        assertArrayEquals(gzip, cache.get("east", "prod", "configmaps", "", true, loader("settings")));
+        assertEquals(json.length + gzip.length, size());
+
+        cache.invalidate("east", "prod");
+        assertEquals(0, size());
+    }
+
+    @Test
+    public void testEvictLeastRecent() {
+        var length = cache.get("east", "prod", "a", "", false, loader("settings")).length;
+        // room for two responses and a half
+        cache.maxSize = new MemorySize(BigInteger.valueOf(length * 5L / 2));
+        cache.get("east", "prod", "b", "", false, loader("settings"));
+        cache.get("east", "prod", "a", "", false, loader("settings"));
+
+        cache.get("east", "prod", "c", "", false, loader("settings"));
+        assertEquals(length * 2L, size());
+
+        // b was the least recently accessed
+        queries.set(0);
+        cache.get("east", "prod", "a", "", false, loader("settings"));
+        cache.get("east", "prod", "c", "", false, loader("settings"));
+        assertEquals(0, queries.get());
+        cache.get("east", "prod", "b", "", false, loader("settings"));
+        assertEquals(1, queries.get());
+    }
+
+    private Supplier<List<ConfigMap>> loader(String name) {
+        return () -> {
+            queries.incrementAndGet();
+            return List.of(new ConfigMapBuilder().withNewMetadata().withName(name).endMetadata().build());
+        };
+    }
+
+    private static long counter(String name) {
+        return MetricRegistries.get(MetricRegistry.Type.APPLICATION).counter(name).getCount();
+    }
+
+    private static long size() {
+        return ((Number) MetricRegistries.get(MetricRegistry.Type.APPLICATION).getGauges()
+                .get(new MetricID("kubernetes-api.response-cache.size")).getValue()).longValue();
+    }
+}
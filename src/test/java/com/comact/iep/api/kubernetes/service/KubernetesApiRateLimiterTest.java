@@ -0,0 +1,123 @@
+package com.comact.iep.api.kubernetes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.comact.iep.api.kubernetes.service.KubernetesApiRateLimiter.TokenBucket;
+import com.comact.iep.api.kubernetes.service.KubernetesApiRateLimiter.Verb;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.smallrye.metrics.MetricRegistries;
+
+/**
+ * Check the token buckets of the rate limiter, the interrupted waits and the sweep of the namespace buckets.
+ */
+public class KubernetesApiRateLimiterTest {
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toNanos(5);
+    private KubernetesApiRateLimiter rateLimiter;
+
+    @BeforeEach
+    public void init() {
+        rateLimiter = new KubernetesApiRateLimiter();
+        rateLimiter.enabled = true;
+        rateLimiter.maxWait = Duration.ofSeconds(5);
+        rateLimiter.maxRetries = 0;
+        rateLimiter.maxNamespaceBuckets = 2;
+        rateLimiter.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        rateLimiter.init();
+    }
+
+    @AfterEach
+    public void close() {
+        rateLimiter.close();
+        MetricRegistries.dropAll();
+    }
+
+    @Test
+    public void testIdle() {
+        var bucket = new TokenBucket(10, 2);
+        assertTrue(bucket.isIdle(System.nanoTime()));
+
+        bucket.reserve(MAX_WAIT);
+        assertFalse(bucket.isIdle(System.nanoTime()));
+
+        // refilled after a token at 10 by second
+        assertTrue(bucket.isIdle(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200)));
+    }
+
+    @Test
+    public void testThrottledIsNotIdle() {
+        var bucket = new TokenBucket(10, 2);
+        bucket.onThrottled(1);
+
+        // the rate is still halved after the Retry-After delay
+        assertFalse(bucket.isIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(2)));
+    }
+
+    @Test
+    public void testRelease() {
+        var bucket = new TokenBucket(1, 1);
+        assertEquals(0, bucket.reserve(MAX_WAIT));
+        bucket.release();
+
+        // the released token is available again
+        assertEquals(0, bucket.reserve(MAX_WAIT));
+        assertTrue(bucket.reserve(MAX_WAIT) > 0);
+    }
+
+    @Test
+    public void testInterrupted() {
+        // a list in a namespace has a burst of 20 at 10 by second
+        for (var i = 0; i < 20; i++) {
+            rateLimiter.execute("east", Verb.LIST, "prod", () -> "ok");
+        }
+
+        var requests = new AtomicInteger();
+        Thread.currentThread().interrupt();
+        assertThrows(KubernetesClientException.class, () -> rateLimiter.execute("east", Verb.LIST, "prod", requests::incrementAndGet));
+        assertTrue(Thread.interrupted(), "the interrupt is restored");
+        assertEquals(0, requests.get());
+
+        // the token of the interrupted request is given back, the next one waits for a single token
+        var start = System.nanoTime();
+        rateLimiter.execute("east", Verb.LIST, "prod", requests::incrementAndGet);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(170));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testSweepIdle() throws InterruptedException {
+        rateLimiter.execute("east", Verb.GET, "a", () -> "ok");
+        rateLimiter.execute("east", Verb.GET, "b", () -> "ok");
+        // refilled after a token at 50 by second
+        Thread.sleep(100);
+        rateLimiter.execute("east", Verb.GET, "c", () -> "ok");
+
+        rateLimiter.sweep();
+
+        assertEquals(1, rateLimiter.namespaceBuckets());
+    }
+
+    @Test
+    public void testSweepLeastRecentlyUsed() {
+        rateLimiter.execute("east", Verb.GET, "a", () -> "ok");
+        rateLimiter.execute("east", Verb.GET, "b", () -> "ok");
+        rateLimiter.execute("east", Verb.GET, "c", () -> "ok");
+        rateLimiter.execute("east", Verb.GET, "a", () -> "ok");
+
+        // none is idle, the bound is still enforced
+        rateLimiter.sweep();
+
+        assertEquals(2, rateLimiter.namespaceBuckets());
+    }
+}
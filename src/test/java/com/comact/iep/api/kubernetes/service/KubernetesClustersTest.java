@@ -0,0 +1,134 @@
+package com.comact.iep.api.kubernetes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServiceUnavailableException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+
+/**
+ * Check the all-clusters queries, no cluster needed.
+ */
+public class KubernetesClustersTest {
+    private KubernetesClusters clusters;
+
+    @AfterEach
+    public void close() {
+        clusters.close();
+    }
+
+    @Test
+    public void testMerged() {
+        clusters = clusters(Duration.ofSeconds(5), 4);
+
+        var merged = clusters.fanOut(name -> List.of(configMap("settings")));
+
+        assertEquals(List.of("default", "east", "west"), clustersOf(merged));
+    }
+
+    @Test
+    public void testPartialResult() {
+        clusters = clusters(Duration.ofSeconds(5), 4);
+
+        var merged = clusters.fanOut(name -> {
+            if ("east".equals(name)) {
+                throw new IllegalStateException("cluster unavailable");
+            }
+            return List.of(configMap("settings"));
+        });
+
+        // the failed cluster is left out
+        assertEquals(List.of("default", "west"), clustersOf(merged));
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        clusters = clusters(Duration.ofMillis(200), 4);
+        var interrupted = new CountDownLatch(1);
+
+        var start = System.nanoTime();
+        var merged = clusters.fanOut(name -> {
+            if ("west".equals(name)) {
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return List.of();
+            }
+            return List.of(configMap("settings"));
+        });
+
+        assertEquals(List.of("default", "east"), clustersOf(merged));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "the deadline applies");
+        // the query of the late cluster doesn't hold its thread
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejected() throws InterruptedException {
+        // 3 threads and 3 waiting tasks
+        clusters = clusters(Duration.ofSeconds(5), 1);
+        var release = new CountDownLatch(1);
+        var running = new CountDownLatch(3);
+
+        var blocked = CompletableFuture.runAsync(() -> clusters.fanOut(name -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // the second query fills the queue
+        var waiting = CompletableFuture.runAsync(() -> clusters.fanOut(name -> List.of()));
+        Thread.sleep(200);
+
+        try {
+            assertThrows(ServiceUnavailableException.class, () -> clusters.fanOut(name -> List.of()));
+        } finally {
+            release.countDown();
+        }
+        blocked.join();
+        waiting.join();
+    }
+
+    @Test
+    public void testUnknownCluster() {
+        clusters = clusters(Duration.ofSeconds(5), 4);
+
+        assertThrows(NotFoundException.class, () -> clusters.client("north"));
+        assertThrows(BadRequestException.class, () -> clusters.client(KubernetesClusters.ALL_CLUSTERS));
+    }
+
+    private static KubernetesClusters clusters(Duration fanOutTimeout, int maxFanOutQueries) {
+        return new KubernetesClusters(null, Optional.of(List.of("east", "west")), fanOutTimeout, maxFanOutQueries, 64, Duration.ofSeconds(10));
+    }
+
+    private static List<String> clustersOf(List<ConfigMap> configMaps) {
+        return configMaps.stream()
+                .map(configMap -> configMap.getMetadata().getAnnotations().get(KubernetesClusters.CLUSTER_ANNOTATION))
+                .collect(Collectors.toList());
+    }
+
+    private static ConfigMap configMap(String name) {
+        return new ConfigMapBuilder().withNewMetadata().withName(name).endMetadata().build();
+    }
+}
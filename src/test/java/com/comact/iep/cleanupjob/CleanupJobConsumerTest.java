@@ -0,0 +1,106 @@
+package com.comact.iep.cleanupjob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import javax.enterprise.inject.Any;
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.comact.iep.cleanupjob.CleanupJobResult.Status;
+import com.comact.iep.logging.InMemoryMessagingResource;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import io.smallrye.reactive.messaging.providers.connectors.InMemoryConnector;
+
+/**
+ * Check a batch of cleanup jobs is run in order by namespace, with a result for each job.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryMessagingResource.class, restrictToAnnotatedClass = true)
+public class CleanupJobConsumerTest {
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @InjectMock
+    CleanupJobRunner runner;
+
+    @Test
+    public void testBatch() throws InterruptedException {
+        Map<String, List<String>> runs = new ConcurrentHashMap<>();
+        when(runner.run(any())).thenAnswer(invocation -> {
+            CleanupJob job = invocation.getArgument(0);
+            runs.computeIfAbsent(job.getNamespace(), namespace -> new CopyOnWriteArrayList<>()).add(job.getId());
+            return new CleanupJobResult(job.getId(), job.getCluster(), job.getNamespace(), Status.SUCCEEDED, 1, null);
+        });
+
+        var completed = connector.sink("cleanupjob-completed");
+        completed.clear();
+        connector.source("cleanupjob").send(List.of(job("1", "a"), job("2", "b"), job("3", "a"), job("4", "b"), job("5", "a")));
+
+        var deadline = System.currentTimeMillis() + 10_000;
+        while (completed.received().size() < 5) {
+            assertTrue(System.currentTimeMillis() < deadline, "the results were not sent");
+            Thread.sleep(20);
+        }
+
+        assertEquals(List.of("1", "3", "5"), runs.get("a"));
+        assertEquals(List.of("2", "4"), runs.get("b"));
+        var ids = completed.received().stream()
+                .map(message -> ((CleanupJobResult) message.getPayload()).getId())
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(List.of("1", "2", "3", "4", "5"), ids);
+    }
+
+    @Test
+    public void testUnreadableRecord() throws InterruptedException {
+        when(runner.run(any())).thenAnswer(invocation -> {
+            CleanupJob job = invocation.getArgument(0);
+            return new CleanupJobResult(job.getId(), job.getCluster(), job.getNamespace(), Status.SUCCEEDED, 1, null);
+        });
+
+        var completed = connector.sink("cleanupjob-completed");
+        completed.clear();
+        // the deserializer reads an unreadable record as null
+        connector.source("cleanupjob").send(Arrays.asList(job("6", "c"), null, job("7", "c")));
+
+        var deadline = System.currentTimeMillis() + 10_000;
+        while (completed.received().size() < 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "the results were not sent");
+            Thread.sleep(20);
+        }
+
+        // the channel goes on after the unreadable record
+        connector.source("cleanupjob").send(List.of(job("8", "c")));
+        while (completed.received().size() < 3) {
+            assertTrue(System.currentTimeMillis() < deadline, "the channel stopped");
+            Thread.sleep(20);
+        }
+        var ids = completed.received().stream()
+                .map(message -> ((CleanupJobResult) message.getPayload()).getId())
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(List.of("6", "7", "8"), ids);
+    }
+
+    private static CleanupJob job(String id, String namespace) {
+        var job = new CleanupJob();
+        job.setId(id);
+        job.setNamespace(namespace);
+        job.setRequestedAt(System.currentTimeMillis());
+        return job;
+    }
+}
@@ -0,0 +1,148 @@
+package com.comact.iep.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.AccessTokenResponse;
+
+/**
+ * Check the reuse, the single flight renewal and the early refresh of the access tokens, with stubbed grants.
+ */
+public class AccessTokenCacheTest {
+    private final AccessTokenCache cache = new AccessTokenCache();
+    private final AtomicInteger passwordGrants = new AtomicInteger();
+    private final AtomicInteger refreshGrants = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReuse() {
+        assertEquals("access-1", cache.get("admin", passwordGrant(300), refreshGrant(300)));
+        assertEquals("access-1", cache.get("admin", passwordGrant(300), refreshGrant(300)));
+
+        assertEquals(1, passwordGrants.get());
+        assertEquals(0, refreshGrants.get());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Supplier<AccessTokenResponse> slowGrant = () -> {
+            started.countDown();
+            await(release);
+            return passwordGrant(300).get();
+        };
+
+        List<CompletableFuture<String>> callers = new ArrayList<>();
+        callers.add(CompletableFuture.supplyAsync(() -> cache.get("admin", slowGrant, refreshGrant(300)), executor));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (var i = 0; i < 7; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> cache.get("admin", slowGrant, refreshGrant(300)), executor));
+        }
+        // the other callers are waiting for the renewal in progress
+        Thread.sleep(100);
+        release.countDown();
+
+        for (var caller : callers) {
+            assertEquals("access-1", caller.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, passwordGrants.get());
+    }
+
+    @Test
+    public void testEarlyRefresh() throws InterruptedException {
+        // a token of 2 seconds is renewed after 1 second
+        cache.get("admin", passwordGrant(2), refreshGrant(2));
+        Thread.sleep(1_100);
+
+        assertEquals("refreshed-1", cache.get("admin", passwordGrant(2), refreshGrant(2)));
+        assertEquals(1, passwordGrants.get());
+        assertEquals(1, refreshGrants.get());
+    }
+
+    @Test
+    public void testRefreshRefused() throws InterruptedException {
+        cache.get("admin", passwordGrant(2), refreshGrant(2));
+        Thread.sleep(1_100);
+
+        // a refused refresh token falls back to a new password grant
+        assertEquals("access-2", cache.get("admin", passwordGrant(2), refreshToken -> {
+            throw new IllegalStateException("refresh token revoked");
+        }));
+        assertEquals(2, passwordGrants.get());
+    }
+
+    @Test
+    public void testFailedRenewal() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Supplier<AccessTokenResponse> failingGrant = () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("Keycloak unavailable");
+        };
+
+        var owner = CompletableFuture.supplyAsync(() -> cache.get("admin", failingGrant, refreshGrant(300)), executor);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var waiter = CompletableFuture.supplyAsync(() -> cache.get("admin", failingGrant, refreshGrant(300)), executor);
+        Thread.sleep(100);
+        release.countDown();
+
+        // the failure is given to the callers waiting for it, it is not cached
+        assertThrows(Exception.class, () -> owner.get(5, TimeUnit.SECONDS));
+        assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertEquals("access-1", cache.get("admin", passwordGrant(300), refreshGrant(300)));
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.get("admin", passwordGrant(300), refreshGrant(300));
+        cache.invalidate("admin");
+
+        assertEquals("access-2", cache.get("admin", passwordGrant(300), refreshGrant(300)));
+    }
+
+    private Supplier<AccessTokenResponse> passwordGrant(long expiresIn) {
+        return () -> response("access-" + passwordGrants.incrementAndGet(), expiresIn);
+    }
+
+    private Function<String, AccessTokenResponse> refreshGrant(long expiresIn) {
+        return refreshToken -> response("refreshed-" + refreshGrants.incrementAndGet(), expiresIn);
+    }
+
+    private static AccessTokenResponse response(String token, long expiresIn) {
+        var response = new AccessTokenResponse();
+        response.setToken(token);
+        response.setRefreshToken("refresh-" + token);
+        response.setExpiresIn(expiresIn);
+        response.setRefreshExpiresIn(60);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.comact.iep.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import com.comact.iep.keycloak.RealmSections.Section;
+
+/**
+ * Check the split and the order of a chunked import, the chunks are imported on the calling thread.
+ */
+public class ChunkedRealmImportTest {
+
+    @Test
+    public void testChunks() {
+        var chunks = ChunkedRealmImport.chunks(partialImport(5), Section.USERS, 2);
+
+        assertEquals(3, chunks.size());
+        assertEquals(1, chunks.get(2).getUsers().size());
+        assertEquals("SKIP", chunks.get(2).getIfResourceExists());
+        assertTrue(ChunkedRealmImport.chunks(partialImport(5), Section.GROUPS, 2).isEmpty());
+    }
+
+    @Test
+    public void testDependencyOrder() {
+        List<String> imported = new ArrayList<>();
+        new ChunkedRealmImport(2, Runnable::run, (name, chunk) -> imported.add(name)).run("test", partialImport(3));
+
+        assertEquals(List.of("CLIENTS 1/1", "USERS 1/2", "USERS 2/2"), imported);
+    }
+
+    @Test
+    public void testFailedChunkStopsNextSections() {
+        List<String> imported = new ArrayList<>();
+        var chunkedImport = new ChunkedRealmImport(2, Runnable::run, (name, chunk) -> {
+            if (name.startsWith("CLIENTS")) {
+                throw new IllegalStateException("boom");
+            }
+            imported.add(name);
+        });
+
+        var e = assertThrows(IllegalStateException.class, () -> chunkedImport.run("test", partialImport(3)));
+        assertTrue(e.getMessage().contains("CLIENTS 1/1 : boom"));
+        assertTrue(imported.isEmpty());
+    }
+
+    private static PartialImportRepresentation partialImport(int users) {
+        var client = new ClientRepresentation();
+        client.setClientId("web");
+
+        var partialImport = new PartialImportRepresentation();
+        partialImport.setIfResourceExists("SKIP");
+        partialImport.setClients(List.of(client));
+        partialImport.setUsers(IntStream.range(0, users).mapToObj(i -> {
+            var user = new UserRepresentation();
+            user.setUsername("user" + i);
+            return user;
+        }).collect(Collectors.toList()));
+        return partialImport;
+    }
+}
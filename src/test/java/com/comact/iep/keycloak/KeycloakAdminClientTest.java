@@ -0,0 +1,42 @@
+package com.comact.iep.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check the requests built by the admin client, no Keycloak needed.
+ */
+public class KeycloakAdminClientTest {
+
+    @Test
+    public void testMergeAttributesKeepsOtherAttributes() {
+        var current = Map.of(
+                "displayName", "Comact",
+                "bruteForceProtected", "true",
+                "comact.import.hash.clients", "old");
+
+        var merged = KeycloakAdminClient.mergeAttributes(current, Map.of(
+                "comact.import.hash.clients", "new",
+                "comact.import.hash.users", "users"));
+
+        assertEquals(Map.of(
+                "displayName", "Comact",
+                "bruteForceProtected", "true",
+                "comact.import.hash.clients", "new",
+                "comact.import.hash.users", "users"), merged);
+    }
+
+    @Test
+    public void testMergeAttributesWithoutCurrentAttributes() {
+        assertEquals(Map.of("comact.import.hash.users", "users"),
+                KeycloakAdminClient.mergeAttributes(null, Map.of("comact.import.hash.users", "users")));
+    }
+
+    @Test
+    public void testServerUrl() {
+        assertEquals("http://keycloak/auth", KeycloakAdminClient.serverUrl("http://keycloak/auth/realms/comact"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.comact.iep.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * Check the realm file prepared at build time against the realm file.
+ */
+public class RealmFilePreprocessorTest {
+
+    @Test
+    public void testPrepare(@TempDir Path directory) throws Exception {
+        var realmFile = directory.resolve("comact-realm.json");
+        try (InputStream input = getClass().getResourceAsStream("/keycloak/comact-realm.json")) {
+            Files.copy(input, realmFile);
+        }
+
+        RealmFilePreprocessor.prepare(realmFile);
+
+        var prepared = JsonSerialization.readValue(Files.newInputStream(directory.resolve("comact-realm.prepared.json")), PartialImportRepresentation.class);
+        var hashes = Files.readString(directory.resolve("comact-realm.hashes"));
+        var expected = RealmSections.hashes(RealmFileParser.loadFile("/keycloak/comact-realm.json", "SKIP", false));
+
+        assertEquals(expected, RealmSections.hashes(prepared));
+        expected.forEach((section, hash) -> assertTrue(hashes.contains(section + "=" + hash)));
+        assertTrue(Files.size(directory.resolve("comact-realm.prepared.json")) < Files.size(realmFile));
+    }
+
+    @Test
+    public void testDuplicatedUser(@TempDir Path directory) throws Exception {
+        var realmFile = directory.resolve("realm.json");
+        Files.writeString(realmFile, "{\"realm\":\"test\",\"users\":[{\"username\":\"john\"},{\"username\":\"john\"}]}");
+
+        var e = assertThrows(IllegalStateException.class, () -> RealmFilePreprocessor.prepare(realmFile));
+        assertTrue(e.getMessage().contains("duplicated user [john]"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.comact.iep.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.RealmRepresentation;
+
+import com.comact.iep.keycloak.RealmInitializerClass.Status;
+import io.opentracing.noop.NoopTracerFactory;
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Check the phases of a realm initialization are timed and reported, with a stubbed admin client.
+ */
+public class RealmInitializerClassTest {
+    private static final String REALM_FILE = "/realm-init/test-realm.json";
+
+    private final KeycloakAdminClient client = mock(KeycloakAdminClient.class);
+    private RealmInitializerClass initializer;
+
+    @BeforeEach
+    public void init() {
+        // the token takes some time, its phase is not measured as 0 ms
+        when(client.getAccessToken()).thenReturn(Uni.createFrom().item("token").onItem().delayIt().by(Duration.ofMillis(50)));
+        when(client.createRealm(any())).thenReturn(Uni.createFrom().voidItem());
+        when(client.partialImport(anyString(), any())).thenReturn(Uni.createFrom().voidItem());
+        when(client.updateRealmAttributes(anyString(), any())).thenReturn(Uni.createFrom().voidItem());
+
+        initializer = new RealmInitializerClass();
+        initializer.realm = "test";
+        initializer.realmFilename = REALM_FILE;
+        initializer.realms = Optional.empty();
+        initializer.realmParallelism = 1;
+        initializer.incremental = true;
+        initializer.streaming = true;
+        initializer.chunkSize = 500;
+        initializer.parallelism = 1;
+        initializer.maxRetries = 1;
+        initializer.retryDelay = Duration.ofMillis(10);
+        // no second attempt while the test runs
+        initializer.retryMaxDelay = Duration.ofMinutes(10);
+        initializer.callTimeout = Duration.ofSeconds(5);
+        initializer.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        initializer.client = client;
+        initializer.tracer = NoopTracerFactory.create();
+    }
+
+    @AfterEach
+    public void close() {
+        initializer.close();
+        MetricRegistries.dropAll();
+    }
+
+    @Test
+    public void testNewRealm() throws InterruptedException {
+        when(client.getRealm("test")).thenReturn(Uni.createFrom().nullItem());
+
+        var initialization = initialize();
+
+        assertEquals(Status.DONE, initialization.getStatus());
+        var phases = initialization.getPhases();
+        assertEquals(List.of("token", "get-realm", "create-realm", "load-file", "hash", "import", "store-hashes"), List.copyOf(phases.keySet()));
+        assertTrue(phases.get("token") >= 50, "token phase " + phases.get("token"));
+        assertTrue(initialization.getDuration() >= phases.values().stream().mapToLong(Long::longValue).sum());
+        phases.keySet().forEach(phase -> assertEquals(1, timerCount(phase)));
+    }
+
+    @Test
+    public void testUpToDate() throws Exception {
+        var existing = new RealmRepresentation();
+        existing.setRealm("test");
+        existing.setAttributes(RealmSections.attributes(RealmSections.hashes(RealmFileParser.loadFile(REALM_FILE, "SKIP", true))));
+        when(client.getRealm("test")).thenReturn(Uni.createFrom().item(existing));
+
+        var initialization = initialize();
+
+        // nothing is imported, only the phases that ran are reported
+        assertEquals(Status.DONE, initialization.getStatus());
+        assertEquals(List.of("token", "get-realm", "load-file", "hash"), List.copyOf(initialization.getPhases().keySet()));
+        assertEquals(0, timerCount("import"));
+        verify(client, never()).partialImport(anyString(), any());
+    }
+
+    @Test
+    public void testFailedImport() throws InterruptedException {
+        when(client.getRealm("test")).thenReturn(Uni.createFrom().item(new RealmRepresentation()));
+        when(client.partialImport(anyString(), any())).thenReturn(Uni.createFrom().failure(new IllegalStateException("Keycloak unavailable")));
+
+        var initialization = initialize();
+
+        // the failed phase is timed too, the hashes are not stored
+        assertEquals(Status.FAILED, initialization.getStatus());
+        assertNotNull(initialization.getError());
+        assertEquals(List.of("token", "get-realm", "load-file", "hash", "import"), List.copyOf(initialization.getPhases().keySet()));
+        assertEquals(1, timerCount("import"));
+        verify(client, never()).updateRealmAttributes(anyString(), any());
+
+        var summary = initialization.summary();
+        assertTrue(summary.startsWith("test FAILED in " + initialization.getDuration() + " ms (token "), summary);
+        assertTrue(summary.contains(", import "), summary);
+    }
+
+    private RealmInitialization initialize() throws InterruptedException {
+        initializer.init();
+        var initialization = initializer.getInitializations().iterator().next();
+
+        var deadline = System.currentTimeMillis() + 10_000;
+        while (initialization.getStatus() == Status.RUNNING) {
+            assertTrue(System.currentTimeMillis() < deadline, "the realm was not initialized");
+            Thread.sleep(20);
+        }
+        return initialization;
+    }
+
+    private static long timerCount(String phase) {
+        var timer = MetricRegistries.get(MetricRegistry.Type.APPLICATION).getTimers()
+                .get(new org.eclipse.microprofile.metrics.MetricID("keycloak.realm.init.phase", new Tag("realm", "test"), new Tag("phase", phase)));
+        return timer == null ? 0 : timer.getCount();
+    }
+}
@@ -0,0 +1,66 @@
+package com.comact.iep.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import com.comact.iep.keycloak.RealmSections.Section;
+
+/**
+ * Check the detection of the changed sections of a realm file, no Keycloak needed.
+ */
+public class RealmSectionsTest {
+
+    @Test
+    public void testUnchangedRealm() {
+        var hashes = RealmSections.hashes(partialImport("web"));
+        var realm = new RealmRepresentation();
+        realm.setAttributes(RealmSections.attributes(hashes));
+
+        assertTrue(RealmSections.changed(realm, RealmSections.hashes(partialImport("web"))).isEmpty());
+    }
+
+    @Test
+    public void testChangedSection() {
+        var realm = new RealmRepresentation();
+        realm.setAttributes(RealmSections.attributes(RealmSections.hashes(partialImport("web"))));
+
+        assertEquals(EnumSet.of(Section.CLIENTS), RealmSections.changed(realm, RealmSections.hashes(partialImport("mobile"))));
+    }
+
+    @Test
+    public void testNewRealm() {
+        assertEquals(EnumSet.allOf(Section.class), RealmSections.changed(null, RealmSections.hashes(partialImport("web"))));
+    }
+
+    @Test
+    public void testOnly() {
+        var partialImport = RealmSections.only(partialImport("web"), EnumSet.of(Section.USERS));
+
+        assertEquals("SKIP", partialImport.getIfResourceExists());
+        assertEquals(1, partialImport.getUsers().size());
+        assertNull(partialImport.getClients());
+    }
+
+    private static PartialImportRepresentation partialImport(String clientId) {
+        var client = new ClientRepresentation();
+        client.setClientId(clientId);
+        var user = new UserRepresentation();
+        user.setUsername("john");
+
+        var partialImport = new PartialImportRepresentation();
+        partialImport.setIfResourceExists("SKIP");
+        partialImport.setClients(List.of(client));
+        partialImport.setUsers(List.of(user));
+        return partialImport;
+    }
+}
@@ -0,0 +1,65 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check the events are forwarded to the listener, the ones counted before it was set included.
+ */
+public class EventCountTest {
+
+    @Test
+    public void testMissedEvents() {
+        var count = new EventCount();
+        var counter = new AtomicLong();
+
+        count.increment();
+        count.increment();
+        count.setListener(counter::addAndGet);
+        count.increment();
+
+        assertEquals(3, count.get());
+        assertEquals(3, counter.get());
+    }
+
+    @Test
+    public void testListenerRemoved() {
+        var count = new EventCount();
+        var counter = new AtomicLong();
+
+        count.setListener(counter::addAndGet);
+        count.increment();
+        count.setListener(null);
+        count.increment();
+
+        assertEquals(2, count.get());
+        assertEquals(1, counter.get());
+    }
+
+    @Test
+    public void testListenerSetConcurrently() throws InterruptedException {
+        var count = new EventCount();
+        var counter = new AtomicLong();
+        var threads = new Thread[4];
+        for (var i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (var j = 0; j < 100_000; j++) {
+                    count.increment();
+                }
+            });
+            threads[i].start();
+        }
+
+        count.setListener(counter::addAndGet);
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        // no event is lost between the check of the listener and its set
+        assertEquals(400_000, count.get());
+        assertEquals(400_000, counter.get());
+    }
+}
@@ -0,0 +1,26 @@
+package com.comact.iep.logging;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.smallrye.reactive.messaging.providers.connectors.InMemoryConnector;
+
+/**
+ * Replace the Kafka channels with in-memory channels, no broker is needed.
+ */
+public class InMemoryMessagingResource implements QuarkusTestResourceLifecycleManager {
+
+    @Override
+    public Map<String, String> start() {
+        Map<String, String> properties = new HashMap<>();
+        properties.putAll(InMemoryConnector.switchIncomingChannelsToInMemory("cleanupjob"));
+        properties.putAll(InMemoryConnector.switchOutgoingChannelsToInMemory("cleanupjob-completed", "logs"));
+        return properties;
+    }
+
+    @Override
+    public void stop() {
+        InMemoryConnector.clear();
+    }
+}
@@ -0,0 +1,86 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Check the JSON lines of the encoder.
+ */
+public class JsonEncoderTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testEncode() throws Exception {
+        var event = event("ConfigMap {} \"updated\"\n\tné 日本 😀", null);
+        event.setMDCPropertyMap(Map.of("traceId", "4bf92f3577b34da6", "spanId", "00f067aa0ba902b7", "user", "comact"));
+        event.setTimeStamp(1792402325123L);
+
+        var bytes = encoder().encode(event);
+        var json = mapper.readTree(bytes);
+
+        assertEquals('\n', bytes[bytes.length - 1]);
+        assertEquals("2026-10-19T09:32:05.123Z", json.get("@timestamp").asText());
+        assertEquals("INFO", json.get("level").asText());
+        assertEquals("com.comact.test", json.get("logger").asText());
+        assertEquals("ConfigMap settings \"updated\"\n\tné 日本 😀", json.get("message").asText());
+        assertEquals("4bf92f3577b34da6", json.get("traceId").asText());
+        assertEquals("00f067aa0ba902b7", json.get("spanId").asText());
+        assertEquals(1, json.get("mdc").size());
+        assertEquals("comact", json.get("mdc").get("user").asText());
+        assertFalse(json.has("stack_trace"));
+    }
+
+    @Test
+    public void testException() throws Exception {
+        var cause = new IllegalArgumentException("bad \"value\"");
+        var event = event("failed", new IllegalStateException("unable", cause));
+        event.setMDCPropertyMap(Map.of());
+
+        var json = mapper.readTree(encoder().encode(event));
+
+        var stackTrace = json.get("stack_trace").asText();
+        assertTrue(stackTrace.startsWith("java.lang.IllegalStateException: unable\n\tat com.comact.iep.logging.JsonEncoderTest.testException(JsonEncoderTest.java:"));
+        assertTrue(stackTrace.contains("Caused by: java.lang.IllegalArgumentException: bad \"value\"\n"));
+        assertTrue(stackTrace.contains(" more\n"));
+        assertFalse(json.has("mdc"));
+    }
+
+    @Test
+    public void testReusedBuffer() throws Exception {
+        var encoder = encoder();
+        var event = event("x".repeat(100_000), null);
+        event.setMDCPropertyMap(Map.of());
+        encoder.encode(event);
+
+        var small = event("small", null);
+        small.setMDCPropertyMap(Map.of());
+        var json = new String(encoder.encode(small), StandardCharsets.UTF_8);
+
+        assertTrue(json.contains("\"message\":\"small\""));
+        assertEquals(1, json.lines().count());
+    }
+
+    private static JsonEncoder encoder() {
+        var encoder = new JsonEncoder();
+        encoder.setContext(new LoggerContext());
+        encoder.start();
+        return encoder;
+    }
+
+    private static LoggingEvent event(String message, Throwable throwable) {
+        var logger = new LoggerContext().getLogger("com.comact.test");
+        return new LoggingEvent(JsonEncoderTest.class.getName(), logger, Level.INFO, message, throwable, new Object[]{"settings"});
+    }
+}
@@ -0,0 +1,175 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Check the batches of the Kafka appender, their spill while the sender fails and the stop of its worker.
+ */
+public class KafkaLogAppenderTest {
+    private final LoggerContext context = new LoggerContext();
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+    private KafkaLogAppender appender;
+
+    @TempDir
+    Path spillDirectory;
+
+    @AfterEach
+    public void stop() {
+        appender.stop();
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        appender = appender(200);
+        appender.setSender(this::received);
+
+        for (var i = 0; i < 10; i++) {
+            appender.doAppend(event("message " + i));
+        }
+
+        await(() -> String.join("", batches).contains("message 9"));
+        assertTrue(batches.size() > 1, "the batches are limited to maxBatchBytes");
+        var lines = String.join("", batches).lines().count();
+        assertEquals(10, lines);
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        appender = appender(64 * 1024);
+        appender.setSender(batch -> CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+
+        appender.doAppend(event("spilled"));
+        await(() -> appender.getSpilledBytes() > 0);
+
+        appender.setSender(this::received);
+        await(() -> appender.getSpilledBytes() == 0 && !batches.isEmpty());
+        assertTrue(batches.get(0).contains("spilled"));
+        try (var files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testSpilledUntilAcknowledged() throws Exception {
+        appender = appender(64 * 1024);
+        appender.setSender(batch -> CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        appender.doAppend(event("spilled"));
+        await(() -> appender.getSpilledBytes() > 0);
+
+        List<CompletableFuture<Void>> acknowledgements = new CopyOnWriteArrayList<>();
+        appender.setSender(batch -> {
+            var acknowledgement = new CompletableFuture<Void>();
+            acknowledgements.add(acknowledgement);
+            return acknowledgement;
+        });
+        await(() -> !acknowledgements.isEmpty());
+
+        // sent but not acknowledged, the batch is still on disk
+        assertEquals(1, spillFiles());
+        assertTrue(appender.getSpilledBytes() > 0);
+
+        acknowledgements.get(0).complete(null);
+        await(() -> appender.getSpilledBytes() == 0);
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    public void testStopInterruptsWorker() throws Exception {
+        appender = appender(64 * 1024);
+        appender.setMaxFlushTime(100);
+        var sending = new CountDownLatch(1);
+        appender.setSender(batch -> {
+            sending.countDown();
+            // a sender blocking the worker
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.failedFuture(new IllegalStateException("interrupted"));
+        });
+        appender.doAppend(event("blocked"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        var start = System.nanoTime();
+        appender.stop();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "the worker is interrupted");
+        // the batch of the interrupted send is kept
+        await(() -> appender.getSpilledBytes() > 0);
+    }
+
+    @Test
+    public void testSpillLimit() throws Exception {
+        appender = appender(64 * 1024);
+        appender.setMaxSpillBytes(600);
+        appender.setLingerMs(0);
+
+        for (var i = 0; i < 10; i++) {
+            appender.doAppend(event("spilled " + i));
+        }
+
+        await(() -> appender.getDroppedBatches() > 0);
+        assertTrue(appender.getSpilledBytes() <= 600);
+    }
+
+    private KafkaLogAppender appender(int maxBatchBytes) {
+        var encoder = new JsonEncoder();
+        encoder.setContext(context);
+        encoder.start();
+
+        var kafkaAppender = new KafkaLogAppender();
+        kafkaAppender.setContext(context);
+        kafkaAppender.setName("KAFKA");
+        kafkaAppender.setEncoder(encoder);
+        kafkaAppender.setMaxBatchBytes(maxBatchBytes);
+        kafkaAppender.setLingerMs(50);
+        kafkaAppender.setRetryIntervalMs(100);
+        kafkaAppender.setSpillDirectory(spillDirectory.toString());
+        kafkaAppender.start();
+        return kafkaAppender;
+    }
+
+    private long spillFiles() throws IOException {
+        try (var files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    private CompletableFuture<Void> received(byte[] batch) {
+        batches.add(new String(batch, StandardCharsets.UTF_8));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private LoggingEvent event(String message) {
+        return new LoggingEvent(KafkaLogAppenderTest.class.getName(), context.getLogger("com.comact.test"), Level.INFO, message, null, null);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
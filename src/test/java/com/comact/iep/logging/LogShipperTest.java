@@ -0,0 +1,42 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.enterprise.inject.Any;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.providers.connectors.InMemoryConnector;
+
+/**
+ * Check the events logged by the application are shipped to the logs channel.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryMessagingResource.class, restrictToAnnotatedClass = true)
+public class LogShipperTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogShipperTest.class);
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Test
+    public void testShipped() throws InterruptedException {
+        var marker = UUID.randomUUID().toString();
+        LOGGER.info("shipped {}", marker);
+
+        var logs = connector.sink("logs");
+        var deadline = System.currentTimeMillis() + 10_000;
+        while (logs.received().stream().noneMatch(message -> new String((byte[]) message.getPayload(), StandardCharsets.UTF_8).contains(marker))) {
+            assertTrue(System.currentTimeMillis() < deadline, "the event was not shipped");
+            Thread.sleep(50);
+        }
+    }
+}
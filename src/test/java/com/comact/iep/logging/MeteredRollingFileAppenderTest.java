@@ -0,0 +1,126 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.rolling.DefaultTimeBasedFileNamingAndTriggeringPolicy;
+import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
+
+/**
+ * Check the rotated files are compressed and the old ones removed, with a simulated clock of one day per rollover.
+ */
+public class MeteredRollingFileAppenderTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2026, 1, 1);
+
+    private final LoggerContext context = new LoggerContext();
+    private final List<Long> rollovers = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testCompressedRotation(@TempDir Path directory) throws IOException {
+        var clock = new DefaultTimeBasedFileNamingAndTriggeringPolicy<ILoggingEvent>();
+        var appender = appender(directory, clock, 30);
+
+        for (var day = 0; day < 3; day++) {
+            clock.setCurrentTime(millis(day));
+            appender.doAppend(event("day " + day));
+        }
+        appender.stop();
+
+        // each day was rotated on the first event of the next day, the current file holds the last one
+        assertEquals(2, rollovers.size());
+        assertTrue(rollovers.stream().allMatch(duration -> duration > 0));
+        assertEquals(List.of("app.2026-01-01.log.gz", "app.2026-01-02.log.gz", "app.log"), files(directory));
+        assertEquals("day 0\n", gunzip(directory.resolve("app.2026-01-01.log.gz")));
+        assertEquals("day 1\n", gunzip(directory.resolve("app.2026-01-02.log.gz")));
+        assertEquals("day 2\n", Files.readString(directory.resolve("app.log")));
+        assertFalse(MeteredRollingFileAppender.instances().contains(appender));
+    }
+
+    @Test
+    public void testRetention(@TempDir Path directory) throws IOException {
+        var clock = new DefaultTimeBasedFileNamingAndTriggeringPolicy<ILoggingEvent>();
+        var appender = appender(directory, clock, 2);
+
+        for (var day = 0; day < 6; day++) {
+            clock.setCurrentTime(millis(day));
+            appender.doAppend(event("day " + day));
+        }
+        appender.stop();
+
+        // only the files of the last maxHistory days are kept
+        assertEquals(5, rollovers.size());
+        assertEquals(List.of("app.2026-01-04.log.gz", "app.2026-01-05.log.gz", "app.log"), files(directory));
+    }
+
+    private MeteredRollingFileAppender<ILoggingEvent> appender(Path directory, DefaultTimeBasedFileNamingAndTriggeringPolicy<ILoggingEvent> clock,
+                                                              int maxHistory) {
+        clock.setCurrentTime(millis(0));
+
+        var encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+
+        var appender = new MeteredRollingFileAppender<ILoggingEvent>();
+        appender.setContext(context);
+        appender.setName("FILE");
+        appender.setFile(directory.resolve("app.log").toString());
+        appender.setEncoder(encoder);
+        appender.setRolloverListener(rollovers::add);
+
+        var policy = new TimeBasedRollingPolicy<ILoggingEvent>();
+        policy.setContext(context);
+        policy.setParent(appender);
+        policy.setFileNamePattern(directory.resolve("app.%d{yyyy-MM-dd}.log.gz").toString());
+        policy.setMaxHistory(maxHistory);
+        policy.setTimeBasedFileNamingAndTriggeringPolicy(clock);
+        policy.start();
+
+        appender.setRollingPolicy(policy);
+        appender.start();
+        assertTrue(MeteredRollingFileAppender.instances().contains(appender));
+        return appender;
+    }
+
+    private LoggingEvent event(String message) {
+        return new LoggingEvent(MeteredRollingFileAppenderTest.class.getName(), context.getLogger("com.comact.test"), Level.INFO, message, null, null);
+    }
+
+    private static long millis(int day) {
+        return FIRST_DAY.atStartOfDay(ZoneId.systemDefault()).plus(Duration.ofDays(day).plusHours(12)).toInstant().toEpochMilli();
+    }
+
+    private static List<String> files(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String gunzip(Path file) throws IOException {
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Check the DEBUG events kept for the marked requests.
+ */
+public class RequestDebugFilterTest {
+    private final LoggerContext context = new LoggerContext();
+    private final RequestDebugFilter filter = new RequestDebugFilter();
+
+    @AfterEach
+    public void reset() {
+        RequestDebugFilter.setRaisedCategories(Map.of());
+    }
+
+    @Test
+    public void testNotRaised() {
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.comact.iep.Test", Level.DEBUG, false)));
+    }
+
+    @Test
+    public void testRaised() {
+        RequestDebugFilter.setRaisedCategories(Map.of("com.comact", Level.INFO));
+
+        assertEquals(FilterReply.DENY, filter.decide(event("com.comact.iep.Test", Level.DEBUG, false)));
+        assertEquals(FilterReply.DENY, filter.decide(event("com.comact", Level.DEBUG, false)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.comact.iep.Test", Level.DEBUG, true)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.comact.iep.Test", Level.INFO, false)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.comactx.Test", Level.DEBUG, false)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("io.quarkus.Test", Level.DEBUG, false)));
+    }
+
+    @Test
+    public void testRaisedFromWarn() {
+        RequestDebugFilter.setRaisedCategories(Map.of("com.comact", Level.WARN));
+
+        // INFO events are not dropped, the request filter only applies to DEBUG and TRACE
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.comact.iep.Test", Level.INFO, false)));
+        assertEquals(FilterReply.DENY, filter.decide(event("com.comact.iep.Test", Level.TRACE, false)));
+    }
+
+    @Test
+    public void testRaisedRoot() {
+        RequestDebugFilter.setRaisedCategories(Map.of("", Level.INFO));
+
+        assertEquals(FilterReply.DENY, filter.decide(event("io.quarkus.Test", Level.DEBUG, false)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("io.quarkus.Test", Level.DEBUG, true)));
+    }
+
+    @Test
+    public void testRaisedSeveral() {
+        RequestDebugFilter.setRaisedCategories(Map.of("com.comact.iep", Level.INFO, "io.fabric8", Level.WARN));
+
+        assertEquals(FilterReply.DENY, filter.decide(event("com.comact.iep.Test", Level.DEBUG, false)));
+        assertEquals(FilterReply.DENY, filter.decide(event("io.fabric8.kubernetes.Test", Level.DEBUG, false)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.comact.other.Test", Level.DEBUG, false)));
+    }
+
+    @Test
+    public void testNoMdc() {
+        RequestDebugFilter.setRaisedCategories(Map.of("com.comact", Level.INFO));
+        var event = new LoggingEvent(RequestDebugFilterTest.class.getName(), context.getLogger("com.comact.iep.Test"), Level.DEBUG, "message", null, null);
+
+        assertEquals(FilterReply.DENY, filter.decide(event));
+    }
+
+    private LoggingEvent event(String logger, Level level, boolean marked) {
+        var event = new LoggingEvent(RequestDebugFilterTest.class.getName(), context.getLogger(logger), level, "message", null, null);
+        event.setMDCPropertyMap(marked ? Map.of(RequestDebugFilter.MDC_KEY, "header") : Map.of());
+        return event;
+    }
+}
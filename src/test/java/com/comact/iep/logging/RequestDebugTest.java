@@ -0,0 +1,128 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import io.smallrye.metrics.MetricRegistries;
+
+/**
+ * Check the categories are raised while a marked request is in flight, and get their own level back after.
+ */
+public class RequestDebugTest {
+    private static final String CATEGORY = "com.comact.iep.request.debug";
+
+    private final LoggerContext context = new LoggerContext();
+    private final RequestDebugFilter filter = new RequestDebugFilter();
+    // kept referenced, the JUL loggers are weakly referenced by their manager
+    private final Logger parent = Logger.getLogger("com.comact.iep.request");
+    private final Logger logger = Logger.getLogger(CATEGORY);
+    private RequestDebug requestDebug;
+
+    @BeforeEach
+    public void init() {
+        parent.setLevel(org.jboss.logmanager.Level.WARN);
+        logger.setLevel(org.jboss.logmanager.Level.INFO);
+
+        requestDebug = new RequestDebug();
+        requestDebug.headerEnabled = true;
+        requestDebug.namespaces = Optional.empty();
+        requestDebug.users = Optional.empty();
+        requestDebug.maxSamplePercent = 5;
+        requestDebug.categories = List.of(CATEGORY);
+        requestDebug.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        requestDebug.init();
+    }
+
+    @AfterEach
+    public void close() {
+        requestDebug.close();
+        parent.setLevel(null);
+        logger.setLevel(null);
+        MetricRegistries.dropAll();
+    }
+
+    @Test
+    public void testRaisedWhileInFlight() {
+        requestDebug.begin();
+        requestDebug.begin();
+        assertEquals(org.jboss.logmanager.Level.DEBUG, logger.getLevel());
+        assertEquals(FilterReply.DENY, filter.decide(event(false)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(true)));
+
+        // raised until the last marked request ends
+        requestDebug.end();
+        assertEquals(org.jboss.logmanager.Level.DEBUG, logger.getLevel());
+
+        requestDebug.end();
+        assertEquals(org.jboss.logmanager.Level.INFO, logger.getLevel());
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(false)));
+    }
+
+    @Test
+    public void testInheritedLevelRestored() {
+        logger.setLevel(null);
+
+        requestDebug.begin();
+        assertEquals(org.jboss.logmanager.Level.DEBUG, logger.getLevel());
+        requestDebug.end();
+
+        // the category inherits the level of its parent again
+        assertNull(logger.getLevel());
+        assertEquals(org.jboss.logmanager.Level.WARN, parent.getLevel());
+    }
+
+    @Test
+    public void testAlreadyDebug() {
+        logger.setLevel(org.jboss.logmanager.Level.DEBUG);
+
+        // the category already logs every request at DEBUG, nothing is dropped
+        requestDebug.begin();
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(false)));
+        requestDebug.end();
+        assertEquals(org.jboss.logmanager.Level.DEBUG, logger.getLevel());
+    }
+
+    @Test
+    public void testUnbalancedEnd() {
+        requestDebug.end();
+        requestDebug.begin();
+
+        assertEquals(org.jboss.logmanager.Level.DEBUG, logger.getLevel());
+        requestDebug.end();
+        assertEquals(org.jboss.logmanager.Level.INFO, logger.getLevel());
+    }
+
+    @Test
+    public void testSettingsChangedInFlight() {
+        requestDebug.begin();
+
+        var settings = requestDebug.getSettings();
+        settings.setHeaderEnabled(false);
+        requestDebug.setSettings(settings);
+
+        // no rule is active anymore, the category is restored before the request ends
+        assertEquals(org.jboss.logmanager.Level.INFO, logger.getLevel());
+        requestDebug.end();
+        assertEquals(org.jboss.logmanager.Level.INFO, logger.getLevel());
+    }
+
+    private LoggingEvent event(boolean marked) {
+        var event = new LoggingEvent(RequestDebugTest.class.getName(), context.getLogger(CATEGORY), Level.DEBUG, "message", null, null);
+        event.setMDCPropertyMap(marked ? Map.of(RequestDebugFilter.MDC_KEY, "header") : Map.of());
+        return event;
+    }
+}
@@ -0,0 +1,135 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+/**
+ * Check the async appender writes its events, and stops its appenders only once its worker has ended.
+ */
+public class RingBufferAsyncAppenderTest {
+    private final LoggerContext context = new LoggerContext();
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testStop() {
+        var appender = appender(0);
+
+        for (var i = 0; i < 10; i++) {
+            appender.doAppend(event("message " + i));
+        }
+        appender.stop();
+
+        assertEquals(10, written.size());
+    }
+
+    @Test
+    public void testStopSlowAppender() {
+        var slow = new SlowAppender(200);
+        var appender = appender(slow, 50);
+
+        for (var i = 0; i < 10; i++) {
+            appender.doAppend(event("message " + i));
+        }
+        appender.stop();
+
+        // the worker was interrupted, then the attached appender was stopped
+        assertTrue(written.size() < 10);
+        assertFalse(slow.isStarted());
+    }
+
+    @Test
+    public void testIdleWorkerUnparked() throws InterruptedException {
+        var appender = appender(0);
+        // the worker is parked for up to 100 ms once the buffer is empty
+        Thread.sleep(50);
+
+        appender.doAppend(event("message"));
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        while (written.isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        // the event filling the empty buffer unparked the worker
+        assertEquals(1, written.size());
+        appender.stop();
+    }
+
+    @Test
+    public void testBlockedUntilFreeSlot() {
+        var attached = new SlowAppender(1);
+        attached.setContext(context);
+        attached.start();
+        var appender = new RingBufferAsyncAppender();
+        appender.setContext(context);
+        appender.setName("ASYNC");
+        appender.setBufferSize(4);
+        appender.setBatchSize(1);
+        appender.setOverflowPolicy(RingBufferAsyncAppender.OverflowPolicy.BLOCK);
+        appender.addAppender(attached);
+        appender.start();
+
+        // the logging thread waits for each free slot, no event is dropped
+        for (var i = 0; i < 50; i++) {
+            appender.doAppend(event("message " + i));
+        }
+        appender.stop();
+
+        assertEquals(50, written.size());
+        assertEquals(0, appender.getDropped());
+    }
+
+    private RingBufferAsyncAppender appender(long writeMillis) {
+        return appender(new SlowAppender(writeMillis), 1000);
+    }
+
+    private RingBufferAsyncAppender appender(SlowAppender attached, int maxFlushTime) {
+        attached.setContext(context);
+        attached.start();
+
+        var appender = new RingBufferAsyncAppender();
+        appender.setContext(context);
+        appender.setName("ASYNC");
+        appender.setMaxFlushTime(maxFlushTime);
+        appender.addAppender(attached);
+        appender.start();
+        return appender;
+    }
+
+    private LoggingEvent event(String message) {
+        return new LoggingEvent(RingBufferAsyncAppenderTest.class.getName(), context.getLogger("com.comact.test"), Level.INFO, message, null, null);
+    }
+
+    private class SlowAppender extends AppenderBase<ILoggingEvent> {
+        private final long writeMillis;
+
+        SlowAppender(long writeMillis) {
+            this.writeMillis = writeMillis;
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            if (writeMillis > 0) {
+                try {
+                    Thread.sleep(writeMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            written.add(event.getFormattedMessage());
+        }
+    }
+}
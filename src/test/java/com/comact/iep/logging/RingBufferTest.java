@@ -0,0 +1,90 @@
+package com.comact.iep.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check the ring buffer with one and several producers.
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testFull() {
+        var buffer = new RingBuffer<Integer>(3);
+
+        assertEquals(4, buffer.capacity());
+        for (var i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void testOrder() {
+        var buffer = new RingBuffer<Integer>(4);
+        List<Integer> polled = new ArrayList<>();
+
+        for (var lap = 0; lap < 3; lap++) {
+            buffer.offer(lap * 2);
+            buffer.offer(lap * 2 + 1);
+            buffer.drain(polled::add, 10);
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), polled);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        var buffer = new RingBuffer<Integer>(64);
+        var producers = 4;
+        var perProducer = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        var start = new CountDownLatch(1);
+
+        for (var producer = 0; producer < producers; producer++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (var i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        long sum = 0;
+        var count = 0;
+        while (count < producers * perProducer) {
+            var element = buffer.poll();
+            if (element != null) {
+                sum += element;
+                count++;
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals((long) producers * perProducer * (perProducer - 1) / 2, sum);
+        assertNull(buffer.poll());
+    }
+}
@@ -0,0 +1,139 @@
+package com.comact.iep.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.oidc.AccessTokenCredential;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.runtime.QuarkusPrincipal;
+import io.quarkus.security.runtime.QuarkusSecurityIdentity;
+import io.smallrye.metrics.MetricRegistries;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Check the hits, the misses, the expiration and the eviction of the security identity cache.
+ */
+public class SecurityIdentityCacheTest {
+    private SecurityIdentityCache cache;
+
+    @BeforeEach
+    public void init() {
+        cache = new SecurityIdentityCache();
+        cache.enabled = true;
+        cache.maxSize = 10;
+        cache.maxTtl = Duration.ofMinutes(5);
+        cache.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        cache.init();
+    }
+
+    @AfterEach
+    public void close() {
+        MetricRegistries.dropAll();
+    }
+
+    @Test
+    public void testHit() {
+        cache.put("token-1", identity("comact", "token-1"), inMinutes(1));
+
+        var first = cache.get("token-1", null);
+        var second = cache.get("token-1", null);
+
+        assertEquals("comact", first.getPrincipal().getName());
+        assertEquals(Set.of("serviceAccount"), first.getRoles());
+        assertEquals("tenant", first.getAttribute("tenant-id"));
+        // a new identity by request, without the request of the first authentication
+        assertNotSame(first, second);
+        assertNull(first.getAttribute(RoutingContext.class.getName()));
+        assertEquals("token-1", first.getCredential(AccessTokenCredential.class).getToken());
+        assertEquals(2, counter("security.identity-cache.hits"));
+    }
+
+    @Test
+    public void testMiss() {
+        cache.put("token-1", identity("comact", "token-1"), inMinutes(1));
+
+        assertNull(cache.get("token-2", null));
+        assertEquals(1, counter("security.identity-cache.misses"));
+    }
+
+    @Test
+    public void testExpired() throws InterruptedException {
+        cache.put("token-1", identity("comact", "token-1"), System.currentTimeMillis() + 20);
+        Thread.sleep(50);
+
+        assertNull(cache.get("token-1", null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaxTtl() {
+        cache.maxTtl = Duration.ZERO;
+        cache.put("token-1", identity("comact", "token-1"), inMinutes(1));
+
+        assertNull(cache.get("token-1", null));
+    }
+
+    @Test
+    public void testClear() {
+        cache.put("token-1", identity("comact", "token-1"), inMinutes(1));
+
+        // a revoked token is authenticated again
+        cache.clear();
+
+        assertNull(cache.get("token-1", null));
+    }
+
+    @Test
+    public void testEvictExpiringFirst() {
+        for (var i = 0; i < 10; i++) {
+            cache.put("token-" + i, identity("user-" + i, "token-" + i), inMinutes(10 - i));
+        }
+
+        cache.put("token-10", identity("user-10", "token-10"), inMinutes(20));
+
+        // the token expiring first made room for the new one
+        assertEquals(10, cache.size());
+        assertNull(cache.get("token-9", null));
+        assertNotNull(cache.get("token-8", null));
+        assertNotNull(cache.get("token-10", null));
+        assertEquals(1, cache.metricRegistry.counter("security.identity-cache.evictions", new Tag("reason", "size")).getCount());
+    }
+
+    @Test
+    public void testBearerToken() {
+        assertEquals("abc", CachedBearerAuthenticationMechanism.bearerToken("Bearer abc"));
+        assertEquals("abc", CachedBearerAuthenticationMechanism.bearerToken("bearer abc"));
+        assertNull(CachedBearerAuthenticationMechanism.bearerToken("Basic abc"));
+        assertNull(CachedBearerAuthenticationMechanism.bearerToken("Bearer "));
+        assertNull(CachedBearerAuthenticationMechanism.bearerToken(null));
+    }
+
+    private long counter(String name) {
+        return cache.metricRegistry.counter(name).getCount();
+    }
+
+    private static SecurityIdentity identity(String name, String token) {
+        return QuarkusSecurityIdentity.builder()
+                .setPrincipal(new QuarkusPrincipal(name))
+                .addRole("serviceAccount")
+                .addAttribute("tenant-id", "tenant")
+                .addAttribute(RoutingContext.class.getName(), new Object())
+                .addCredential(new AccessTokenCredential(token))
+                .build();
+    }
+
+    private static long inMinutes(int minutes) {
+        return System.currentTimeMillis() + Duration.ofMinutes(minutes).toMillis();
+    }
+}
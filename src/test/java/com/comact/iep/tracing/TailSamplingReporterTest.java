@@ -0,0 +1,133 @@
+package com.comact.iep.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.comact.iep.tracing.TailSamplingReporter.Decision;
+import io.jaegertracing.internal.JaegerTracer;
+import io.jaegertracing.internal.reporters.InMemoryReporter;
+import io.jaegertracing.internal.samplers.ConstSampler;
+import io.opentracing.tag.Tags;
+
+/**
+ * Check the traces exported once their root span ends.
+ */
+public class TailSamplingReporterTest {
+    // a start timestamp of 0 means now for Jaeger
+    private static final long START = 1;
+    private final InMemoryReporter exported = new InMemoryReporter();
+    private TailSamplingReporter reporter;
+    private JaegerTracer tracer;
+
+    @AfterEach
+    public void close() {
+        tracer.close();
+    }
+
+    @Test
+    public void testDropFast() {
+        init(0);
+
+        trace(1_000, false);
+
+        assertEquals(0, exported.getSpans().size());
+        assertEquals(1, reporter.getCount(Decision.DROPPED));
+        assertEquals(0, reporter.getBufferedTraces());
+    }
+
+    @Test
+    public void testKeepSlow() {
+        init(0);
+
+        trace(600_000, false);
+
+        assertEquals(2, exported.getSpans().size());
+        assertEquals(1, reporter.getCount(Decision.SLOW));
+    }
+
+    @Test
+    public void testKeepError() {
+        init(0);
+
+        trace(1_000, true);
+
+        assertEquals(2, exported.getSpans().size());
+        assertEquals(1, reporter.getCount(Decision.ERROR));
+    }
+
+    @Test
+    public void testSampled() {
+        init(1);
+
+        trace(1_000, false);
+        trace(1_000, false);
+
+        // a single credit, the second trace comes within the same second
+        assertEquals(2, exported.getSpans().size());
+        assertEquals(1, reporter.getCount(Decision.SAMPLED));
+        assertEquals(1, reporter.getCount(Decision.DROPPED));
+    }
+
+    @Test
+    public void testDecisionListener() {
+        init(0);
+        List<Decision> decisions = new ArrayList<>();
+        reporter.setDecisionListener(decisions::add);
+
+        trace(1_000, false);
+        trace(1_000, true);
+
+        assertEquals(List.of(Decision.DROPPED, Decision.ERROR), decisions);
+    }
+
+    @Test
+    public void testLateSpan() {
+        init(0);
+
+        var root = tracer.buildSpan("request").withTag(Tags.SPAN_KIND, Tags.SPAN_KIND_SERVER).withStartTimestamp(START).start();
+        var late = tracer.buildSpan("late").asChildOf(root).withStartTimestamp(START).start();
+        root.finish(START + 600_000);
+        late.finish(START + 700_000);
+
+        assertEquals(2, exported.getSpans().size());
+    }
+
+    @Test
+    public void testLateSpanOfDroppedTrace() {
+        init(0);
+
+        var root = tracer.buildSpan("request").withTag(Tags.SPAN_KIND, Tags.SPAN_KIND_SERVER).withStartTimestamp(START).start();
+        var late = tracer.buildSpan("late").asChildOf(root).withStartTimestamp(START).start();
+        root.finish(START + 1_000);
+        late.finish(START + 2_000);
+        reporter.sweep();
+
+        // the late span follows the decision, it doesn't start a trace of its own
+        assertEquals(0, exported.getSpans().size());
+        assertEquals(0, reporter.getBufferedTraces());
+        assertEquals(1, reporter.getCount(Decision.DROPPED));
+    }
+
+    private void init(double sampledPerSecond) {
+        reporter = new TailSamplingReporter(exported, 500, sampledPerSecond, 100, 60_000, 10_000);
+        tracer = new JaegerTracer.Builder("test")
+                .withSampler(new ConstSampler(true))
+                .withReporter(reporter)
+                .build();
+    }
+
+    private void trace(long durationMicros, boolean childError) {
+        var root = tracer.buildSpan("request").withTag(Tags.SPAN_KIND, Tags.SPAN_KIND_SERVER).withStartTimestamp(START).start();
+        var child = tracer.buildSpan("kubernetes.list").asChildOf(root).withStartTimestamp(START).start();
+        if (childError) {
+            Tags.ERROR.set(child, true);
+        }
+        child.finish(START + durationMicros / 2);
+        root.finish(START + durationMicros);
+    }
+}
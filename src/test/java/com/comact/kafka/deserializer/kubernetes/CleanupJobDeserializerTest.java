@@ -0,0 +1,45 @@
+package com.comact.kafka.deserializer.kubernetes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check the cleanup job records are read field by field.
+ */
+public class CleanupJobDeserializerTest {
+    private final CleanupJobDeserializer deserializer = new CleanupJobDeserializer();
+
+    @Test
+    public void testDeserialize() {
+        var json = "{\"id\":\"42\",\"cluster\":null,\"namespace\":\"comact\",\"service\":\"codec\",\"path\":\"/purge\"," +
+                "\"timeout\":30,\"requestedAt\":1792402325123,\"extra\":{\"nested\":[1,2]}}";
+
+        var job = deserializer.deserialize("cleanupjob", json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("42", job.getId());
+        assertNull(job.getCluster());
+        assertEquals("comact", job.getNamespace());
+        assertEquals("codec", job.getService());
+        assertEquals("/purge", job.getPath());
+        assertEquals(30, job.getTimeout());
+        assertEquals(1792402325123L, job.getRequestedAt());
+        assertEquals("/comact", job.orderingKey());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertNull(deserializer.deserialize("cleanupjob", null));
+        assertNull(deserializer.deserialize("cleanupjob", new byte[0]));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(deserializer.deserialize("cleanupjob", "[1]".getBytes(StandardCharsets.UTF_8)));
+        assertNull(deserializer.deserialize("cleanupjob", "{\"id\":".getBytes(StandardCharsets.UTF_8)));
+        assertNull(deserializer.deserialize("cleanupjob", new byte[]{(byte) 0xC3, 0x28}));
+    }
+}